@@ -0,0 +1,106 @@
+package devlava.vectorrag.service;
+
+import devlava.vectorrag.dto.CompactedTranscript;
+import devlava.vectorrag.dto.ConsultationAnalysisResult;
+import devlava.vectorrag.entity.SttData;
+import devlava.vectorrag.fixture.SttCorpus;
+import devlava.vectorrag.util.AnalysisResultParser;
+import devlava.vectorrag.util.ConsultationDocuments;
+import devlava.vectorrag.util.NudgeDictionary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * LLM 호출 전후 CPU 구간 마이크로 벤치마크
+ * - 전처리(발화 분리 + 압축), 참고 사례 컨텍스트/프롬프트 생성, 응답 파싱, 벡터 문서 생성
+ * - 처리량은 thrpt, 할당량은 gc 프로파일러(gc.alloc.rate.norm = 호출당 바이트)로 확인
+ *
+ * 실행: ./gradlew jmh  (결과: build/results/jmh/results.json)
+ */
+@State(Scope.Thread)
+public class AnalysisHotPathBenchmark {
+
+    private static final int CORPUS_SIZE = 256;
+    private static final long SEED = 20240501L;
+
+    // 짧은 상담(약 20발화)과 압축/구간 분석 대상이 되는 긴 상담(약 120발화)
+    @Param({"20", "120"})
+    public int turns;
+
+    private TranscriptCompactor compactor;
+    private List<String> transcripts;
+    private List<Document> similarDocuments;
+    private List<String> modelResponses;
+    private List<SttData> analyzedData;
+    private String context;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (InputStream dictionary = getClass().getResourceAsStream("/nudge-dictionary.txt")) {
+            compactor = new TranscriptCompactor(1200, 400, NudgeDictionary.load(dictionary));
+        }
+        transcripts = SttCorpus.transcripts(CORPUS_SIZE, turns, SEED);
+        similarDocuments = SttCorpus.similarDocuments(3, SEED);
+        modelResponses = SttCorpus.modelResponses(CORPUS_SIZE, SEED);
+        analyzedData = SttCorpus.analyzedData(CORPUS_SIZE, turns, SEED);
+        context = ConsultationAnalysisService.buildOptimizedContext(similarDocuments);
+    }
+
+    // 같은 입력만 반복하면 분기 예측/캐시가 비현실적으로 유리해지므로 코퍼스를 순환
+    private int next() {
+        cursor = (cursor + 1) & (CORPUS_SIZE - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public CompactedTranscript preprocess() {
+        return compactor.compact(transcripts.get(next()));
+    }
+
+    @Benchmark
+    public String buildOptimizedContext() {
+        return ConsultationAnalysisService.buildOptimizedContext(similarDocuments);
+    }
+
+    @Benchmark
+    public String createOptimizedPrompt() {
+        return ConsultationAnalysisService.createOptimizedPrompt(transcripts.get(next()), context);
+    }
+
+    @Benchmark
+    public ConsultationAnalysisResult parseResponse() {
+        return AnalysisResultParser.parse(modelResponses.get(next()));
+    }
+
+    @Benchmark
+    public ConsultationAnalysisResult parseAndValidateResult() {
+        return ConsultationAnalysisService.parseAndValidateResult(modelResponses.get(next()));
+    }
+
+    @Benchmark
+    public Document createDocument() {
+        return ConsultationDocuments.fromAnalyzedData(analyzedData.get(next()));
+    }
+
+    /**
+     * 분석 1건의 LLM 외 구간 전체 (전처리 -> 프롬프트 -> 파싱 -> 문서)
+     */
+    @Benchmark
+    public Document pipeline() {
+        int i = next();
+        CompactedTranscript transcript = compactor.compact(transcripts.get(i));
+        String prompt = ConsultationAnalysisService.createOptimizedPrompt(transcript.text(), context);
+        ConsultationAnalysisResult result = ConsultationAnalysisService.parseAndValidateResult(modelResponses.get(i));
+        return prompt.isEmpty() ? null : ConsultationDocuments.fromAnalysisResult(analyzedData.get(i), result);
+    }
+}
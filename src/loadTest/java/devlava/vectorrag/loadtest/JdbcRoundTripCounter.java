@@ -0,0 +1,101 @@
+package devlava.vectorrag.loadtest;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DataSource 를 감싸서 DB 왕복 횟수를 셈
+ * - Statement 실행(execute*, executeBatch 1회 = 1왕복)과 수동 commit/rollback
+ * - 커넥션 획득은 풀에서 가져오므로 세지 않음
+ */
+public final class JdbcRoundTripCounter {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private static final AtomicLong statements = new AtomicLong(0);
+    private static final AtomicLong transactions = new AtomicLong(0);
+
+    private JdbcRoundTripCounter() {
+    }
+
+    public static DataSource wrap(DataSource target) {
+        return proxy(DataSource.class, target, (method, result) -> {
+            if (result instanceof Connection connection) {
+                return wrapConnection(connection);
+            }
+            return result;
+        });
+    }
+
+    private static Connection wrapConnection(Connection target) {
+        return proxy(Connection.class, target, (method, result) -> {
+            String name = method.getName();
+            if (name.equals("commit") || name.equals("rollback")) {
+                transactions.incrementAndGet();
+            } else if (result instanceof CallableStatement statement) {
+                return wrapStatement(CallableStatement.class, statement);
+            } else if (result instanceof PreparedStatement statement) {
+                return wrapStatement(PreparedStatement.class, statement);
+            } else if (result instanceof Statement statement) {
+                return wrapStatement(Statement.class, statement);
+            }
+            return result;
+        });
+    }
+
+    private static <T extends Statement> T wrapStatement(Class<T> type, T target) {
+        return proxy(type, target, (method, result) -> {
+            if (EXECUTE_METHODS.contains(method.getName())) {
+                statements.incrementAndGet();
+            }
+            return result;
+        });
+    }
+
+    private interface ResultHook {
+        Object apply(Method method, Object result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, ResultHook hook) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().equals("unwrap") && args != null && args[0] instanceof Class<?> iface
+                    && iface.isInstance(proxy)) {
+                return proxy;
+            }
+            try {
+                return hook.apply(method, method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    public static long statements() {
+        return statements.get();
+    }
+
+    public static long transactions() {
+        return transactions.get();
+    }
+
+    public static long roundTrips() {
+        return statements.get() + transactions.get();
+    }
+
+    public static void reset() {
+        statements.set(0);
+        transactions.set(0);
+    }
+}
@@ -0,0 +1,48 @@
+package devlava.vectorrag.loadtest;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * 부하 테스트 전용 설정 - DB 왕복 계수기와 실행 전체 구간의 백분위수
+ */
+@Configuration
+public class LoadTestConfiguration {
+
+    @Bean
+    public static BeanPostProcessor roundTripCountingDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource ? JdbcRoundTripCounter.wrap(dataSource) : bean;
+            }
+        };
+    }
+
+    /**
+     * 기본 백분위수는 최근 2분 구간만 반영하므로 실행 전체가 들어가도록 구간을 늘림
+     */
+    @Bean
+    public MeterFilter loadTestPercentileWindow() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!id.getName().startsWith("consultation.")) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .expiry(Duration.ofHours(12))
+                        .bufferLength(1)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
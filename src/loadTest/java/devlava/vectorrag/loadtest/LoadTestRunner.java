@@ -0,0 +1,229 @@
+package devlava.vectorrag.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import devlava.vectorrag.VectorRagApplication;
+import devlava.vectorrag.fixture.SttCorpus;
+import devlava.vectorrag.service.AnalysisMetricsService;
+import devlava.vectorrag.service.AnalysisResultWriter;
+import devlava.vectorrag.service.OptimizedConsultationAnalysisBatch;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 배치 전체 처리량 측정 - Ollama 대역 서버 + PostgreSQL(pgvector) 위에서 앱을 띄우고
+ * 합성 상담 N건을 넣은 뒤 OptimizedConsultationAnalysisBatch 를 한 번 실행
+ * - 처리량(건/초), 건별 처리 시간 p50/p95/p99, 단계별 p50/p99, 건당 DB 왕복/Ollama 호출 수를 보고
+ * - 동시성/배치 설정은 -Pconsultation.analysis.* 로 바꿔가며 비교 (./gradlew loadTest -P...)
+ * - loadtest.jdbc-url 을 주면 해당 DB 사용, 없으면 Testcontainers 로 pgvector 컨테이너 실행
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    private static final String CONSULTATION_PREFIX = "LT-";
+
+    private static final String INSERT_SQL = """
+            INSERT INTO tb_stt_data (consultation_number, consultant, consultation_content, consultation_time,
+                                     analysis_status, created_date, updated_date)
+            VALUES (?, ?, ?, ?, 'PENDING', now(), now())
+            """;
+
+    public static void main(String[] args) throws Exception {
+        int consultations = Integer.getInteger("loadtest.consultations", 500);
+        int turns = Integer.getInteger("loadtest.turns", 20);
+        long seed = Long.getLong("loadtest.seed", 20240501L);
+        Path reportFile = Path.of(System.getProperty("loadtest.report-file", "build/reports/loadtest/report.json"));
+
+        try (OllamaStubServer stub = new OllamaStubServer(
+                Long.getLong("loadtest.stub.chat-latency-ms", 800),
+                Long.getLong("loadtest.stub.chat-jitter-ms", 200),
+                Long.getLong("loadtest.stub.embed-latency-ms", 20),
+                Long.getLong("loadtest.stub.embed-jitter-ms", 5),
+                Integer.getInteger("loadtest.stub.parallel", 4),
+                Integer.getInteger("loadtest.stub.dimensions", 768)).start()) {
+
+            PostgreSQLContainer<?> container = null;
+            String jdbcUrl = System.getProperty("loadtest.jdbc-url");
+            String username = System.getProperty("loadtest.username", "raguser");
+            String password = System.getProperty("loadtest.password", "ragpass");
+            if (jdbcUrl == null || jdbcUrl.isBlank()) {
+                container = new PostgreSQLContainer<>(DockerImageName.parse("pgvector/pgvector:pg16")
+                        .asCompatibleSubstituteFor("postgres"))
+                        .withDatabaseName("ragdb")
+                        .withUsername(username)
+                        .withPassword(password);
+                container.start();
+                jdbcUrl = container.getJdbcUrl();
+            }
+
+            // application.yml 보다 우선하도록 시스템 속성으로 지정
+            System.setProperty("server.port", "0");
+            System.setProperty("spring.ai.ollama.base-url", stub.baseUrl());
+            System.setProperty("spring.datasource.url", withBatchRewrite(jdbcUrl));
+            System.setProperty("spring.datasource.username", username);
+            System.setProperty("spring.datasource.password", password);
+            System.setProperty("spring.jpa.show-sql", "false");
+            // 배치는 이 러너가 직접 한 번만 실행
+            System.setProperty("consultation.analysis.schedule.initial-delay-ms",
+                    String.valueOf(TimeUnit.DAYS.toMillis(1)));
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                    VectorRagApplication.class, LoadTestConfiguration.class).run(args)) {
+
+                Map<String, Object> report = run(context, stub, consultations, turns, seed);
+                Files.createDirectories(reportFile.toAbsolutePath().getParent());
+                new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportFile.toFile(), report);
+                log.info("Load test report written to {}", reportFile.toAbsolutePath());
+            } finally {
+                if (container != null) {
+                    container.stop();
+                }
+            }
+        }
+    }
+
+    private static Map<String, Object> run(ConfigurableApplicationContext context, OllamaStubServer stub,
+                                           int consultations, int turns, long seed) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        OptimizedConsultationAnalysisBatch batch = context.getBean(OptimizedConsultationAnalysisBatch.class);
+        AnalysisResultWriter resultWriter = context.getBean(AnalysisResultWriter.class);
+
+        seed(jdbcTemplate, consultations, turns, seed);
+
+        long chatBefore = stub.getChatRequests();
+        long embedBefore = stub.getEmbedRequests();
+        JdbcRoundTripCounter.reset();
+        long startTime = System.nanoTime();
+
+        batch.processUnanalyzedConsultations();
+        resultWriter.flush();
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        long statements = JdbcRoundTripCounter.statements();
+        long transactions = JdbcRoundTripCounter.transactions();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("consultations", consultations);
+        report.put("turnsPerConsultation", turns);
+        report.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        report.put("throughputPerSecond", consultations * 1_000_000_000.0 / elapsedNanos);
+        report.put("results", resultCounts(jdbcTemplate));
+        report.put("latencyMs", latency(context.getBean(MeterRegistry.class)));
+        report.put("stageLatencyMs", stageLatency(context.getBean(MeterRegistry.class)));
+        report.put("dbRoundTripsPerConsultation", (double) (statements + transactions) / consultations);
+        report.put("dbStatements", statements);
+        report.put("dbTransactions", transactions);
+        report.put("chatRequestsPerConsultation", (double) (stub.getChatRequests() - chatBefore) / consultations);
+        report.put("embedRequestsPerConsultation", (double) (stub.getEmbedRequests() - embedBefore) / consultations);
+        report.put("settings", settings(context.getEnvironment()));
+
+        log.info("Load test finished - {} consultations in {}ms ({} /s), latency {}, DB round trips/consultation {}",
+                consultations, report.get("elapsedMs"),
+                String.format("%.2f", (double) report.get("throughputPerSecond")),
+                report.get("latencyMs"),
+                String.format("%.2f", (double) report.get("dbRoundTripsPerConsultation")));
+        return report;
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate, int consultations, int turns, long seed) {
+        jdbcTemplate.update("DELETE FROM tb_stt_data WHERE consultation_number LIKE ?", CONSULTATION_PREFIX + "%");
+
+        List<String> transcripts = SttCorpus.transcripts(consultations, turns, seed);
+        LocalDateTime baseTime = LocalDateTime.now().minusDays(1);
+        List<Object[]> rows = new ArrayList<>(consultations);
+        for (int i = 0; i < consultations; i++) {
+            rows.add(new Object[]{
+                    String.format("%s%08d", CONSULTATION_PREFIX, i),
+                    "상담사" + (i % 50),
+                    transcripts.get(i),
+                    Timestamp.valueOf(baseTime.plusSeconds(i))
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        log.info("Seeded {} synthetic consultations ({} turns each)", consultations, turns);
+    }
+
+    private static Map<String, Object> resultCounts(JdbcTemplate jdbcTemplate) {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        jdbcTemplate.query("""
+                        SELECT analysis_status, COALESCE(analysis_source, '-') AS source, COUNT(*)
+                        FROM tb_stt_data
+                        WHERE consultation_number LIKE ?
+                        GROUP BY analysis_status, analysis_source
+                        ORDER BY 1, 2
+                        """,
+                rs -> {
+                    counts.put(rs.getString(1) + "/" + rs.getString(2), rs.getLong(3));
+                },
+                CONSULTATION_PREFIX + "%");
+        return counts;
+    }
+
+    private static Map<String, Object> latency(MeterRegistry registry) {
+        Timer timer = registry.find(AnalysisMetricsService.TOTAL_TIMER).timer();
+        return timer == null ? Map.of() : percentiles(timer);
+    }
+
+    private static Map<String, Object> stageLatency(MeterRegistry registry) {
+        Map<String, Object> stages = new LinkedHashMap<>();
+        registry.find(AnalysisMetricsService.STAGE_TIMER).timers()
+                .forEach(timer -> stages.put(timer.getId().getTag("stage"), percentiles(timer)));
+        return stages;
+    }
+
+    private static Map<String, Object> percentiles(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", snapshot.count());
+        summary.put("mean", snapshot.mean(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            summary.put("p" + Math.round(percentile.percentile() * 100), percentile.value(TimeUnit.MILLISECONDS));
+        }
+        summary.put("max", snapshot.max(TimeUnit.MILLISECONDS));
+        return summary;
+    }
+
+    private static Map<String, Object> settings(Environment environment) {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        for (String key : List.of(
+                "consultation.analysis.mode",
+                "consultation.analysis.max-concurrency",
+                "consultation.analysis.writer.flush-size",
+                "consultation.analysis.llm.streaming",
+                "consultation.analysis.llm.limiter.initial-limit",
+                "consultation.analysis.llm.limiter.max-limit",
+                "consultation.analysis.prefilter.enabled",
+                "consultation.analysis.dedup.enabled",
+                "loadtest.stub.chat-latency-ms",
+                "loadtest.stub.parallel")) {
+            settings.put(key, environment.getProperty(key));
+        }
+        return settings;
+    }
+
+    private static String withBatchRewrite(String jdbcUrl) {
+        if (jdbcUrl.contains("reWriteBatchedInserts")) {
+            return jdbcUrl;
+        }
+        return jdbcUrl + (jdbcUrl.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true";
+    }
+}
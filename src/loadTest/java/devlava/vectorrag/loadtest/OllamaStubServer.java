@@ -0,0 +1,259 @@
+package devlava.vectorrag.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import devlava.vectorrag.fixture.SttCorpus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ollama 대역 HTTP 서버 - /api/chat (일반/스트리밍), /api/embed, /api/embeddings
+ * - 응답 지연 = latency ± jitter (균등 분포), 스트리밍은 지연을 청크에 나눠서 전송
+ * - parallel 개 요청만 동시에 처리하고 나머지는 대기 (OLLAMA_NUM_PARALLEL 과 같은 동작)
+ * - 분석 결과는 상담 내용 해시로 고정된 JSON, 임베딩은 텍스트 해시로 만든 단위 벡터
+ */
+@Slf4j
+public class OllamaStubServer implements AutoCloseable {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 한 청크에 실어 보내는 글자 수 (토큰 1개 정도)
+    private static final int STREAM_CHUNK_CHARS = 3;
+
+    private final long chatLatencyMs;
+    private final long chatJitterMs;
+    private final long embedLatencyMs;
+    private final long embedJitterMs;
+    private final int dimensions;
+    private final Semaphore slots;
+
+    private final AtomicLong chatRequests = new AtomicLong(0);
+    private final AtomicLong embedRequests = new AtomicLong(0);
+    private final AtomicLong embeddedTexts = new AtomicLong(0);
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public OllamaStubServer(long chatLatencyMs, long chatJitterMs, long embedLatencyMs, long embedJitterMs,
+                            int parallel, int dimensions) {
+        this.chatLatencyMs = chatLatencyMs;
+        this.chatJitterMs = chatJitterMs;
+        this.embedLatencyMs = embedLatencyMs;
+        this.embedJitterMs = embedJitterMs;
+        this.dimensions = dimensions;
+        this.slots = new Semaphore(parallel, true);
+    }
+
+    public OllamaStubServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ollama-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/api/chat", exchange -> handle(exchange, this::chat));
+        server.createContext("/api/embed", exchange -> handle(exchange, this::embed));
+        server.createContext("/api/embeddings", exchange -> handle(exchange, this::embeddings));
+        server.start();
+        log.info("Ollama stub listening on {} (chat {}±{}ms, embed {}±{}ms, parallel {})",
+                baseUrl(), chatLatencyMs, chatJitterMs, embedLatencyMs, embedJitterMs, slots.availablePermits());
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, JsonNode request) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            slots.acquire();
+            try {
+                handler.handle(exchange, request);
+            } finally {
+                slots.release();
+            }
+        } catch (IOException e) {
+            // 스트리밍 중 클라이언트가 JSON 완료 후 연결을 끊는 경우
+            log.debug("Stub connection closed: {}", e.getMessage());
+        } catch (Exception e) {
+            log.warn("Stub request failed", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void chat(HttpExchange exchange, JsonNode request) throws Exception {
+        chatRequests.incrementAndGet();
+        String model = request.path("model").asText("stub");
+        String prompt = lastUserMessage(request);
+        String content = SttCorpus.analysisJson(prompt.hashCode());
+        long latencyNanos = delayMs(chatLatencyMs, chatJitterMs) * 1_000_000;
+        long promptTokens = Math.max(1, prompt.length() / 2);
+        long evalCount = Math.max(1, content.length() / STREAM_CHUNK_CHARS);
+
+        if (!request.path("stream").asBoolean(false)) {
+            sleepNanos(latencyNanos);
+            sendJson(exchange, "application/json",
+                    chatChunk(model, content, true, promptTokens, evalCount, latencyNanos).toString() + "\n");
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        int chunks = (content.length() + STREAM_CHUNK_CHARS - 1) / STREAM_CHUNK_CHARS;
+        long perChunkNanos = latencyNanos / (chunks + 1);
+
+        // 첫 청크 전 프롬프트 평가 시간
+        sleepNanos(perChunkNanos);
+        for (int i = 0; i < content.length(); i += STREAM_CHUNK_CHARS) {
+            String piece = content.substring(i, Math.min(content.length(), i + STREAM_CHUNK_CHARS));
+            out.write((chatChunk(model, piece, false, 0, 0, 0) + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            sleepNanos(perChunkNanos);
+        }
+        out.write((chatChunk(model, "", true, promptTokens, evalCount, latencyNanos) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static String lastUserMessage(JsonNode request) {
+        JsonNode messages = request.path("messages");
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if ("user".equals(messages.get(i).path("role").asText())) {
+                return messages.get(i).path("content").asText("");
+            }
+        }
+        return "";
+    }
+
+    private ObjectNode chatChunk(String model, String content, boolean done, long promptTokens, long evalCount,
+                                 long evalNanos) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("model", model);
+        node.put("created_at", Instant.now().toString());
+        ObjectNode message = node.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        node.put("done", done);
+        if (done) {
+            node.put("done_reason", "stop");
+            node.put("total_duration", evalNanos);
+            node.put("load_duration", 0L);
+            node.put("prompt_eval_count", promptTokens);
+            node.put("prompt_eval_duration", evalNanos / 10);
+            node.put("eval_count", evalCount);
+            node.put("eval_duration", evalNanos - evalNanos / 10);
+        }
+        return node;
+    }
+
+    // /api/embed - {"input": [..]} -> {"embeddings": [[..], ..]}
+    private void embed(HttpExchange exchange, JsonNode request) throws Exception {
+        embedRequests.incrementAndGet();
+        JsonNode input = request.path("input");
+        sleepNanos(delayMs(embedLatencyMs, embedJitterMs) * 1_000_000);
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("model", request.path("model").asText("stub"));
+        ArrayNode embeddings = response.putArray("embeddings");
+        if (input.isArray()) {
+            input.forEach(text -> embeddings.add(vector(text.asText())));
+        } else {
+            embeddings.add(vector(input.asText()));
+        }
+        sendJson(exchange, "application/json", response.toString());
+    }
+
+    // 이전 형식 /api/embeddings - {"prompt": ".."} -> {"embedding": [..]}
+    private void embeddings(HttpExchange exchange, JsonNode request) throws Exception {
+        embedRequests.incrementAndGet();
+        sleepNanos(delayMs(embedLatencyMs, embedJitterMs) * 1_000_000);
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.set("embedding", vector(request.path("prompt").asText()));
+        sendJson(exchange, "application/json", response.toString());
+    }
+
+    private ArrayNode vector(String text) {
+        embeddedTexts.incrementAndGet();
+        float[] values = new float[dimensions];
+        long state = text.hashCode() * 0x9E3779B97F4A7C15L;
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            values[i] = (state % 10_000) / 10_000f;
+            norm += values[i] * values[i];
+        }
+
+        ArrayNode array = objectMapper.createArrayNode();
+        double scale = norm > 0 ? 1 / Math.sqrt(norm) : 0;
+        for (float value : values) {
+            array.add((float) (value * scale));
+        }
+        return array;
+    }
+
+    private static void sendJson(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static long delayMs(long latencyMs, long jitterMs) {
+        if (jitterMs <= 0) {
+            return latencyMs;
+        }
+        return Math.max(0, latencyMs + ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1));
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        }
+    }
+
+    public long getChatRequests() {
+        return chatRequests.get();
+    }
+
+    public long getEmbedRequests() {
+        return embedRequests.get();
+    }
+
+    public long getEmbeddedTexts() {
+        return embeddedTexts.get();
+    }
+}
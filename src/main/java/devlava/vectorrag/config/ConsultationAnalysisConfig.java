@@ -1,16 +1,24 @@
 package devlava.vectorrag.config;
 
+import devlava.vectorrag.service.CachingEmbeddingModel;
+
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.ollama.OllamaEmbeddingModel;
 import org.springframework.ai.ollama.api.OllamaApi;
 import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.ai.autoconfigure.vectorstore.pgvector.PgVectorStoreProperties;
+import org.springframework.ai.vectorstore.PgVectorStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.file.Path;
 
 @Configuration
-@EnableCaching
 public class ConsultationAnalysisConfig {
 
     @Value("${spring.ai.ollama.base-url}")
@@ -19,19 +27,85 @@ public class ConsultationAnalysisConfig {
     @Value("${spring.ai.ollama.embedding.options.model}")
     private String embeddingModel;
 
+    @Value("${consultation.analysis.max-concurrency:4}")
+    private int maxConcurrency;
+
+    @Value("${consultation.analysis.long-transcript.window-concurrency:4}")
+    private int windowConcurrency;
+
     @Bean
     public OllamaApi ollamaApi() {
         return new OllamaApi(ollamaBaseUrl);
     }
 
+    @Value("${consultation.embedding.cache.max-entries:20000}")
+    private int embeddingCacheMaxEntries;
+
+    @Value("${consultation.embedding.cache.disk-path:}")
+    private String embeddingCacheDiskPath;
+
+    /**
+     * Ollama 임베딩 모델을 내용 주소 기반 캐시로 감싸서 같은 텍스트는 모델당 한 번만 임베딩
+     */
     @Bean
-    public EmbeddingModel embeddingModel(OllamaApi ollamaApi) {
-        return new OllamaEmbeddingModel(ollamaApi,
+    @Primary
+    public CachingEmbeddingModel embeddingModel(OllamaApi ollamaApi) {
+        EmbeddingModel ollamaEmbeddingModel = new OllamaEmbeddingModel(ollamaApi,
                 OllamaOptions.create()
                         .withModel(embeddingModel)
         );
+
+        Path diskCacheDir = embeddingCacheDiskPath.isBlank() ? null : Path.of(embeddingCacheDiskPath);
+        return new CachingEmbeddingModel(ollamaEmbeddingModel, embeddingModel,
+                embeddingCacheMaxEntries, diskCacheDir);
     }
 
-    // VectorStore는 Spring AI AutoConfiguration에서 자동 생성됨
-    // application.yml의 spring.ai.vectorstore.pgvector 설정을 사용
-}
\ No newline at end of file
+    /**
+     * 배치 분석 전용 실행기 - 동시 분석 개수는 배치에서 세마포어로 제한
+     * 종료 시 실행 중인 분석이 모두 끝난 뒤 결과 버퍼가 flush 되도록 writer 보다 먼저 종료
+     */
+    @Bean(name = "analysisExecutor")
+    @DependsOn({"analysisResultWriter", "analysisWindowExecutor"})
+    public ThreadPoolTaskExecutor analysisExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrency);
+        executor.setMaxPoolSize(maxConcurrency);
+        executor.setThreadNamePrefix("analysis-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    /**
+     * 긴 상담의 구간(window) 분석 전용 실행기
+     * 분석 스레드가 구간 결과를 기다리므로 analysisExecutor 와 같은 풀을 쓰면 교착될 수 있어 분리
+     */
+    @Bean(name = "analysisWindowExecutor")
+    public ThreadPoolTaskExecutor analysisWindowExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(windowConcurrency);
+        executor.setMaxPoolSize(windowConcurrency);
+        executor.setThreadNamePrefix("analysis-window-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    @Value("${consultation.vector-store.pgvector.storage-mode:full}")
+    private String pgVectorStorageMode;
+
+    /**
+     * pgvector 저장소 - 원본 저장소이자 로컬 HNSW 계층(HnswVectorStore, @Primary)의 대체 경로
+     * HnswVectorStore 도 VectorStore 이므로 AutoConfiguration 대신 직접 생성 (spring.ai.vectorstore.pgvector 설정 사용)
+     * storage-mode 가 full 이 아니면 float32 HNSW 인덱스는 만들지 않음 (모드별 인덱스는 PgVectorSearch 가 생성)
+     */
+    @Bean
+    public PgVectorStore pgVectorStore(JdbcTemplate jdbcTemplate, EmbeddingModel embeddingModel,
+                                       PgVectorStoreProperties properties) {
+        PgVectorStore.PgIndexType indexType = "full".equalsIgnoreCase(pgVectorStorageMode.trim())
+                ? properties.getIndexType() : PgVectorStore.PgIndexType.NONE;
+        return new PgVectorStore(jdbcTemplate, embeddingModel, properties.getDimensions(),
+                properties.getDistanceType(), properties.isRemoveExistingVectorStoreTable(),
+                indexType, properties.isInitializeSchema());
+    }
+}
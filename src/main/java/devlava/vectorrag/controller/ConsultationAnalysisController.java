@@ -5,14 +5,22 @@ import devlava.vectorrag.entity.SttData;
 import devlava.vectorrag.service.OptimizedConsultationAnalysisBatch;
 import devlava.vectorrag.service.ConsultationAnalysisService;
 import devlava.vectorrag.service.AnalysisMetricsService;
+import devlava.vectorrag.service.AdaptiveConcurrencyLimiter;
+import devlava.vectorrag.service.CachingEmbeddingModel;
+import devlava.vectorrag.service.SimilarConsultationCache;
+import devlava.vectorrag.service.NearDuplicateIndex;
+import devlava.vectorrag.service.HnswVectorStore;
+import devlava.vectorrag.service.PgVectorSearch;
 import devlava.vectorrag.repository.SttDataRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +38,24 @@ public class ConsultationAnalysisController {
     @Autowired
     private AnalysisMetricsService metricsService;
 
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private CachingEmbeddingModel embeddingModel;
+
+    @Autowired
+    private SimilarConsultationCache similarConsultationCache;
+
+    @Autowired
+    private NearDuplicateIndex nearDuplicateIndex;
+
+    @Autowired
+    private HnswVectorStore hnswVectorStore;
+
+    @Autowired
+    private PgVectorSearch pgVectorSearch;
+
     @Autowired
     private SttDataRepository sttDataRepository;
 
@@ -75,7 +101,54 @@ public class ConsultationAnalysisController {
      */
     @GetMapping("/metrics")
     public ResponseEntity<Map<String, Object>> getMetrics() {
-        return ResponseEntity.ok(metricsService.getMetrics());
+        Map<String, Object> metrics = new HashMap<>(metricsService.getMetrics());
+        metrics.put("llmConcurrency", concurrencyLimiter.getStatus());
+        return ResponseEntity.ok(metrics);
+    }
+
+    /**
+     * 캐시 통계 조회
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(Map.of(
+                "embedding", embeddingModel.getStats(),
+                "similarConsultations", similarConsultationCache.getStats(),
+                "nearDuplicates", nearDuplicateIndex.getStats(),
+                "localVectorIndex", hnswVectorStore.getStats()
+        ));
+    }
+
+    /**
+     * pgvector 저장 형식별 recall@k / 지연 시간 / 인덱스 크기 비교 (관리용)
+     * - 전수 검색과 인덱스 생성을 하므로 recall-report.enabled 일 때만, 배치 분석 중에는 거부
+     */
+    @PostMapping("/vector-store/recall-report")
+    public ResponseEntity<Map<String, Object>> runRecallReport(
+            @RequestParam(defaultValue = "50") int sampleSize,
+            @RequestParam(defaultValue = "3") int topK,
+            @RequestParam(defaultValue = "false") boolean buildIndexes) {
+        if (!pgVectorSearch.isRecallReportEnabled()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "status", "error",
+                    "message", "recall 보고서가 비활성화되어 있습니다."
+            ));
+        }
+        if (analysisBatch.isCurrentlyProcessing()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "status", "error",
+                    "message", "배치 분석 중에는 recall 보고서를 실행할 수 없습니다."
+            ));
+        }
+
+        try {
+            return ResponseEntity.ok(pgVectorSearch.recallReport(sampleSize, topK, buildIndexes));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "status", "error",
+                    "message", e.getMessage()
+            ));
+        }
     }
 
     /**
@@ -115,7 +188,7 @@ public class ConsultationAnalysisController {
                 ));
             }
 
-            new Thread(() -> analysisBatch.processUnanalyzedConsultationsSequentially()).start();
+            new Thread(() -> analysisBatch.processUnanalyzedConsultations()).start();
 
             return ResponseEntity.ok(Map.of(
                     "status", "success",
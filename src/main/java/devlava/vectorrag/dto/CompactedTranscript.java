@@ -0,0 +1,17 @@
+package devlava.vectorrag.dto;
+
+/**
+ * 토큰 예산에 맞춰 압축된 상담 내용
+ *
+ * @param text            모델에 보낼 텍스트 (발화 순서 유지, 생략 구간은 "(중략)")
+ * @param estimatedTokens 압축 후 추정 토큰 수
+ * @param originalTokens  압축 전 추정 토큰 수
+ * @param totalTurns      전체 발화 수
+ * @param keptTurns       남긴 발화 수
+ */
+public record CompactedTranscript(String text, int estimatedTokens, int originalTokens, int totalTurns, int keptTurns) {
+
+    public boolean isCompacted() {
+        return keptTurns < totalTurns;
+    }
+}
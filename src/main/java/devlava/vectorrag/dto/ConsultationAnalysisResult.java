@@ -11,6 +11,12 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class ConsultationAnalysisResult {
 
+    // 분석 경로 - LLM 분석 / 넛지 사전 필터로 확정 / 거의 같은 상담 결과 재사용 / 분석 실패 기본값 (저장 시 실패 처리)
+    public static final String SOURCE_LLM = "LLM";
+    public static final String SOURCE_PREFILTER = "PREFILTER";
+    public static final String SOURCE_REUSED = "REUSED";
+    public static final String SOURCE_FALLBACK = "FALLBACK";
+
     @JsonProperty("mainInquiry")
     private String mainInquiry;
 
@@ -32,6 +38,17 @@ public class ConsultationAnalysisResult {
     @JsonProperty("inappropriateReason")  // 변경됨
     private String inappropriateReason;
 
+    @JsonProperty("analysisSource")
+    private String analysisSource;
+
+    // 재사용한 경우 원본 상담번호
+    @JsonProperty("reusedFrom")
+    private String reusedFrom;
+
+    // LLM 토큰 사용량 (구간 분석은 합계, LLM 을 호출하지 않았으면 null)
+    @JsonProperty("llmUsage")
+    private LlmUsage llmUsage;
+
     // 하위 호환성을 위한 별칭 메서드들 (기존 코드가 깨지지 않도록)
     public String getHasMarketing() { return hasNudge; }
     public void setHasMarketing(String hasMarketing) { this.hasNudge = hasMarketing; }
@@ -0,0 +1,35 @@
+package devlava.vectorrag.dto;
+
+/**
+ * LLM 호출 1회(또는 구간 분석 합계)의 토큰 사용량
+ *
+ * @param model           모델명
+ * @param promptTokens    실제로 평가된 프롬프트 토큰 수 (KV 캐시 재사용분 제외, 모르면 null)
+ * @param generatedTokens 생성 토큰 수
+ * @param generationNanos 생성에 걸린 시간
+ * @param loadNanos       모델 로드 시간 (모르면 null)
+ * @param estimated       스트리밍을 중간에 끊어 Ollama 최종 통계 없이 청크 수/경과 시간으로 추정한 값인지 여부
+ */
+public record LlmUsage(String model, Long promptTokens, long generatedTokens, long generationNanos,
+                       Long loadNanos, boolean estimated) {
+
+    public double tokensPerSecond() {
+        return generationNanos > 0 ? generatedTokens * 1_000_000_000.0 / generationNanos : 0;
+    }
+
+    public long generationMs() {
+        return generationNanos / 1_000_000;
+    }
+
+    public LlmUsage plus(LlmUsage other) {
+        if (other == null) {
+            return this;
+        }
+        return new LlmUsage(model,
+                promptTokens != null && other.promptTokens() != null ? promptTokens + other.promptTokens() : null,
+                generatedTokens + other.generatedTokens(),
+                generationNanos + other.generationNanos(),
+                loadNanos != null && other.loadNanos() != null ? loadNanos + other.loadNanos() : null,
+                estimated || other.estimated());
+    }
+}
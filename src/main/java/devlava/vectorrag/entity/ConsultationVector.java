@@ -12,7 +12,9 @@ import org.hibernate.type.SqlTypes;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "tb_consultation_vectors")
+@Table(name = "tb_consultation_vectors", indexes = {
+        @Index(name = "uk_consultation_vectors_consultation_number", columnList = "consultation_number", unique = true)
+})
 @Getter
 @Setter
 @NoArgsConstructor
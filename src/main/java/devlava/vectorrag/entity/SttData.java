@@ -9,7 +9,10 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "tb_stt_data")
+@Table(name = "tb_stt_data", indexes = {
+        @Index(name = "idx_stt_data_analysis_date", columnList = "analysis_date, consultation_number"),
+        @Index(name = "idx_stt_data_status_time", columnList = "analysis_status, consultation_time")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -54,6 +57,34 @@ public class SttData {
     @Column(name = "analysis_status", length = 20)
     private String analysisStatus = "PENDING";
 
+    // 분석 경로 (LLM / PREFILTER / REUSED / FALLBACK)
+    @Column(name = "analysis_source", length = 20)
+    private String analysisSource;
+
+    // 거의 같은 상담 탐지용 SimHash 서명과 결과를 재사용한 원본 상담번호
+    @Column(name = "content_simhash")
+    private Long contentSimhash;
+
+    @Column(name = "reused_from", length = 50)
+    private String reusedFrom;
+
+    // LLM 토큰 사용량 (consultation.analysis.llm.store-usage 가 켜진 경우)
+    @Column(name = "llm_prompt_tokens")
+    private Long llmPromptTokens;
+
+    @Column(name = "llm_generated_tokens")
+    private Long llmGeneratedTokens;
+
+    @Column(name = "llm_generation_ms")
+    private Long llmGenerationMs;
+
+    // 작업 점유(lease) - 점유한 노드와 만료 시각, 만료되면 다른 노드가 다시 가져감
+    @Column(name = "lease_owner", length = 100)
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
     @Column(name = "analysis_date")
     private LocalDateTime analysisDate;
 
@@ -0,0 +1,43 @@
+package devlava.vectorrag.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "tb_vector_sync_checkpoint")
+@Getter
+@Setter
+@NoArgsConstructor
+public class VectorSyncCheckpoint {
+
+    @Id
+    @Column(name = "sync_name", length = 50)
+    private String syncName;
+
+    // 마지막으로 처리한 상담 번호 (재시작 시 이 다음부터 이어서 처리)
+    @Column(name = "last_consultation_number")
+    private String lastConsultationNumber;
+
+    // 증분 동기화 high-water mark (마지막으로 반영한 analysis_date)
+    @Column(name = "watermark")
+    private LocalDateTime watermark;
+
+    @Column(name = "completed")
+    private boolean completed;
+
+    @Column(name = "updated_date")
+    private LocalDateTime updatedDate = LocalDateTime.now();
+
+    public VectorSyncCheckpoint(String syncName) {
+        this.syncName = syncName;
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        this.updatedDate = LocalDateTime.now();
+    }
+}
@@ -18,7 +18,9 @@ public interface ConsultationVectorRepository extends JpaRepository<Consultation
     @Modifying
     @Transactional
     @Query(value = "INSERT INTO tb_consultation_vectors (consultation_number, consultation_content, analysis_result, created_date) " +
-            "VALUES (:consultationNumber, :consultationContent, CAST(:analysisResult AS jsonb), CURRENT_TIMESTAMP)",
+            "VALUES (:consultationNumber, :consultationContent, CAST(:analysisResult AS jsonb), CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (consultation_number) DO UPDATE SET consultation_content = EXCLUDED.consultation_content, " +
+            "analysis_result = EXCLUDED.analysis_result, created_date = EXCLUDED.created_date",
             nativeQuery = true)
     void saveWithJsonb(@Param("consultationNumber") String consultationNumber,
                        @Param("consultationContent") String consultationContent,
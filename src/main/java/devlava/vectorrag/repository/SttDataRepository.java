@@ -3,9 +3,12 @@ package devlava.vectorrag.repository;
 import devlava.vectorrag.entity.SttData;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -17,9 +20,64 @@ public interface SttDataRepository extends JpaRepository<SttData, String> {
     @Query("SELECT s FROM SttData s WHERE s.analysisStatus = 'COMPLETED' AND s.response1 IS NOT NULL")
     List<SttData> findAnalyzedData();
 
+    // 상담 번호 기준 키셋 페이징 - 전체를 메모리에 올리지 않고 청크 단위로 순회
+    @Query("SELECT s FROM SttData s WHERE s.analysisStatus = 'COMPLETED' AND s.response1 IS NOT NULL " +
+            "AND s.consultationNumber > :lastConsultationNumber ORDER BY s.consultationNumber ASC")
+    List<SttData> findAnalyzedDataAfter(@Param("lastConsultationNumber") String lastConsultationNumber,
+                                        Pageable pageable);
+
+    // (analysis_date, 상담 번호) 키셋 - watermark 이후 변경분만 조회
+    @Query("SELECT s FROM SttData s WHERE s.analysisStatus = 'COMPLETED' AND s.response1 IS NOT NULL " +
+            "AND s.analysisDate < :upperBound " +
+            "AND (s.analysisDate > :watermark " +
+            "OR (s.analysisDate = :watermark AND s.consultationNumber > :lastConsultationNumber)) " +
+            "ORDER BY s.analysisDate ASC, s.consultationNumber ASC")
+    List<SttData> findAnalyzedDataChangedSince(@Param("watermark") LocalDateTime watermark,
+                                               @Param("lastConsultationNumber") String lastConsultationNumber,
+                                               @Param("upperBound") LocalDateTime upperBound,
+                                               Pageable pageable);
+
     @Query("SELECT COUNT(s) FROM SttData s WHERE s.analysisStatus = 'PENDING'")
     long countPendingAnalysis();
 
+    // 처리 가능한 건 잠금 - 다른 노드가 잠근 행은 건너뜀, 점유가 만료된 PROCESSING 건도 다시 가져감
+    @Query(value = "SELECT consultation_number FROM tb_stt_data " +
+            "WHERE analysis_status = 'PENDING' " +
+            "OR (analysis_status = 'PROCESSING' AND (lease_expires_at IS NULL OR lease_expires_at < now())) " +
+            "ORDER BY consultation_time ASC LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<String> lockClaimableConsultationNumbers(@Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE tb_stt_data SET analysis_status = 'PROCESSING', lease_owner = :leaseOwner, " +
+            "lease_expires_at = now() + (:leaseSeconds * INTERVAL '1 second'), updated_date = now() " +
+            "WHERE consultation_number IN (:consultationNumbers)",
+            nativeQuery = true)
+    int claim(@Param("consultationNumbers") List<String> consultationNumbers,
+              @Param("leaseOwner") String leaseOwner,
+              @Param("leaseSeconds") long leaseSeconds);
+
+    // 다른 노드의 유효한 점유가 없을 때만 특정 건을 점유 (수동 분석용)
+    @Modifying
+    @Query(value = "UPDATE tb_stt_data SET analysis_status = 'PROCESSING', lease_owner = :leaseOwner, " +
+            "lease_expires_at = now() + (:leaseSeconds * INTERVAL '1 second'), updated_date = now() " +
+            "WHERE consultation_number = :consultationNumber " +
+            "AND (analysis_status <> 'PROCESSING' OR lease_owner = :leaseOwner " +
+            "OR lease_expires_at IS NULL OR lease_expires_at < now())",
+            nativeQuery = true)
+    int claimSpecific(@Param("consultationNumber") String consultationNumber,
+                      @Param("leaseOwner") String leaseOwner,
+                      @Param("leaseSeconds") long leaseSeconds);
+
+    // 처리하지 못한 점유 건을 대기 상태로 되돌림
+    @Modifying
+    @Query(value = "UPDATE tb_stt_data SET analysis_status = 'PENDING', lease_owner = NULL, " +
+            "lease_expires_at = NULL, updated_date = now() " +
+            "WHERE consultation_number = :consultationNumber AND lease_owner = :leaseOwner",
+            nativeQuery = true)
+    int releaseClaim(@Param("consultationNumber") String consultationNumber,
+                     @Param("leaseOwner") String leaseOwner);
+
     @Query("SELECT COUNT(s) FROM SttData s WHERE s.analysisStatus = 'COMPLETED'")
     long countCompletedAnalysis();
 
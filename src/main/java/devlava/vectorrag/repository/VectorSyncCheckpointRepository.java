@@ -0,0 +1,9 @@
+package devlava.vectorrag.repository;
+
+import devlava.vectorrag.entity.VectorSyncCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface VectorSyncCheckpointRepository extends JpaRepository<VectorSyncCheckpoint, String> {
+}
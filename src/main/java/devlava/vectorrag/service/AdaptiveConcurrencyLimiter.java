@@ -0,0 +1,205 @@
+package devlava.vectorrag.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Ollama 호출용 AIMD 동시성 제한기
+ * - 응답 지연이 기준 지연 대비 허용 배수 이내이고 한도까지 사용 중이면 한도를 1씩 늘림
+ * - 실패, 타임아웃 수준 지연, 지연 급증 시 한도를 비율만큼 줄임 (RTT 당 최대 1회)
+ * - 지연은 토큰당 지연(ms / (프롬프트 + 생성 토큰))으로 정규화해 비교 - 상담 길이/출력 길이 차이를 과부하로 오인하지 않도록
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${consultation.analysis.llm.limiter.initial-limit:2}")
+    private int initialLimit;
+
+    @Value("${consultation.analysis.llm.limiter.min-limit:1}")
+    private int minLimit;
+
+    @Value("${consultation.analysis.llm.limiter.max-limit:8}")
+    private int maxLimit;
+
+    @Value("${consultation.analysis.llm.limiter.backoff-ratio:0.7}")
+    private double backoffRatio;
+
+    @Value("${consultation.analysis.llm.limiter.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${consultation.analysis.llm.limiter.timeout-ms:60000}")
+    private long timeoutMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotAvailable = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private double baselineMsPerToken;
+    private double smoothedMsPerToken;
+    private double smoothedLatencyMs;
+    private long lastDecreaseNanos;
+    private long successCount;
+    private long failureCount;
+
+    @PostConstruct
+    public void init() {
+        limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+
+        Gauge.builder("consultation.analysis.llm.in.flight", this, limiter -> limiter.read(() -> limiter.inFlight))
+                .description("Ollama calls currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("consultation.analysis.llm.limit", this, limiter -> limiter.read(() -> limiter.limit))
+                .description("Current adaptive Ollama concurrency limit")
+                .register(meterRegistry);
+        log.info("Adaptive LLM concurrency limiter initialized (limit: {}, range: {}-{})",
+                (int) limit, minLimit, maxLimit);
+    }
+
+    /**
+     * 한도 내에서 호출을 실행하고 토큰당 지연/성공 여부로 한도를 조정
+     *
+     * @param workTokens 결과로부터 이번 호출이 처리한 토큰 수(프롬프트 + 생성)를 구하는 함수, 0 이하면 지연 비교에서 제외
+     */
+    public <T> T execute(Supplier<T> call, ToLongFunction<T> workTokens) throws InterruptedException {
+        acquire();
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        long tokens = 0;
+        try {
+            T result = call.get();
+            success = true;
+            tokens = workTokens.applyAsLong(result);
+            return result;
+        } finally {
+            release(System.nanoTime() - startNanos, tokens, success);
+        }
+    }
+
+    private void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                slotAvailable.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long elapsedNanos, long tokens, boolean success) {
+        double latencyMs = elapsedNanos / 1_000_000.0;
+
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+
+            if (!success || latencyMs > timeoutMs) {
+                failureCount++;
+                decrease("failure or timeout (" + (long) latencyMs + "ms)");
+            } else {
+                successCount++;
+                boolean overloaded = updateLatency(latencyMs, tokens);
+
+                if (overloaded) {
+                    decrease(String.format("latency %.2fms/token over baseline %.2fms/token",
+                            smoothedMsPerToken, baselineMsPerToken));
+                } else if (saturated && limit < maxLimit) {
+                    // 한도를 모두 사용 중일 때만 증가 - 윈도우 당 약 +1
+                    int before = (int) limit;
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                    if ((int) limit > before) {
+                        log.info("LLM concurrency limit increased to {}", (int) limit);
+                    }
+                }
+            }
+
+            slotAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 지연 통계 갱신 후 토큰당 지연이 기준 대비 허용 배수를 넘었는지 반환
+     */
+    private boolean updateLatency(double latencyMs, long tokens) {
+        // 원시 지연은 감소 간격(RTT) 계산에만 사용
+        smoothedLatencyMs = smoothedLatencyMs == 0
+                ? latencyMs
+                : smoothedLatencyMs * 0.8 + latencyMs * 0.2;
+        if (tokens <= 0) {
+            return false;
+        }
+
+        double msPerToken = latencyMs / tokens;
+        // 기준 지연은 관측 최소값을 따르되 모델 변경에 대비해 천천히 상승
+        if (baselineMsPerToken == 0 || msPerToken < baselineMsPerToken) {
+            baselineMsPerToken = msPerToken;
+        } else {
+            baselineMsPerToken = baselineMsPerToken * 0.99 + msPerToken * 0.01;
+        }
+        smoothedMsPerToken = smoothedMsPerToken == 0
+                ? msPerToken
+                : smoothedMsPerToken * 0.8 + msPerToken * 0.2;
+        return smoothedMsPerToken > baselineMsPerToken * latencyTolerance;
+    }
+
+    private void decrease(String reason) {
+        long now = System.nanoTime();
+        long rttNanos = (long) (smoothedLatencyMs * 1_000_000);
+        if (now - lastDecreaseNanos < rttNanos) {
+            return;
+        }
+        lastDecreaseNanos = now;
+
+        int before = (int) limit;
+        limit = Math.max(minLimit, limit * backoffRatio);
+        if ((int) limit < before) {
+            log.warn("LLM concurrency limit decreased to {} - {}", (int) limit, reason);
+        }
+    }
+
+    private double read(Supplier<Number> value) {
+        lock.lock();
+        try {
+            return value.get().doubleValue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        lock.lock();
+        try {
+            return Map.of(
+                    "limit", (int) limit,
+                    "inFlight", inFlight,
+                    "baselineMsPerToken", baselineMsPerToken,
+                    "smoothedMsPerToken", smoothedMsPerToken,
+                    "smoothedLatencyMs", (long) smoothedLatencyMs,
+                    "successCount", successCount,
+                    "failureCount", failureCount
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,18 +1,206 @@
 package devlava.vectorrag.service;
 
+import devlava.vectorrag.dto.LlmUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 @Service
 public class AnalysisMetricsService {
 
+    // 단계별 지연 시간 (Micrometer Timer, /actuator/prometheus 로 노출)
+    public static final String STAGE_PREPROCESS = "preprocess";
+    public static final String STAGE_PREFILTER = "prefilter";
+    public static final String STAGE_EMBED = "embed";
+    public static final String STAGE_VECTOR_SEARCH = "vector_search";
+    // 배치 페이지 단위 일괄 임베딩 + 검색 (페이지당 1회)
+    public static final String STAGE_BULK_RETRIEVAL = "bulk_retrieval";
+    public static final String STAGE_PROMPT_BUILD = "prompt_build";
+    public static final String STAGE_LLM = "llm";
+    public static final String STAGE_PARSE = "parse";
+    public static final String STAGE_DB_SAVE = "db_save";
+    public static final String STAGE_VECTOR_INSERT = "vector_insert";
+
+    public static final String STAGE_TIMER = "consultation.analysis.stage";
+    public static final String TOTAL_TIMER = "consultation.analysis.total";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private Timer totalTimer;
+
+    // 모델별 토큰 사용량
+    private final Map<String, ModelUsage> modelUsages = new ConcurrentHashMap<>();
+
+    private class ModelUsage {
+        final LongAdder calls = new LongAdder();
+        final LongAdder estimatedCalls = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder generatedTokens = new LongAdder();
+        final LongAdder generationNanos = new LongAdder();
+        final LongAdder loadSamples = new LongAdder();
+        final LongAdder loadNanos = new LongAdder();
+
+        final Counter promptTokenCounter;
+        final Counter generatedTokenCounter;
+        final DistributionSummary tokensPerSecond;
+        final Timer loadTimer;
+
+        ModelUsage(String model) {
+            promptTokenCounter = Counter.builder("consultation.llm.tokens")
+                    .tags("model", model, "type", "prompt")
+                    .description("Prompt tokens evaluated by the model (excluding reused KV cache prefix)")
+                    .register(meterRegistry);
+            generatedTokenCounter = Counter.builder("consultation.llm.tokens")
+                    .tags("model", model, "type", "generated")
+                    .description("Tokens generated by the model")
+                    .register(meterRegistry);
+            tokensPerSecond = DistributionSummary.builder("consultation.llm.generation.rate")
+                    .tag("model", model)
+                    .baseUnit("tokens/s")
+                    .description("Generation throughput per call")
+                    .publishPercentiles(0.5, 0.95)
+                    .register(meterRegistry);
+            loadTimer = Timer.builder("consultation.llm.load")
+                    .tag("model", model)
+                    .description("Model load time reported by Ollama")
+                    .register(meterRegistry);
+        }
+    }
+
     private final AtomicInteger totalProcessed = new AtomicInteger(0);
     private final AtomicInteger totalFailed = new AtomicInteger(0);
     private final AtomicLong totalProcessingTime = new AtomicLong(0);
     private final AtomicInteger currentlyProcessing = new AtomicInteger(0);
 
+    // 분석 대기열 깊이 - PENDING 건수(주기적으로 조회한 값)와 점유했지만 아직 시작하지 않은 건수
+    private final AtomicLong pendingBacklog = new AtomicLong(0);
+    private final AtomicInteger claimedBacklog = new AtomicInteger(0);
+
+    // 프롬프트 prefix 캐시 효과 측정
+    private final AtomicLong llmCalls = new AtomicLong(0);
+    private final AtomicLong totalTimeToFirstTokenMs = new AtomicLong(0);
+    private final AtomicLong promptEvalSamples = new AtomicLong(0);
+    private final AtomicLong totalEstimatedPromptTokens = new AtomicLong(0);
+    private final AtomicLong totalEvaluatedPromptTokens = new AtomicLong(0);
+    private final AtomicLong totalPromptEvalNanos = new AtomicLong(0);
+    private final AtomicLong totalPromptEvalSavedNanos = new AtomicLong(0);
+
+    // 상담 내용 압축 (토큰 예산)
+    private final AtomicLong compactionCount = new AtomicLong(0);
+    private final AtomicLong compactedCount = new AtomicLong(0);
+    private final AtomicLong totalOriginalTranscriptTokens = new AtomicLong(0);
+    private final AtomicLong totalCompactedTranscriptTokens = new AtomicLong(0);
+
+    // 넛지 사전 필터
+    private final AtomicLong preFilterChecked = new AtomicLong(0);
+    private final AtomicLong preFilterSkipped = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        totalTimer = histogramTimer(Timer.builder(TOTAL_TIMER)
+                .description("Consultation analysis time from claim to result submission"));
+        Gauge.builder("consultation.analysis.in.flight", currentlyProcessing, AtomicInteger::get)
+                .description("Consultations currently being analysed")
+                .register(meterRegistry);
+        Gauge.builder("consultation.analysis.backlog.pending", pendingBacklog, AtomicLong::get)
+                .description("Consultations waiting for analysis (last periodic count, not queried per scrape)")
+                .register(meterRegistry);
+        Gauge.builder("consultation.analysis.backlog.claimed", claimedBacklog, AtomicInteger::get)
+                .description("Consultations claimed by this node and waiting for an analysis slot")
+                .register(meterRegistry);
+    }
+
+    public void recordPendingBacklog(long pending) {
+        pendingBacklog.set(pending);
+    }
+
+    public void recordClaimedBacklog(int claimed) {
+        claimedBacklog.set(claimed);
+    }
+
+    /**
+     * 단계 실행 시간을 기록하며 실행 (예외가 나도 기록)
+     */
+    public <T> T time(String stage, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            recordStage(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void time(String stage, Runnable step) {
+        long start = System.nanoTime();
+        try {
+            step.run();
+        } finally {
+            recordStage(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void recordStage(String stage, long elapsedNanos) {
+        stageTimers.computeIfAbsent(stage, name -> histogramTimer(Timer.builder(STAGE_TIMER)
+                        .tag("stage", name)
+                        .description("Consultation analysis stage latency")))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer histogramTimer(Timer.Builder builder) {
+        return builder
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(meterRegistry);
+    }
+
+    /**
+     * LLM 호출 1회의 토큰 사용량 기록 (모델별 누적)
+     */
+    public void recordLlmUsage(LlmUsage usage) {
+        ModelUsage model = modelUsages.computeIfAbsent(usage.model(), ModelUsage::new);
+
+        model.calls.increment();
+        if (usage.estimated()) {
+            model.estimatedCalls.increment();
+        }
+        if (usage.promptTokens() != null) {
+            model.promptTokens.add(usage.promptTokens());
+            model.promptTokenCounter.increment(usage.promptTokens());
+        }
+        model.generatedTokens.add(usage.generatedTokens());
+        model.generatedTokenCounter.increment(usage.generatedTokens());
+        model.generationNanos.add(usage.generationNanos());
+        if (usage.generationNanos() > 0) {
+            model.tokensPerSecond.record(usage.tokensPerSecond());
+        }
+        if (usage.loadNanos() != null) {
+            model.loadSamples.increment();
+            model.loadNanos.add(usage.loadNanos());
+            model.loadTimer.record(usage.loadNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
     public void recordProcessingStart() {
         currentlyProcessing.incrementAndGet();
     }
@@ -20,6 +208,7 @@ public class AnalysisMetricsService {
     public void recordProcessingComplete(long processingTimeMs, boolean success) {
         currentlyProcessing.decrementAndGet();
         totalProcessingTime.addAndGet(processingTimeMs);
+        totalTimer.record(processingTimeMs, TimeUnit.MILLISECONDS);
 
         if (success) {
             totalProcessed.incrementAndGet();
@@ -28,6 +217,50 @@ public class AnalysisMetricsService {
         }
     }
 
+    public void recordCompaction(int originalTokens, int compactedTokens, boolean compacted) {
+        compactionCount.incrementAndGet();
+        if (compacted) {
+            compactedCount.incrementAndGet();
+        }
+        totalOriginalTranscriptTokens.addAndGet(originalTokens);
+        totalCompactedTranscriptTokens.addAndGet(compactedTokens);
+    }
+
+    public void recordPreFilter(boolean skippedLlm) {
+        preFilterChecked.incrementAndGet();
+        if (skippedLlm) {
+            preFilterSkipped.incrementAndGet();
+        }
+    }
+
+    /**
+     * LLM 호출 1회의 프롬프트 평가 기록
+     * - Ollama 의 prompt_eval_count 는 KV 캐시에서 재사용한 prefix 를 제외한 토큰 수
+     * - 절약 시간 = (추정 전체 토큰 - 실제 평가 토큰) x 토큰당 평가 시간
+     *
+     * @return 이번 호출에서 절약된 것으로 추정되는 프롬프트 평가 시간(ms), 메타데이터가 없으면 -1
+     */
+    public long recordPromptEvaluation(int estimatedPromptTokens, Long evaluatedPromptTokens,
+                                       Long promptEvalNanos, long timeToFirstTokenMs) {
+        llmCalls.incrementAndGet();
+        totalTimeToFirstTokenMs.addAndGet(timeToFirstTokenMs);
+
+        if (evaluatedPromptTokens == null || promptEvalNanos == null || evaluatedPromptTokens <= 0) {
+            return -1;
+        }
+
+        long reusedTokens = Math.max(0, estimatedPromptTokens - evaluatedPromptTokens);
+        long savedNanos = reusedTokens * (promptEvalNanos / evaluatedPromptTokens);
+
+        promptEvalSamples.incrementAndGet();
+        totalEstimatedPromptTokens.addAndGet(estimatedPromptTokens);
+        totalEvaluatedPromptTokens.addAndGet(evaluatedPromptTokens);
+        totalPromptEvalNanos.addAndGet(promptEvalNanos);
+        totalPromptEvalSavedNanos.addAndGet(savedNanos);
+
+        return savedNanos / 1_000_000;
+    }
+
     public Map<String, Object> getMetrics() {
         int processed = totalProcessed.get();
         int failed = totalFailed.get();
@@ -38,7 +271,91 @@ public class AnalysisMetricsService {
                 "totalFailed", failed,
                 "successRate", processed + failed > 0 ? (double) processed / (processed + failed) * 100 : 0,
                 "averageProcessingTimeMs", avgTime,
-                "currentlyProcessing", currentlyProcessing.get()
+                "currentlyProcessing", currentlyProcessing.get(),
+                "promptCache", getPromptCacheMetrics(),
+                "transcriptCompaction", getCompactionMetrics(),
+                "preFilter", getPreFilterMetrics(),
+                "stages", getStageMetrics(),
+                "llmUsage", getLlmUsageMetrics()
+        );
+    }
+
+    private Map<String, Object> getLlmUsageMetrics() {
+        Map<String, Object> models = new LinkedHashMap<>();
+        modelUsages.forEach((model, usage) -> {
+            long calls = usage.calls.sum();
+            long generated = usage.generatedTokens.sum();
+            long generationNanos = usage.generationNanos.sum();
+            long loadSamples = usage.loadSamples.sum();
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("calls", calls);
+            summary.put("estimatedCalls", usage.estimatedCalls.sum());
+            summary.put("promptTokens", usage.promptTokens.sum());
+            summary.put("generatedTokens", generated);
+            summary.put("averagePromptTokens", calls > 0 ? usage.promptTokens.sum() / calls : 0);
+            summary.put("averageGeneratedTokens", calls > 0 ? generated / calls : 0);
+            summary.put("tokensPerSecond", generationNanos > 0 ? generated * 1_000_000_000.0 / generationNanos : 0);
+            summary.put("averageLoadMs", loadSamples > 0 ? usage.loadNanos.sum() / loadSamples / 1_000_000 : 0);
+            models.put(model, summary);
+        });
+        return models;
+    }
+
+    /**
+     * 단계별 요약 (누적값, resetMetrics 로 초기화되지 않음 - 구간별 분석은 Prometheus 사용)
+     */
+    private Map<String, Object> getStageMetrics() {
+        Map<String, Object> stages = new LinkedHashMap<>();
+        stageTimers.forEach((stage, timer) -> {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", snapshot.count());
+            summary.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+            summary.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                summary.put("p" + Math.round(percentile.percentile() * 100) + "Ms",
+                        percentile.value(TimeUnit.MILLISECONDS));
+            }
+            stages.put(stage, summary);
+        });
+        return stages;
+    }
+
+    private Map<String, Object> getPreFilterMetrics() {
+        long checked = preFilterChecked.get();
+        long skipped = preFilterSkipped.get();
+
+        return Map.of(
+                "checked", checked,
+                "skippedLlm", skipped,
+                "skipRate", checked > 0 ? (double) skipped / checked * 100 : 0
+        );
+    }
+
+    private Map<String, Object> getCompactionMetrics() {
+        long count = compactionCount.get();
+
+        return Map.of(
+                "transcripts", count,
+                "compacted", compactedCount.get(),
+                "averageOriginalTokens", count > 0 ? totalOriginalTranscriptTokens.get() / count : 0,
+                "averageCompactedTokens", count > 0 ? totalCompactedTranscriptTokens.get() / count : 0
+        );
+    }
+
+    private Map<String, Object> getPromptCacheMetrics() {
+        long calls = llmCalls.get();
+        long samples = promptEvalSamples.get();
+
+        return Map.of(
+                "llmCalls", calls,
+                "averageTimeToFirstTokenMs", calls > 0 ? totalTimeToFirstTokenMs.get() / calls : 0,
+                "promptEvalSamples", samples,
+                "averageEstimatedPromptTokens", samples > 0 ? totalEstimatedPromptTokens.get() / samples : 0,
+                "averageEvaluatedPromptTokens", samples > 0 ? totalEvaluatedPromptTokens.get() / samples : 0,
+                "averagePromptEvalMs", samples > 0 ? totalPromptEvalNanos.get() / samples / 1_000_000 : 0,
+                "averagePromptEvalSavedMs", samples > 0 ? totalPromptEvalSavedNanos.get() / samples / 1_000_000 : 0
         );
     }
 
@@ -46,6 +363,18 @@ public class AnalysisMetricsService {
         totalProcessed.set(0);
         totalFailed.set(0);
         totalProcessingTime.set(0);
-        currentlyProcessing.set(0);
+        llmCalls.set(0);
+        totalTimeToFirstTokenMs.set(0);
+        promptEvalSamples.set(0);
+        totalEstimatedPromptTokens.set(0);
+        totalEvaluatedPromptTokens.set(0);
+        totalPromptEvalNanos.set(0);
+        totalPromptEvalSavedNanos.set(0);
+        compactionCount.set(0);
+        compactedCount.set(0);
+        totalOriginalTranscriptTokens.set(0);
+        totalCompactedTranscriptTokens.set(0);
+        preFilterChecked.set(0);
+        preFilterSkipped.set(0);
     }
 }
\ No newline at end of file
@@ -0,0 +1,392 @@
+package devlava.vectorrag.service;
+
+import devlava.vectorrag.dto.ConsultationAnalysisResult;
+import devlava.vectorrag.entity.SttData;
+import devlava.vectorrag.util.ConsultationDocuments;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 분석 결과 write-behind 버퍼
+ * - 완료된 결과를 모아서 JDBC 배치로 한 번에 저장 (상태 업데이트, tb_consultation_vectors, vector_store)
+ * - flush-size 만큼 쌓이거나 flush-interval-ms 가 지나면 저장, 종료 시 남은 결과를 반드시 저장
+ * - 버퍼가 가득 차면 submit 이 대기하여 분석 속도를 저장 속도에 맞춤
+ * - 저장 전에 노드가 죽으면 해당 건은 PROCESSING 점유가 만료된 뒤 다시 분석됨
+ * - 저장 실패 시 같은 묶음을 지수 백오프로 재시도, 끝내 실패하면 점유를 반환하여 바로 다시 분석되도록 함
+ * - 점유를 다른 노드에 뺏긴 건(상태 UPDATE 0건)은 tb_consultation_vectors / vector_store / 재사용 인덱스에 쓰지 않음
+ * - tb_consultation_vectors 는 상담 번호 유니크 인덱스로 upsert (재분석 시 행이 늘지 않음)
+ */
+@Component
+@Slf4j
+public class AnalysisResultWriter {
+
+    private static final String UPDATE_COMPLETED_SQL = """
+            UPDATE tb_stt_data
+            SET response1 = ?, response2 = ?, response3 = ?, response4 = ?, response5 = ?, response6 = ?, response7 = ?,
+                analysis_status = 'COMPLETED', analysis_source = ?, content_simhash = ?, reused_from = ?,
+                llm_prompt_tokens = ?, llm_generated_tokens = ?, llm_generation_ms = ?,
+                analysis_date = ?, updated_date = ?,
+                lease_owner = NULL, lease_expires_at = NULL
+            WHERE consultation_number = ? AND (lease_owner = ? OR lease_owner IS NULL)
+            """;
+
+    private static final String UPDATE_FAILED_SQL = """
+            UPDATE tb_stt_data
+            SET analysis_status = 'FAILED', updated_date = ?, lease_owner = NULL, lease_expires_at = NULL
+            WHERE consultation_number = ? AND (lease_owner = ? OR lease_owner IS NULL)
+            """;
+
+    private static final String UPSERT_VECTOR_SQL = """
+            INSERT INTO tb_consultation_vectors (consultation_number, consultation_content, analysis_result, created_date)
+            VALUES (?, ?, CAST(? AS jsonb), ?)
+            ON CONFLICT (consultation_number) DO UPDATE
+            SET consultation_content = EXCLUDED.consultation_content,
+                analysis_result = EXCLUDED.analysis_result,
+                created_date = EXCLUDED.created_date
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private VectorDocumentStore vectorDocumentStore;
+
+    @Autowired
+    private ConsultationWorkQueue workQueue;
+
+    @Autowired
+    private NearDuplicateIndex nearDuplicateIndex;
+
+    @Autowired
+    private AnalysisMetricsService metricsService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${consultation.analysis.writer.flush-size:50}")
+    private int flushSize;
+
+    @Value("${consultation.analysis.writer.flush-interval-ms:2000}")
+    private long flushIntervalMs;
+
+    @Value("${consultation.analysis.writer.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${consultation.analysis.llm.store-usage:true}")
+    private boolean storeLlmUsage;
+
+    @Value("${consultation.analysis.writer.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${consultation.analysis.writer.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    private BlockingQueue<PendingResult> queue;
+
+    // 저장에 실패하여 다시 시도할 묶음 (flushLock 안에서만 접근)
+    private final List<PendingResult> retryBuffer = new ArrayList<>();
+    private int failedAttempts;
+    private long nextRetryAtMillis;
+
+    private ScheduledExecutorService flusher;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile boolean closed;
+
+    /**
+     * result 가 null 이면 실패 건
+     */
+    private record PendingResult(SttData sttData, ConsultationAnalysisResult result) {
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            ensureVectorUniqueKey();
+        } catch (Exception e) {
+            log.warn("Failed to create consultation number unique index on tb_consultation_vectors: {}", e.getMessage());
+        }
+
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        Gauge.builder("consultation.analysis.writer.queue", queue, BlockingQueue::size)
+                .description("Analysis results waiting to be flushed")
+                .register(meterRegistry);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "analysis-result-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * upsert 용 상담 번호 유니크 인덱스 - 이전에 쌓인 중복 행은 가장 최근 행만 남기고 삭제
+     */
+    private void ensureVectorUniqueKey() {
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS tb_consultation_vectors (
+                id bigserial PRIMARY KEY,
+                consultation_number varchar(255),
+                consultation_content text,
+                analysis_result jsonb,
+                similarity_score double precision,
+                created_date timestamp
+            )
+            """);
+        int removed = jdbcTemplate.update("""
+            DELETE FROM tb_consultation_vectors v
+            USING tb_consultation_vectors newer
+            WHERE v.consultation_number = newer.consultation_number
+              AND v.id < newer.id
+            """);
+        if (removed > 0) {
+            log.info("Removed {} duplicate rows from tb_consultation_vectors", removed);
+        }
+        jdbcTemplate.execute("""
+            CREATE UNIQUE INDEX IF NOT EXISTS uk_consultation_vectors_consultation_number
+            ON tb_consultation_vectors (consultation_number)
+            """);
+    }
+
+    /**
+     * 기본값으로 대체된 결과(FALLBACK)는 실패로 저장 - 완료 상태/참고 사례로 남기지 않음
+     */
+    public void submit(SttData sttData, ConsultationAnalysisResult result) {
+        if (ConsultationAnalysisResult.SOURCE_FALLBACK.equals(result.getAnalysisSource())) {
+            log.warn("Fallback result for consultation {} stored as failure", sttData.getConsultationNumber());
+            submitFailure(sttData);
+            return;
+        }
+        enqueue(new PendingResult(sttData, result));
+    }
+
+    public void submitFailure(SttData sttData) {
+        enqueue(new PendingResult(sttData, null));
+    }
+
+    private void enqueue(PendingResult pending) {
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("분석 결과 저장 대기 중 인터럽트 발생", e);
+        }
+
+        if (closed) {
+            flush();
+        } else if (queue.size() >= flushSize) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush(false);
+        } catch (Exception e) {
+            log.error("Failed to flush analysis results", e);
+        }
+    }
+
+    /**
+     * 버퍼에 쌓인 결과를 배치로 저장 (재시도 대기 중이어도 바로 시도)
+     */
+    public void flush() {
+        flush(true);
+    }
+
+    private void flush(boolean force) {
+        flushLock.lock();
+        try {
+            if (!force && !retryBuffer.isEmpty() && System.currentTimeMillis() < nextRetryAtMillis) {
+                return;
+            }
+
+            List<PendingResult> pending = new ArrayList<>(retryBuffer);
+            retryBuffer.clear();
+            queue.drainTo(pending);
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            List<PendingResult> completed = pending.stream().filter(p -> p.result() != null).toList();
+            List<PendingResult> failed = pending.stream().filter(p -> p.result() == null).toList();
+            List<Document> documents = completed.stream()
+                    .map(p -> ConsultationDocuments.fromAnalysisResult(p.sttData(), p.result()))
+                    .toList();
+
+            boolean[] owned;
+            try {
+                owned = metricsService.time(AnalysisMetricsService.STAGE_DB_SAVE,
+                        () -> writeRelational(completed, failed, documents));
+            } catch (Exception e) {
+                handleWriteFailure(pending, e);
+                return;
+            }
+            failedAttempts = 0;
+
+            List<PendingResult> written = new ArrayList<>(completed.size());
+            List<Document> writtenDocuments = new ArrayList<>(completed.size());
+            for (int i = 0; i < completed.size(); i++) {
+                if (owned[i]) {
+                    written.add(completed.get(i));
+                    writtenDocuments.add(documents.get(i));
+                }
+            }
+
+            // 저장이 끝난 LLM 분석 결과만 재사용 후보로 등록
+            written.stream()
+                    .filter(p -> ConsultationAnalysisResult.SOURCE_LLM.equals(p.result().getAnalysisSource()))
+                    .filter(p -> p.sttData().getContentSimhash() != null)
+                    .forEach(p -> nearDuplicateIndex.add(p.sttData().getConsultationNumber(),
+                            p.sttData().getContentSimhash()));
+
+            // Vector Store 저장 실패는 메인 저장에 영향 없음
+            try {
+                metricsService.time(AnalysisMetricsService.STAGE_VECTOR_INSERT,
+                        () -> vectorDocumentStore.upsert(writtenDocuments));
+            } catch (Exception e) {
+                log.warn("Failed to save {} documents to vector store", writtenDocuments.size(), e);
+            }
+
+            if (written.size() < completed.size()) {
+                log.warn("Skipped {} analysis results whose lease was taken over by another node",
+                        completed.size() - written.size());
+            }
+            log.info("Flushed analysis results - completed: {}, failed: {}", written.size(), failed.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 저장 실패 - 재시도 횟수가 남았으면 다음 flush 에서 다시 저장, 끝내 실패하면 점유 반환
+     */
+    private void handleWriteFailure(List<PendingResult> pending, Exception e) {
+        failedAttempts++;
+        if (failedAttempts <= maxRetries && !closed) {
+            long backoffMs = retryBackoffMs << Math.min(failedAttempts - 1, 10);
+            retryBuffer.addAll(pending);
+            nextRetryAtMillis = System.currentTimeMillis() + backoffMs;
+            log.warn("Failed to flush {} analysis results (attempt {}/{}), retrying in {}ms: {}",
+                    pending.size(), failedAttempts, maxRetries, backoffMs, e.getMessage());
+            return;
+        }
+
+        log.error("Giving up on {} analysis results after {} attempts, releasing their claims",
+                pending.size(), failedAttempts, e);
+        failedAttempts = 0;
+        for (PendingResult p : pending) {
+            try {
+                workQueue.release(p.sttData());
+            } catch (Exception releaseError) {
+                log.warn("Failed to release claim for consultation {}: {}",
+                        p.sttData().getConsultationNumber(), releaseError.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return completed 순서대로 이 노드의 점유로 상태가 갱신되었는지 여부
+     */
+    private boolean[] writeRelational(List<PendingResult> completed, List<PendingResult> failed,
+                                      List<Document> documents) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String nodeId = workQueue.getNodeId();
+        boolean[] owned = new boolean[completed.size()];
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!completed.isEmpty()) {
+                int[] updateCounts = jdbcTemplate.batchUpdate(UPDATE_COMPLETED_SQL, completed.stream()
+                        .map(p -> new Object[]{
+                                p.result().getMainInquiry(),
+                                p.result().getHasMarketing(),
+                                p.result().getMarketingType(),
+                                p.result().getMarketingMent(),
+                                p.result().getCustomerAgreed(),
+                                p.result().getInappropriateMarketing(),
+                                p.result().getInappropriateMent(),
+                                p.result().getAnalysisSource(),
+                                p.sttData().getContentSimhash(),
+                                p.result().getReusedFrom(),
+                                storeUsage(p) ? p.result().getLlmUsage().promptTokens() : null,
+                                storeUsage(p) ? p.result().getLlmUsage().generatedTokens() : null,
+                                storeUsage(p) ? p.result().getLlmUsage().generationMs() : null,
+                                now,
+                                now,
+                                p.sttData().getConsultationNumber(),
+                                nodeId
+                        })
+                        .toList());
+
+                List<Object[]> vectorRows = new ArrayList<>(completed.size());
+                for (int i = 0; i < completed.size(); i++) {
+                    // 점유를 잃은 건은 다른 노드가 저장하므로 건너뜀
+                    owned[i] = updateCounts[i] == 1;
+                    if (!owned[i]) {
+                        continue;
+                    }
+                    SttData sttData = completed.get(i).sttData();
+                    vectorRows.add(new Object[]{
+                            sttData.getConsultationNumber(),
+                            sttData.getConsultationContent(),
+                            ConsultationDocuments.analysisResultJson(documents.get(i)),
+                            now
+                    });
+                }
+                if (!vectorRows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPSERT_VECTOR_SQL, vectorRows);
+                }
+            }
+
+            if (!failed.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_FAILED_SQL, failed.stream()
+                        .map(p -> new Object[]{now, p.sttData().getConsultationNumber(), nodeId})
+                        .toList());
+            }
+        });
+        return owned;
+    }
+
+    private boolean storeUsage(PendingResult pending) {
+        return storeLlmUsage && pending.result().getLlmUsage() != null;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("Analysis result writer stopped");
+    }
+}
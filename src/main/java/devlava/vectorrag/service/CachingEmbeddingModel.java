@@ -0,0 +1,320 @@
+package devlava.vectorrag.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 내용 주소 기반 임베딩 캐시 - 정규화된 텍스트와 실제 사용 모델/차원(요청 옵션 우선)의 SHA-256 해시를 키로 사용
+ * - 1차: 크기 제한 LRU 메모리 캐시
+ * - 2차: (선택) 디스크 캐시, 재시작 후에도 같은 텍스트는 다시 임베딩하지 않음
+ * - 다른 스레드가 임베딩 중인 텍스트는 다시 요청하지 않고 그 결과를 기다림
+ * - 적중/미스는 모두 입력 건 단위로 집계 (중복 입력, 진행 중 요청 공유는 deduplicated 로 따로 집계)
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final Path diskCacheDir;
+    private final Map<String, float[]> memoryCache;
+    private final Map<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong memoryHits = new AtomicLong(0);
+    private final AtomicLong diskHits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong deduplicated = new AtomicLong(0);
+    private final AtomicLong delegated = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, int maxEntries, Path diskCacheDir) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.diskCacheDir = diskCacheDir;
+        this.memoryCache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        });
+
+        if (diskCacheDir != null) {
+            try {
+                Files.createDirectories(diskCacheDir);
+                log.info("Embedding disk cache enabled at {}", diskCacheDir);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create embedding cache directory: " + diskCacheDir, e);
+            }
+        }
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> inputs = request.getInstructions();
+        float[][] vectors = new float[inputs.size()][];
+        String modelKey = modelKey(request.getOptions());
+
+        // 캐시에 없는 텍스트 - 이 요청이 임베딩할 것(owned)과 다른 요청의 결과를 기다릴 것(waiting)으로 나눔
+        Map<String, List<Integer>> missPositions = new LinkedHashMap<>();
+        Map<String, String> ownedTexts = new LinkedHashMap<>();
+        Map<String, CompletableFuture<float[]>> owned = new LinkedHashMap<>();
+        Map<String, CompletableFuture<float[]>> waiting = new LinkedHashMap<>();
+
+        for (int i = 0; i < inputs.size(); i++) {
+            String normalized = normalize(inputs.get(i));
+            String key = cacheKey(modelKey, normalized);
+
+            float[] cached = lookup(key);
+            if (cached != null) {
+                vectors[i] = cached;
+                continue;
+            }
+
+            misses.incrementAndGet();
+            List<Integer> positions = missPositions.computeIfAbsent(key, k -> new ArrayList<>());
+            positions.add(i);
+            if (positions.size() > 1) {
+                deduplicated.incrementAndGet();
+                continue;
+            }
+
+            CompletableFuture<float[]> flight = new CompletableFuture<>();
+            CompletableFuture<float[]> existing = inFlight.putIfAbsent(key, flight);
+            if (existing != null) {
+                deduplicated.incrementAndGet();
+                waiting.put(key, existing);
+            } else {
+                owned.put(key, flight);
+                ownedTexts.put(key, normalized);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            embedOwned(ownedTexts, owned, request);
+        }
+
+        Map<String, CompletableFuture<float[]>> flights = new LinkedHashMap<>(owned);
+        flights.putAll(waiting);
+        for (Map.Entry<String, CompletableFuture<float[]>> entry : flights.entrySet()) {
+            float[] vector;
+            try {
+                vector = entry.getValue().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            for (int i : missPositions.get(entry.getKey())) {
+                vectors[i] = vector;
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            if (vectors[i] == null) {
+                throw new IllegalStateException("Embedding model returned no vector for input " + i);
+            }
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    /**
+     * 이 요청이 맡은 텍스트를 한 번에 위임하고, 기다리는 요청이 있을 수 있으므로 성공/실패와 관계없이 모두 완료 처리
+     */
+    private void embedOwned(Map<String, String> ownedTexts, Map<String, CompletableFuture<float[]>> owned,
+                            EmbeddingRequest request) {
+        List<String> keys = new ArrayList<>(ownedTexts.keySet());
+        try {
+            delegated.addAndGet(keys.size());
+            EmbeddingResponse response = delegate.call(
+                    new EmbeddingRequest(new ArrayList<>(ownedTexts.values()), request.getOptions()));
+
+            List<Embedding> results = response.getResults();
+            for (int j = 0; j < results.size(); j++) {
+                Embedding embedding = results.get(j);
+                int position = embedding.getIndex() != null ? embedding.getIndex() : j;
+                String key = keys.get(position);
+                float[] vector = embedding.getOutput();
+
+                store(key, vector);
+                owned.get(key).complete(vector);
+            }
+
+            IllegalStateException missing = new IllegalStateException("Embedding model returned no vector");
+            owned.values().forEach(flight -> flight.completeExceptionally(missing));
+        } catch (RuntimeException e) {
+            owned.values().forEach(flight -> flight.completeExceptionally(e));
+            throw e;
+        } finally {
+            owned.forEach(inFlight::remove);
+        }
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getContent());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private float[] lookup(String key) {
+        float[] vector = memoryCache.get(key);
+        if (vector != null) {
+            memoryHits.incrementAndGet();
+            return vector;
+        }
+
+        vector = readFromDisk(key);
+        if (vector != null) {
+            diskHits.incrementAndGet();
+            memoryCache.put(key, vector);
+        }
+        return vector;
+    }
+
+    private void store(String key, float[] vector) {
+        memoryCache.put(key, vector);
+        writeToDisk(key, vector);
+    }
+
+    private float[] readFromDisk(String key) {
+        if (diskCacheDir == null) {
+            return null;
+        }
+
+        Path file = diskPath(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            float[] vector = new float[buffer.getInt()];
+            buffer.asFloatBuffer().get(vector);
+            return vector;
+        } catch (Exception e) {
+            log.warn("Failed to read cached embedding {}, recomputing: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, float[] vector) {
+        if (diskCacheDir == null) {
+            return;
+        }
+
+        Path file = diskPath(key);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + vector.length * Float.BYTES);
+            buffer.putInt(vector.length);
+            buffer.asFloatBuffer().put(vector);
+
+            // 임시 파일에 쓴 뒤 이동하여 다른 스레드가 반쯤 쓰인 파일을 읽지 않도록 함
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(temp, buffer.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write embedding cache file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path diskPath(String key) {
+        return diskCacheDir.resolve(key.substring(0, 2)).resolve(key + ".vec");
+    }
+
+    /**
+     * 요청 옵션의 모델/차원이 있으면 우선 - 옵션이 다르면 다른 벡터이므로 다른 키
+     */
+    private String modelKey(EmbeddingOptions options) {
+        String model = options != null && options.getModel() != null ? options.getModel() : modelName;
+        Integer dimensions = options != null ? options.getDimensions() : null;
+        return dimensions != null ? model + "/" + dimensions : model;
+    }
+
+    private String cacheKey(String modelKey, String normalizedText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelKey.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalizedText.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 제어문자 제거 및 연속 공백 정리 - 의미가 같은 텍스트가 같은 키를 갖도록 함
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c <= ' ' || c == 0x7F || Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    public Map<String, Object> getStats() {
+        long memory = memoryHits.get();
+        long disk = diskHits.get();
+        long miss = misses.get();
+        long total = memory + disk + miss;
+
+        return Map.of(
+                "model", modelName,
+                "memoryEntries", memoryCache.size(),
+                "memoryHits", memory,
+                "diskHits", disk,
+                "misses", miss,
+                "deduplicated", deduplicated.get(),
+                "delegated", delegated.get(),
+                "evictions", evictions.get(),
+                "hitRate", total > 0 ? (double) (memory + disk) / total * 100 : 0,
+                "diskTierEnabled", diskCacheDir != null
+        );
+    }
+}
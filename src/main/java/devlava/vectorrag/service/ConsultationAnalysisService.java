@@ -1,61 +1,193 @@
 // src/main/java/devlava/service/ConsultationAnalysisService.java
 package devlava.vectorrag.service;
 
+import devlava.vectorrag.dto.CompactedTranscript;
 import devlava.vectorrag.dto.ConsultationAnalysisResult;
-import devlava.vectorrag.entity.SttData;
-import devlava.vectorrag.entity.ConsultationVector;
-import devlava.vectorrag.repository.SttDataRepository;
-import devlava.vectorrag.repository.ConsultationVectorRepository;
+import devlava.vectorrag.dto.LlmUsage;
+import devlava.vectorrag.util.AnalysisResultMerger;
+import devlava.vectorrag.util.AnalysisResultParser;
 import devlava.vectorrag.util.ConsultationAnalysisLogger;
+import devlava.vectorrag.util.JsonStreamCollector;
+import devlava.vectorrag.util.OllamaResponseMetadata;
+import devlava.vectorrag.util.TokenEstimator;
 
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.ollama.api.OllamaOptions;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.annotation.Propagation;
 import lombok.extern.slf4j.Slf4j;
 
-import java.time.LocalDateTime;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @Slf4j
 public class ConsultationAnalysisService {
 
+    private static final int SIMILAR_TOP_K = 3;
+    private static final double SIMILARITY_THRESHOLD = 0.75;
+
+    /**
+     * 고정 지시문 (넛지 유형, 부적절 기준, 출력 스키마)
+     * - 매 요청 동일한 system 메시지로 맨 앞에 두어 Ollama KV 캐시의 prefix 로 재사용되도록 함
+     * - 한 글자라도 바뀌면 캐시가 깨지므로 요청별 값은 절대 넣지 않음
+     */
+    private static final String SYSTEM_PROMPT = """
+            통신사 상담에서 상담사의 넛지 활동을 분석해주세요.
+
+            === 넛지 유형 ===
+            1. 생활패턴연결: 취미/습관 파악하여 서비스 연결
+            2. 사회적증거: "다른 고객들도", "인기 상품" 등
+            3. 손실회피: "손해보고 계세요", "놓치실 수 있어요"
+            4. 개인화추천: 고객 상황에 맞는 맞춤 제안
+            5. 결합혜택: 여러 서비스 묶어서 할인 강조
+            6. 한정혜택: 기간 한정, 특별 프로모션
+
+            === 부적절한 넛지 ===
+            - 강압적 어조
+            - 개인정보 남용
+            - 허위 정보
+            - 불필요한 강요
+
+            아래 JSON 형태로만 답변하세요:
+            {
+                "mainInquiry": "고객 문의 요약",
+                "hasNudge": "Y 또는 N",
+                "nudgeType": "위 6가지 중 하나 또는 N",
+                "nudgeContent": "상담사 멘트 인용 또는 N",
+                "customerResponse": "Y 또는 N",
+                "inappropriateNudge": "Y 또는 N",
+                "inappropriateReason": "이유 또는 N"
+            }
+            """;
+
+    private static final int SYSTEM_PROMPT_TOKENS = TokenEstimator.estimate(SYSTEM_PROMPT);
+
     @Autowired
-    private SttDataRepository sttDataRepository;
+    private VectorStore vectorStore;
 
     @Autowired
-    private ConsultationVectorRepository consultationVectorRepository;
+    private HnswVectorStore hnswVectorStore;
 
     @Autowired
-    private VectorStore vectorStore;
+    private EmbeddingModel embeddingModel;
 
     @Autowired
     private ChatClient.Builder chatClientBuilder;
 
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private SimilarConsultationCache similarConsultationCache;
+
+    @Autowired
+    private AnalysisMetricsService metricsService;
+
+    @Autowired
+    private TranscriptCompactor transcriptCompactor;
+
+    @Autowired
+    private NudgePreFilter nudgePreFilter;
+
+    @Autowired
+    @Qualifier("analysisWindowExecutor")
+    private TaskExecutor windowExecutor;
+
     @Value("${spring.ai.ollama.chat.options.model:llama3.1:8b}")
     private String chatModel;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private ChatClient chatClient;
+    @Value("${consultation.analysis.llm.json-format:true}")
+    private boolean jsonFormatEnabled;
+
+    @Value("${consultation.analysis.llm.streaming:true}")
+    private boolean streamingEnabled;
 
+    @Value("${consultation.analysis.llm.stream-max-prefix-chars:200}")
+    private int streamMaxPrefixChars;
+
+    @Value("${consultation.analysis.llm.stream-timeout-ms:120000}")
+    private long streamTimeoutMs;
+
+    @Value("${consultation.analysis.llm.keep-alive:30m}")
+    private String keepAlive;
+
+    @Value("${consultation.analysis.long-transcript.enabled:true}")
+    private boolean longTranscriptEnabled;
+
+    @Value("${consultation.analysis.long-transcript.threshold-tokens:1800}")
+    private int longTranscriptThresholdTokens;
+
+    @Value("${consultation.analysis.long-transcript.window-tokens:1000}")
+    private int windowTokens;
+
+    @Value("${consultation.analysis.long-transcript.overlap-turns:2}")
+    private int windowOverlapTurns;
+
+    @Value("${consultation.analysis.long-transcript.max-windows:6}")
+    private int maxWindows;
+
+    @Value("${consultation.analysis.retrieval.time-window-days:0}")
+    private int retrievalTimeWindowDays;
+
+    @Value("${consultation.analysis.retrieval.consultants:}")
+    private List<String> retrievalConsultants;
+
+    @Value("${consultation.analysis.retrieval.has-nudge:}")
+    private String retrievalHasNudge;
+
+    @Value("${consultation.analysis.retrieval.nudge-types:}")
+    private List<String> retrievalNudgeTypes;
+
+    private volatile ChatClient chatClient;
+
+    /**
+     * 모델 응답 본문과 토큰 사용량
+     */
+    private record LlmResponse(String content, LlmUsage usage) {
+    }
+
+    /**
+     * ChatClient 지연 초기화 - 여러 분석 스레드에서 동시에 호출되어도 한 번만 생성
+     */
     private void initializeChatClient() {
         if (chatClient == null) {
-            chatClient = chatClientBuilder
-                    .defaultOptions(OllamaOptions.create()
+            synchronized (this) {
+                if (chatClient == null) {
+                    OllamaOptions options = OllamaOptions.create()
                             .withModel(chatModel)
-                            .withTemperature(0.1))
-                    .build();
+                            .withTemperature(0.1)
+                            // 모델이 내려가면 KV 캐시도 사라지므로 배치 간격보다 길게 유지
+                            .withKeepAlive(keepAlive);
+                    if (jsonFormatEnabled) {
+                        // Ollama JSON 모드 - 디코딩 단계에서 유효한 JSON만 생성하도록 제한
+                        options = options.withFormat("json");
+                    }
+                    chatClient = chatClientBuilder
+                            .defaultSystem(SYSTEM_PROMPT)
+                            .defaultOptions(options)
+                            .build();
+                }
+            }
         }
     }
 
@@ -68,19 +200,51 @@ public class ConsultationAnalysisService {
             log.info("상담 내용 길이: {}", consultationContent.length());
 
             // 입력 텍스트 전처리
-            String cleanedContent = preprocessConsultationContent(consultationContent);
-            log.debug("전처리된 내용 길이: {}", cleanedContent.length());
+            long preprocessStart = System.nanoTime();
+            List<TranscriptCompactor.Turn> turns = transcriptCompactor.splitTurns(consultationContent);
+            long splitNanos = System.nanoTime() - preprocessStart;
+
+            // 명백한 비넛지 상담은 임베딩/검색/LLM 호출 없이 바로 확정
+            if (nudgePreFilter.isEnabled()) {
+                NudgePreFilter.Decision decision = metricsService.time(AnalysisMetricsService.STAGE_PREFILTER,
+                        () -> nudgePreFilter.classify(turns));
+                metricsService.recordPreFilter(decision.clearNegative());
+                if (decision.clearNegative()) {
+                    log.info("사전 필터 - 넛지 단서 없음, LLM 분석 생략");
+                    return nudgePreFilter.negativeResult(turns);
+                }
+                log.debug("사전 필터 - 매칭 카테고리: {}", decision.matchedCategories());
+            }
+
+            long compactStart = System.nanoTime();
+            CompactedTranscript transcript = preprocessConsultationContent(turns);
+            metricsService.recordStage(AnalysisMetricsService.STAGE_PREPROCESS,
+                    splitNanos + System.nanoTime() - compactStart);
+            String cleanedContent = transcript.text();
+            log.info("전처리 완료 - 발화 {}/{}, 추정 토큰 {} -> {}", transcript.keptTurns(), transcript.totalTurns(),
+                    transcript.originalTokens(), transcript.estimatedTokens());
 
             List<Document> similarDocuments = findSimilarConsultationsWithCache(cleanedContent);
             log.info("유사 문서 개수: {}", similarDocuments.size());
 
+            long promptBuildStart = System.nanoTime();
             String context = buildOptimizedContext(similarDocuments);
+
+            // 긴 상담은 잘라내지 않고 구간별로 나눠 병렬 분석 후 병합
+            if (longTranscriptEnabled && transcript.originalTokens() > longTranscriptThresholdTokens) {
+                return analyzeInWindows(turns, transcript.originalTokens(), context, promptBuildStart);
+            }
+
             String optimizedPrompt = createOptimizedPrompt(cleanedContent, context);
+            metricsService.recordStage(AnalysisMetricsService.STAGE_PROMPT_BUILD, System.nanoTime() - promptBuildStart);
 
             // AI 호출을 try-catch로 감싸서 안전하게 처리
-            String response = callAIWithSafetyWrapper(optimizedPrompt);
+            LlmResponse response = callAIWithSafetyWrapper(optimizedPrompt);
 
-            return parseAndValidateResult(response);
+            ConsultationAnalysisResult result = metricsService.time(AnalysisMetricsService.STAGE_PARSE,
+                    () -> parseAndValidateResult(response.content()));
+            result.setLlmUsage(response.usage());
+            return result;
 
         } catch (Exception e) {
             log.error("RAG 분석 중 오류 발생 - 상담 내용: {}",
@@ -90,32 +254,95 @@ public class ConsultationAnalysisService {
     }
 
     /**
-     * 입력 텍스트 전처리 - 특수문자 및 인코딩 문제 해결
+     * 입력 텍스트 전처리 - 제어문자/공백 정리, 발화 분리 후 넛지 관련 발화 위주로 토큰 예산에 맞춤
      */
-    private String preprocessConsultationContent(String content) {
-        if (content == null) {
-            return "";
-        }
+    CompactedTranscript preprocessConsultationContent(String content) {
+        return preprocessConsultationContent(transcriptCompactor.splitTurns(content));
+    }
 
-        // 특수문자 및 제어문자 제거
-        String cleaned = content
-                .replaceAll("[\\x00-\\x1F\\x7F]", " ")  // 제어문자 제거
-                .replaceAll("\\s+", " ")               // 연속 공백 하나로
-                .trim();
+    private CompactedTranscript preprocessConsultationContent(List<TranscriptCompactor.Turn> turns) {
+        CompactedTranscript transcript = transcriptCompactor.compact(turns);
+        metricsService.recordCompaction(transcript.originalTokens(), transcript.estimatedTokens(), transcript.isCompacted());
+        return transcript;
+    }
+
+    /**
+     * 긴 상담 분석 (map-reduce)
+     * - 발화 경계에서 겹치는 구간으로 나눠 구간별로 병렬 분석 후 AnalysisResultMerger 규칙으로 병합
+     * - 참고 사례는 전체 상담 기준으로 한 번만 검색하여 모든 구간이 같은 prefix(system + 참고 사례)를 공유
+     * - 구간은 구간 크기 자체를 예산으로 보내므로 압축 예산(compaction.token-budget)보다 커도 발화를 버리지 않음
+     * - 실패한 구간은 제외하고 병합, 모든 구간이 실패하면 예외
+     */
+    private ConsultationAnalysisResult analyzeInWindows(List<TranscriptCompactor.Turn> turns, int totalTokens,
+                                                        String context, long promptBuildStart) {
+        long startTime = System.currentTimeMillis();
+
+        // 구간 수가 max-windows 를 크게 넘지 않도록 구간 크기를 키움
+        int effectiveWindowTokens = Math.max(windowTokens, (int) Math.ceil((double) totalTokens / maxWindows));
+        List<List<TranscriptCompactor.Turn>> windows =
+                transcriptCompactor.windows(turns, effectiveWindowTokens, windowOverlapTurns);
+        log.info("긴 상담 구간 분석 - 추정 토큰: {}, 구간: {}개 (구간당 {} 토큰)",
+                totalTokens, windows.size(), effectiveWindowTokens);
+
+        // 구간 프롬프트는 미리 만들어 단일 분석 경로와 같게 prompt_build 단계로 한 번 기록
+        List<String> prompts = windows.stream()
+                .map(window -> createOptimizedPrompt(windowContent(window, effectiveWindowTokens), context))
+                .toList();
+        metricsService.recordStage(AnalysisMetricsService.STAGE_PROMPT_BUILD, System.nanoTime() - promptBuildStart);
+
+        List<CompletableFuture<ConsultationAnalysisResult>> futures = prompts.stream()
+                .map(prompt -> CompletableFuture.supplyAsync(() -> analyzeWindow(prompt), windowExecutor))
+                .toList();
+
+        List<ConsultationAnalysisResult> results = new ArrayList<>(windows.size());
+        for (int i = 0; i < futures.size(); i++) {
+            ConsultationAnalysisResult result = futures.get(i).join();
+            if (result != null) {
+                results.add(result);
+            } else {
+                log.warn("구간 {}/{} 분석 실패 - 병합에서 제외", i + 1, windows.size());
+            }
+        }
 
-        // 너무 긴 텍스트는 잘라내기 (토큰 한계 고려)
-        if (cleaned.length() > 2000) {
-            cleaned = cleaned.substring(0, 2000) + "...";
-            log.debug("긴 텍스트를 2000자로 제한했습니다");
+        if (results.isEmpty()) {
+            throw new RuntimeException("모든 구간 분석이 실패했습니다");
         }
 
-        return cleaned;
+        ConsultationAnalysisResult merged = AnalysisResultMerger.merge(results);
+        merged.setAnalysisSource(ConsultationAnalysisResult.SOURCE_LLM);
+        merged.setLlmUsage(results.stream()
+                .map(ConsultationAnalysisResult::getLlmUsage)
+                .reduce(null, (total, usage) -> total == null ? usage : total.plus(usage)));
+        log.info("긴 상담 구간 분석 완료 - 성공 구간: {}/{}, 소요 시간: {}ms",
+                results.size(), windows.size(), System.currentTimeMillis() - startTime);
+        return merged;
+    }
+
+    /**
+     * 구간 내용 - 구간 크기를 예산으로 사용하여 발화를 그대로 보냄 (단일 발화가 구간보다 긴 경우만 압축)
+     */
+    private String windowContent(List<TranscriptCompactor.Turn> window, int windowTokens) {
+        return transcriptCompactor.compact(window, windowTokens).text();
+    }
+
+    private ConsultationAnalysisResult analyzeWindow(String prompt) {
+        try {
+            LlmResponse response = callAIWithSafetyWrapper(prompt);
+
+            ConsultationAnalysisResult result = AnalysisResultParser.parse(response.content());
+            validateAndCleanResult(result);
+            result.setLlmUsage(response.usage());
+            return result;
+        } catch (Exception e) {
+            log.warn("구간 분석 실패: {}", e.getMessage());
+            return null;
+        }
     }
 
     /**
      * AI 호출을 안전하게 처리
      */
-    private String callAIWithSafetyWrapper(String prompt) {
+    private LlmResponse callAIWithSafetyWrapper(String prompt) {
         int maxRetries = 3;
         long baseDelay = 1000; // 1초
 
@@ -123,18 +350,21 @@ public class ConsultationAnalysisService {
             try {
                 log.debug("AI 호출 시도 {}/{}", attempt, maxRetries);
 
-                String response = chatClient.prompt()
-                        .user(prompt)
-                        .call()
-                        .content();
+                // 적응형 동시성 제한기를 통해 Ollama가 감당 가능한 만큼만 동시 호출 (지연은 처리 토큰 수로 정규화)
+                LlmResponse response = concurrencyLimiter.execute(
+                        () -> metricsService.time(AnalysisMetricsService.STAGE_LLM, () -> callChatModel(prompt)),
+                        result -> workTokens(prompt, result.usage()));
 
-                if (response != null && !response.trim().isEmpty()) {
-                    log.debug("AI 응답 성공 (길이: {})", response.length());
+                if (response.content() != null && !response.content().trim().isEmpty()) {
+                    log.debug("AI 응답 성공 (길이: {})", response.content().length());
                     return response;
                 } else {
                     throw new RuntimeException("AI 응답이 비어있음");
                 }
 
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("AI 호출 중 인터럽트 발생", ie);
             } catch (Exception e) {
                 log.warn("AI 호출 시도 {}/{} 실패: {}", attempt, maxRetries, e.getMessage());
 
@@ -155,16 +385,153 @@ public class ConsultationAnalysisService {
         throw new RuntimeException("AI 호출 재시도 한계 초과");
     }
 
-    @Cacheable(value = "similarConsultations", key = "#consultationContent.hashCode()")
+    /**
+     * 호출 1회가 처리한 토큰 수 - 프롬프트 평가 토큰을 모르면 프롬프트 길이로 추정
+     */
+    private long workTokens(String prompt, LlmUsage usage) {
+        if (usage == null) {
+            return 0;
+        }
+        long promptTokens = usage.promptTokens() != null
+                ? usage.promptTokens()
+                : SYSTEM_PROMPT_TOKENS + TokenEstimator.estimate(prompt);
+        return promptTokens + usage.generatedTokens();
+    }
+
+    /**
+     * 모델 호출 - 스트리밍 모드에서는 최상위 JSON 객체가 닫히는 즉시 생성을 중단
+     * - 호출마다 첫 토큰까지의 시간과 prompt_eval 메타데이터를 기록하여 prefix 재사용 효과를 측정
+     * - 토큰 수/생성 시간/모델 로드 시간은 Ollama 최종 통계를 사용하고, 스트리밍을 끊어 통계가 없으면 청크 수로 추정
+     */
+    private LlmResponse callChatModel(String prompt) {
+        long startNanos = System.nanoTime();
+
+        if (!streamingEnabled) {
+            ChatResponse response = chatClient.prompt()
+                    .user(prompt)
+                    .call()
+                    .chatResponse();
+            long elapsedNanos = System.nanoTime() - startNanos;
+            String content = OllamaResponseMetadata.content(response);
+
+            recordPromptEvaluation(prompt, response, elapsedNanos);
+            LlmUsage usage = OllamaResponseMetadata.hasEvalCount(response)
+                    ? usageFromMetadata(response)
+                    : new LlmUsage(chatModel, null, TokenEstimator.estimate(content), elapsedNanos, null, true);
+            metricsService.recordLlmUsage(usage);
+            return new LlmResponse(content, usage);
+        }
+
+        JsonStreamCollector collector = new JsonStreamCollector(streamMaxPrefixChars);
+        AtomicLong firstTokenNanos = new AtomicLong(-1);
+        AtomicLong lastTokenNanos = new AtomicLong(-1);
+        AtomicInteger chunkCount = new AtomicInteger();
+        AtomicReference<ChatResponse> evalChunk = new AtomicReference<>();
+
+        // takeUntil 조건이 참이 되면 upstream 을 취소하여 Ollama 생성도 중단됨
+        chatClient.prompt()
+                .user(prompt)
+                .stream()
+                .chatResponse()
+                .doOnNext(chunk -> {
+                    long now = System.nanoTime() - startNanos;
+                    firstTokenNanos.compareAndSet(-1, now);
+                    lastTokenNanos.set(now);
+                    if (!OllamaResponseMetadata.content(chunk).isEmpty()) {
+                        chunkCount.incrementAndGet();
+                    }
+                    if (OllamaResponseMetadata.hasPromptEval(chunk)) {
+                        evalChunk.set(chunk);
+                    }
+                })
+                .map(OllamaResponseMetadata::content)
+                .takeUntil(collector::append)
+                .blockLast(Duration.ofMillis(streamTimeoutMs));
+
+        log.debug("AI 스트림 수신 종료 (수신 길이: {}, JSON 완료: {})",
+                collector.receivedLength(), collector.isComplete());
+
+        long ttftNanos = firstTokenNanos.get() >= 0 ? firstTokenNanos.get() : System.nanoTime() - startNanos;
+        recordPromptEvaluation(prompt, evalChunk.get(), ttftNanos);
+
+        // Ollama 스트림 청크는 토큰 1개 단위이므로 최종 통계가 없으면 청크 수를 생성 토큰 수로 사용
+        LlmUsage usage = OllamaResponseMetadata.hasEvalCount(evalChunk.get())
+                ? usageFromMetadata(evalChunk.get())
+                : new LlmUsage(chatModel,
+                        OllamaResponseMetadata.count(evalChunk.get(), OllamaResponseMetadata.PROMPT_EVAL_COUNT),
+                        chunkCount.get(),
+                        Math.max(0, lastTokenNanos.get() - ttftNanos),
+                        OllamaResponseMetadata.durationNanos(evalChunk.get(), OllamaResponseMetadata.LOAD_DURATION),
+                        true);
+        metricsService.recordLlmUsage(usage);
+        return new LlmResponse(collector.json(), usage);
+    }
+
+    private LlmUsage usageFromMetadata(ChatResponse response) {
+        Long evalNanos = OllamaResponseMetadata.durationNanos(response, OllamaResponseMetadata.EVAL_DURATION);
+        return new LlmUsage(chatModel,
+                OllamaResponseMetadata.count(response, OllamaResponseMetadata.PROMPT_EVAL_COUNT),
+                OllamaResponseMetadata.count(response, OllamaResponseMetadata.EVAL_COUNT),
+                evalNanos != null ? evalNanos : 0,
+                OllamaResponseMetadata.durationNanos(response, OllamaResponseMetadata.LOAD_DURATION),
+                false);
+    }
+
+    /**
+     * prompt_eval_count 는 KV 캐시에서 재사용된 prefix 를 제외한 토큰 수이므로
+     * 추정 전체 토큰과의 차이로 절약된 평가 시간을 계산
+     * - 스트리밍을 JSON 완료 시점에 끊으면 done 청크를 받지 못해 토큰 수가 없을 수 있음 (첫 토큰 시간만 기록)
+     */
+    private void recordPromptEvaluation(String userPrompt, ChatResponse response, long timeToFirstTokenNanos) {
+        int estimatedTokens = SYSTEM_PROMPT_TOKENS + TokenEstimator.estimate(userPrompt);
+        Long evaluatedTokens = OllamaResponseMetadata.count(response, OllamaResponseMetadata.PROMPT_EVAL_COUNT);
+        Long evalNanos = OllamaResponseMetadata.durationNanos(response, OllamaResponseMetadata.PROMPT_EVAL_DURATION);
+        long ttftMs = timeToFirstTokenNanos / 1_000_000;
+
+        long savedMs = metricsService.recordPromptEvaluation(estimatedTokens, evaluatedTokens, evalNanos, ttftMs);
+        log.debug("Prompt evaluation - estimated tokens: {}, evaluated: {}, eval time: {}ms, saved: {}ms, TTFT: {}ms",
+                estimatedTokens, evaluatedTokens,
+                evalNanos != null ? evalNanos / 1_000_000 : null,
+                savedMs >= 0 ? savedMs : null, ttftMs);
+    }
+
+    /**
+     * 유사 상담 검색 - 동일/거의 동일한 검색은 캐시에서 바로 반환 (임베딩 + HNSW 검색 생략)
+     * consultation.analysis.retrieval.* 필터가 설정되어 있으면 해당 범위의 참고 사례에서만 검색
+     */
     public List<Document> findSimilarConsultationsWithCache(String consultationContent) {
+        return findSimilarConsultationsWithCache(consultationContent, retrievalFilter());
+    }
+
+    /**
+     * 필터 식(null 이면 전체)을 지정한 유사 상담 검색
+     * - 메타데이터 키: consultant, consultationTime(yyyy-MM-ddTHH:mm:ss), hasNudge, nudgeType
+     */
+    public List<Document> findSimilarConsultationsWithCache(String consultationContent, Filter.Expression filter) {
+        String cacheKey = similarConsultationCache.key(consultationContent, SIMILAR_TOP_K, SIMILARITY_THRESHOLD,
+                filter != null ? filter.toString() : "");
+        List<Document> cached = similarConsultationCache.get(cacheKey);
+        if (cached != null) {
+            log.debug("Similar consultation cache hit ({} documents)", cached.size());
+            return cached;
+        }
+
         try {
+            long cacheVersion = similarConsultationCache.currentVersion();
             SearchRequest searchRequest = SearchRequest.query(consultationContent)
-                    .withTopK(3)
-                    .withSimilarityThreshold(0.75);
+                    .withTopK(SIMILAR_TOP_K)
+                    .withSimilarityThreshold(SIMILARITY_THRESHOLD);
+            if (filter != null) {
+                searchRequest = searchRequest.withFilterExpression(filter);
+            }
 
-            List<Document> documents = vectorStore.similaritySearch(searchRequest);
+            // 임베딩을 먼저 계산해두면 검색 시 임베딩은 캐시에서 바로 반환되어 두 단계 시간을 나눠 볼 수 있음
+            metricsService.time(AnalysisMetricsService.STAGE_EMBED, () -> embeddingModel.embed(consultationContent));
+            List<Document> documents = metricsService.time(AnalysisMetricsService.STAGE_VECTOR_SEARCH,
+                    () -> vectorStore.similaritySearch(searchRequest));
             log.debug("Found {} similar consultations", documents.size());
 
+            similarConsultationCache.put(cacheKey, documents, cacheVersion);
             return documents;
 
         } catch (Exception e) {
@@ -173,7 +540,90 @@ public class ConsultationAnalysisService {
         }
     }
 
-    private String buildOptimizedContext(List<Document> similarDocuments) {
+    /**
+     * 배치 페이지 단위 참고 사례 선조회
+     * - 검색이 필요한 상담(사전 필터 통과)의 검색어를 모아 한 번의 임베딩 호출 + 한 번의 검색으로 처리하고 검색 캐시에 저장
+     * - 이후 건별 analyzeWithRAG 는 캐시에서 바로 참고 사례를 가져감
+     * - 검색어는 analyzeWithRAG 와 같은 전처리(발화 분리 + 압축)로 만들어 캐시 키가 일치하도록 함
+     *
+     * @return 상담 순서대로의 검색 결과 (검색이 필요 없거나 실패한 상담은 빈 목록)
+     */
+    public List<List<Document>> prefetchSimilarConsultations(List<String> consultationContents) {
+        List<List<Document>> results = new ArrayList<>(Collections.nCopies(consultationContents.size(), List.of()));
+        Filter.Expression filter = retrievalFilter();
+        String filterKey = filter != null ? filter.toString() : "";
+        long cacheVersion = similarConsultationCache.currentVersion();
+
+        List<Integer> positions = new ArrayList<>();
+        List<String> queries = new ArrayList<>();
+        List<String> cacheKeys = new ArrayList<>();
+        for (int i = 0; i < consultationContents.size(); i++) {
+            List<TranscriptCompactor.Turn> turns = transcriptCompactor.splitTurns(consultationContents.get(i));
+            if (nudgePreFilter.isEnabled() && nudgePreFilter.classify(turns).clearNegative()) {
+                continue;
+            }
+
+            String query = transcriptCompactor.compact(turns).text();
+            String cacheKey = similarConsultationCache.key(query, SIMILAR_TOP_K, SIMILARITY_THRESHOLD, filterKey);
+            List<Document> cached = similarConsultationCache.get(cacheKey);
+            if (cached != null) {
+                results.set(i, cached);
+                continue;
+            }
+
+            positions.add(i);
+            queries.add(query);
+            cacheKeys.add(cacheKey);
+        }
+
+        if (queries.isEmpty()) {
+            return results;
+        }
+
+        try {
+            List<List<Document>> found = metricsService.time(AnalysisMetricsService.STAGE_BULK_RETRIEVAL,
+                    () -> hnswVectorStore.similaritySearch(queries, SIMILAR_TOP_K, SIMILARITY_THRESHOLD, filter));
+            for (int j = 0; j < found.size(); j++) {
+                similarConsultationCache.put(cacheKeys.get(j), found.get(j), cacheVersion);
+                results.set(positions.get(j), found.get(j));
+            }
+            log.debug("Prefetched similar consultations for {} of {} consultations",
+                    queries.size(), consultationContents.size());
+        } catch (Exception e) {
+            log.warn("Bulk similar consultation lookup failed, searching per consultation: {}", e.getMessage());
+        }
+        return results;
+    }
+
+    /**
+     * 설정된 검색 필터 - 시간 범위는 일 단위로 맞춰 같은 날에는 검색 캐시 키가 바뀌지 않도록 함
+     */
+    private Filter.Expression retrievalFilter() {
+        FilterExpressionBuilder builder = new FilterExpressionBuilder();
+        List<FilterExpressionBuilder.Op> conditions = new ArrayList<>();
+
+        if (retrievalTimeWindowDays > 0) {
+            conditions.add(builder.gte("consultationTime",
+                    LocalDate.now().minusDays(retrievalTimeWindowDays).atStartOfDay()));
+        }
+        if (!retrievalConsultants.isEmpty()) {
+            conditions.add(builder.in("consultant", new ArrayList<Object>(retrievalConsultants)));
+        }
+        if (!retrievalHasNudge.isBlank()) {
+            conditions.add(builder.eq("hasNudge", retrievalHasNudge.trim()));
+        }
+        if (!retrievalNudgeTypes.isEmpty()) {
+            conditions.add(builder.in("nudgeType", new ArrayList<Object>(retrievalNudgeTypes)));
+        }
+
+        return conditions.stream()
+                .reduce(builder::and)
+                .map(FilterExpressionBuilder.Op::build)
+                .orElse(null);
+    }
+
+    // 아래 정적 메서드들은 JMH 벤치마크(src/jmh)에서 직접 호출하도록 package-private
+    static String buildOptimizedContext(List<Document> similarDocuments) {
         if (similarDocuments.isEmpty()) {
             return "참고 사례 없음";
         }
@@ -200,39 +650,16 @@ public class ConsultationAnalysisService {
         return contextBuilder.toString();
     }
 
-    private String createOptimizedPrompt(String consultationContent, String context) {
+    /**
+     * 요청마다 달라지는 부분만 user 메시지로 구성 (고정 지시문은 SYSTEM_PROMPT)
+     */
+    static String createOptimizedPrompt(String consultationContent, String context) {
         return String.format("""
-        통신사 상담에서 상담사의 넛지 활동을 분석해주세요.
-        
+        === 참고 사례 ===
         %s
-        
+
         === 상담 내용 ===
         %s
-        
-        === 넛지 유형 ===
-        1. 생활패턴연결: 취미/습관 파악하여 서비스 연결
-        2. 사회적증거: "다른 고객들도", "인기 상품" 등
-        3. 손실회피: "손해보고 계세요", "놓치실 수 있어요"
-        4. 개인화추천: 고객 상황에 맞는 맞춤 제안
-        5. 결합혜택: 여러 서비스 묶어서 할인 강조
-        6. 한정혜택: 기간 한정, 특별 프로모션
-        
-        === 부적절한 넛지 ===
-        - 강압적 어조
-        - 개인정보 남용  
-        - 허위 정보
-        - 불필요한 강요
-        
-        아래 JSON 형태로만 답변하세요:
-        {
-            "mainInquiry": "고객 문의 요약",
-            "hasNudge": "Y 또는 N",
-            "nudgeType": "위 6가지 중 하나 또는 N",
-            "nudgeContent": "상담사 멘트 인용 또는 N", 
-            "customerResponse": "Y 또는 N",
-            "inappropriateNudge": "Y 또는 N",
-            "inappropriateReason": "이유 또는 N"
-        }
         """, context, consultationContent);
     }
 //    private String createOptimizedPrompt(String consultationContent, String context) {
@@ -338,10 +765,9 @@ public class ConsultationAnalysisService {
 //        """, context, consultationContent);
 //    }
 
-    private ConsultationAnalysisResult parseAndValidateResult(String response) {
+    static ConsultationAnalysisResult parseAndValidateResult(String response) {
         try {
-            String jsonPart = extractJsonFromResponse(response);
-            ConsultationAnalysisResult result = objectMapper.readValue(jsonPart, ConsultationAnalysisResult.class);
+            ConsultationAnalysisResult result = AnalysisResultParser.parse(response);
             validateAndCleanResult(result);
             return result;
         } catch (Exception e) {
@@ -350,19 +776,8 @@ public class ConsultationAnalysisService {
         }
     }
 
-    private String extractJsonFromResponse(String response) {
-        response = response.trim();
-        int startIndex = response.indexOf("{");
-        int endIndex = response.lastIndexOf("}");
-
-        if (startIndex >= 0 && endIndex > startIndex) {
-            return response.substring(startIndex, endIndex + 1);
-        }
-
-        throw new IllegalArgumentException("Valid JSON not found in response");
-    }
-
-    private void validateAndCleanResult(ConsultationAnalysisResult result) {
+    private static void validateAndCleanResult(ConsultationAnalysisResult result) {
+        result.setAnalysisSource(ConsultationAnalysisResult.SOURCE_LLM);
         result.setHasMarketing(normalizeYN(result.getHasMarketing()));
         result.setCustomerAgreed(normalizeYN(result.getCustomerAgreed()));
         result.setInappropriateMarketing(normalizeYN(result.getInappropriateMarketing()));
@@ -383,13 +798,13 @@ public class ConsultationAnalysisService {
         if (result.getInappropriateMent() == null) result.setInappropriateMent("N");
     }
 
-    private String normalizeYN(String value) {
+    private static String normalizeYN(String value) {
         if (value == null) return "N";
         String normalized = value.trim().toUpperCase();
         return normalized.equals("Y") ? "Y" : "N";
     }
 
-    private ConsultationAnalysisResult createDefaultResult() {
+    private static ConsultationAnalysisResult createDefaultResult() {
         ConsultationAnalysisResult result = new ConsultationAnalysisResult();
         result.setMainInquiry("분석 실패 - 수동 확인 필요");
         result.setHasMarketing("N");
@@ -398,89 +813,7 @@ public class ConsultationAnalysisService {
         result.setCustomerAgreed("N");
         result.setInappropriateMarketing("N");
         result.setInappropriateMent("N");
+        result.setAnalysisSource(ConsultationAnalysisResult.SOURCE_FALLBACK);
         return result;
     }
-
-    /**
-     * 분석 결과를 데이터베이스에 저장 - 새로운 트랜잭션으로 실행
-     */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void updateAnalysisResult(SttData sttData, ConsultationAnalysisResult result) {
-        try {
-            sttData.setResponse1(result.getMainInquiry());
-            sttData.setResponse2(result.getHasMarketing());
-            sttData.setResponse3(result.getMarketingType());
-            sttData.setResponse4(result.getMarketingMent());
-            sttData.setResponse5(result.getCustomerAgreed());
-            sttData.setResponse6(result.getInappropriateMarketing());
-            sttData.setResponse7(result.getInappropriateMent());
-            sttData.setAnalysisStatus("COMPLETED");
-            sttData.setAnalysisDate(LocalDateTime.now());
-
-            sttDataRepository.save(sttData);
-
-            log.info("Analysis result saved for consultation: {}", sttData.getConsultationNumber());
-
-            // Vector Store 저장은 별도 트랜잭션으로 처리 (실패해도 메인 저장에 영향 없음)
-            saveToVectorStoreAsync(sttData, result);
-
-        } catch (Exception e) {
-            log.error("Error saving analysis result for consultation: {}", sttData.getConsultationNumber(), e);
-            throw e; // 트랜잭션 롤백을 위해 예외 다시 던지기
-        }
-    }
-
-    /**
-     * Vector Store 저장 - 비동기로 처리하여 메인 트랜잭션에 영향 없음
-     */
-    private void saveToVectorStoreAsync(SttData sttData, ConsultationAnalysisResult result) {
-        try {
-            String analysisResultJson = objectMapper.writeValueAsString(result);
-
-            Map<String, Object> metadata = Map.of(
-                    "consultationNumber", sttData.getConsultationNumber(),
-                    "consultant", sttData.getConsultant(),
-                    "analysisResult", analysisResultJson,
-                    "consultationTime", sttData.getConsultationTime().toString()
-            );
-
-            Document document = new Document(sttData.getConsultationContent(), metadata);
-            vectorStore.add(List.of(document));
-
-            // 관계형 DB 저장은 선택적으로 처리
-            try {
-                ConsultationVector vector = new ConsultationVector(
-                        sttData.getConsultationNumber(),
-                        sttData.getConsultationContent(),
-                        analysisResultJson
-                );
-                consultationVectorRepository.save(vector);
-            } catch (Exception dbError) {
-                log.warn("Failed to save to consultation_vectors table: {}",
-                        sttData.getConsultationNumber(), dbError);
-                // 메인 저장에는 영향 없음
-            }
-
-        } catch (Exception e) {
-            log.warn("Failed to save to vector store for consultation: {}",
-                    sttData.getConsultationNumber(), e);
-            // 메인 저장에는 영향 없음
-        }
-    }
-
-    /**
-     * 실패한 상담의 상태를 FAILED로 업데이트
-     */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void markAsFailed(SttData sttData) {
-        try {
-            sttData.setAnalysisStatus("FAILED");
-            sttData.setUpdatedDate(LocalDateTime.now());
-            sttDataRepository.save(sttData);
-            log.info("Marked consultation as FAILED: {}", sttData.getConsultationNumber());
-        } catch (Exception e) {
-            log.error("Failed to update status to FAILED for consultation: {}",
-                    sttData.getConsultationNumber(), e);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package devlava.vectorrag.service;
+
+import devlava.vectorrag.entity.SttData;
+import devlava.vectorrag.repository.SttDataRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * tb_stt_data 기반 작업 큐 - 여러 노드가 같은 백로그를 나눠서 처리
+ * - FOR UPDATE SKIP LOCKED 로 다른 노드가 가져가는 중인 행은 건너뜀
+ * - 점유(lease) 만료 시각이 지난 PROCESSING 건은 자동으로 다시 가져감
+ */
+@Component
+@Slf4j
+public class ConsultationWorkQueue {
+
+    @Autowired
+    private SttDataRepository sttDataRepository;
+
+    @Value("${consultation.analysis.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${consultation.analysis.lease-duration-ms:600000}")
+    private long leaseDurationMs;
+
+    private String nodeId;
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId.isBlank() ? defaultNodeId() : configuredNodeId;
+        log.info("Consultation work queue node id: {} (lease: {}ms)", nodeId, leaseDurationMs);
+    }
+
+    /**
+     * 처리 가능한 건을 최대 limit 개 점유
+     */
+    @Transactional
+    public List<SttData> claim(int limit) {
+        List<String> consultationNumbers = sttDataRepository.lockClaimableConsultationNumbers(limit);
+        if (consultationNumbers.isEmpty()) {
+            return List.of();
+        }
+
+        sttDataRepository.claim(consultationNumbers, nodeId, leaseSeconds());
+
+        return sttDataRepository.findAllById(consultationNumbers).stream()
+                .sorted(Comparator.comparing(SttData::getConsultationTime,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+    }
+
+    /**
+     * 특정 건 점유 - 다른 노드가 유효한 점유 중이면 예외
+     */
+    @Transactional
+    public SttData claimSpecific(String consultationNumber) {
+        if (!sttDataRepository.existsById(consultationNumber)) {
+            throw new IllegalArgumentException("Consultation not found: " + consultationNumber);
+        }
+
+        if (sttDataRepository.claimSpecific(consultationNumber, nodeId, leaseSeconds()) == 0) {
+            throw new IllegalStateException("Consultation is being processed by another node: " + consultationNumber);
+        }
+
+        return sttDataRepository.findById(consultationNumber)
+                .orElseThrow(() -> new IllegalArgumentException("Consultation not found: " + consultationNumber));
+    }
+
+    /**
+     * 처리를 시작하지 못한 점유 건을 대기 상태로 되돌림
+     */
+    @Transactional
+    public void release(SttData sttData) {
+        sttDataRepository.releaseClaim(sttData.getConsultationNumber(), nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private long leaseSeconds() {
+        return Math.max(1, leaseDurationMs / 1000);
+    }
+
+    private String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,987 @@
+package devlava.vectorrag.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import devlava.vectorrag.util.HeapVectorStorage;
+import devlava.vectorrag.util.HnswIndex;
+import devlava.vectorrag.util.QuantizedVectorSegment;
+import jakarta.annotation.PreDestroy;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.PgVectorStore;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * pgvector 앞단의 JVM 내 HNSW 검색 계층
+ * - 시작 시 vector_store 전체를 읽어 인덱스를 만들고, add/delete 는 pgvector 에 먼저 반영한 뒤 인덱스 갱신
+ * - 검색은 인덱스에서 처리 (DB 왕복 없음), 로드 전/필터 검색/오류 시에는 pgvector(PgVectorSearch) 로 위임
+ * - storage=heap: 벡터를 힙 float32 로 보관, 재시작 시 vector_store 에서 다시 구성
+ * - storage=mmap: 벡터를 메모리 매핑 양자화 세그먼트(int8/float16)에 보관하고 상위 후보는 float32 로 재정렬
+ *   그래프도 파일로 저장하므로 재시작 시 임베딩을 다시 읽지 않고 매핑 + 그래프 로드로 복원
+ *   (vector_store 에서는 내용/메타데이터와 세그먼트에 없는 문서의 임베딩만 읽음)
+ * - 다른 노드가 쓴/지운 문서는 refresh-interval-ms 마다 vector_store.updated_at 과 vector_store_deletions 로 반영
+ *   마지막 갱신이 max-staleness-ms 보다 오래되면 검색을 pgvector 로 위임
+ * - 삭제/교체는 삭제 표시만 하므로, 삭제 표시 비율이 compaction-deleted-ratio 를 넘으면 (시작 시, 주기적으로 확인)
+ *   살아 있는 노드만 새 저장소/그래프로 복사한 뒤 교체 - 복사 중 변경된 문서는 교체 직전에 다시 반영
+ *   mmap 은 새 이름의 세그먼트/그래프를 만든 뒤 vectors.current 를 원자적으로 바꾸고 이전 파일 삭제
+ */
+@Component
+@Primary
+@Slf4j
+public class HnswVectorStore implements VectorStore {
+
+    private static final String SELECT_CHUNK_SQL = """
+            SELECT id::text, content, metadata::text, embedding::text
+            FROM vector_store
+            WHERE id > ?::uuid
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private static final String SELECT_DOCUMENT_CHUNK_SQL = """
+            SELECT id::text, content, metadata::text
+            FROM vector_store
+            WHERE id > ?::uuid
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private static final String SELECT_CHANGED_CHUNK_SQL = """
+            SELECT id::text, content, metadata::text
+            FROM vector_store
+            WHERE updated_at > ? AND id > ?::uuid
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private static final String SELECT_DELETED_SQL =
+            "SELECT id::text FROM vector_store_deletions WHERE deleted_at > ?";
+
+    // 삭제 기록은 모든 노드가 갱신 주기 안에 읽고 나면 필요 없으므로 하루만 보관
+    private static final String PURGE_DELETIONS_SQL =
+            "DELETE FROM vector_store_deletions WHERE deleted_at < now() - interval '1 day'";
+
+    private static final String SELECT_EMBEDDINGS_SQL =
+            "SELECT id::text, embedding::text FROM vector_store WHERE id = ANY(?::uuid[])";
+
+    private static final String STORAGE_MMAP = "mmap";
+    private static final String SEGMENT_NAME = "vectors";
+    private static final String GRAPH_SUFFIX = ".graph";
+    private static final String CURRENT_FILE = "vectors.current";
+
+    private static final String MIN_UUID = "00000000-0000-0000-0000-000000000000";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private PgVectorStore pgVectorStore;
+
+    @Autowired
+    private PgVectorSearch pgVectorSearch;
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SimilarConsultationCache similarConsultationCache;
+
+    @Value("${consultation.vector-store.local-index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${spring.ai.vectorstore.pgvector.dimensions:768}")
+    private int dimensions;
+
+    @Value("${consultation.vector-store.local-index.m:16}")
+    private int m;
+
+    @Value("${consultation.vector-store.local-index.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${consultation.vector-store.local-index.ef-search:64}")
+    private int efSearch;
+
+    @Value("${consultation.vector-store.local-index.load-chunk-size:1000}")
+    private int loadChunkSize;
+
+    @Value("${consultation.vector-store.local-index.storage:heap}")
+    private String storage;
+
+    @Value("${consultation.vector-store.local-index.segment-dir:data/vector-index}")
+    private String segmentDir;
+
+    @Value("${consultation.vector-store.local-index.quantization:int8}")
+    private String quantization;
+
+    @Value("${consultation.vector-store.local-index.rerank-factor:4}")
+    private int rerankFactor;
+
+    @Value("${consultation.vector-store.local-index.refresh-overlap-ms:60000}")
+    private long refreshOverlapMs;
+
+    @Value("${consultation.vector-store.local-index.max-staleness-ms:120000}")
+    private long maxStalenessMs;
+
+    @Value("${consultation.vector-store.local-index.compaction-deleted-ratio:0.2}")
+    private double compactionDeletedRatio;
+
+    @Value("${consultation.vector-store.local-index.compaction-min-deleted:1000}")
+    private int compactionMinDeleted;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private HnswIndex index;
+    private HeapVectorStorage heapVectors;
+    private QuantizedVectorSegment segment;
+    private String segmentName = SEGMENT_NAME;
+    private volatile boolean graphDirty;
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<String, Integer> nodeById = new HashMap<>();
+    private final Map<String, String> idByConsultationNumber = new HashMap<>();
+    private volatile boolean loaded;
+
+    // 로드 중에 add/delete 된 문서는 로드 결과로 덮어쓰지 않음
+    private final Set<String> changedDuringLoad = new HashSet<>();
+
+    // 압축(재구성) 중에 add/delete 된 문서는 교체 직전에 새 인덱스에 다시 반영
+    private boolean compacting;
+    private final Set<String> changedDuringCompaction = new HashSet<>();
+
+    private final AtomicLong localSearches = new AtomicLong(0);
+    private final AtomicLong delegatedSearches = new AtomicLong(0);
+    private final AtomicLong compactions = new AtomicLong(0);
+    private final AtomicLong refreshedDocuments = new AtomicLong(0);
+
+    // DB 시각 기준 갱신 기준점 (로드/갱신 시작 시각) 과 마지막 갱신 성공 시각
+    private volatile Timestamp refreshWatermark;
+    private volatile long lastRefreshMillis;
+
+    /**
+     * 스키마 초기화와 시작 시 백필(CommandLineRunner)이 끝난 뒤 로드
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            refreshWatermark = currentDatabaseTime();
+            if (STORAGE_MMAP.equalsIgnoreCase(storage)) {
+                loadFromSegment();
+            } else {
+                loadFromVectorStore();
+            }
+
+            lastRefreshMillis = System.currentTimeMillis();
+            loaded = true;
+            log.info("Local HNSW index loaded - storage: {}, documents: {} ({}ms)", storage, index.size(),
+                    System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("Failed to load local HNSW index, similarity search stays on pgvector", e);
+            return;
+        }
+        compactIfNeeded();
+    }
+
+    private void loadFromVectorStore() {
+        lock.writeLock().lock();
+        try {
+            heapVectors = new HeapVectorStorage(dimensions, loadChunkSize);
+            index = new HnswIndex(heapVectors, m, efConstruction, loadChunkSize);
+            resetDocuments();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        String lastId = MIN_UUID;
+        while (true) {
+            List<Object[]> chunk = jdbcTemplate.query(SELECT_CHUNK_SQL,
+                    (rs, rowNum) -> new Object[]{
+                            rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4)},
+                    lastId, loadChunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            // 파싱은 잠금 밖에서, 인덱스 반영만 잠금 안에서
+            List<Document> parsed = new ArrayList<>(chunk.size());
+            List<float[]> embeddings = new ArrayList<>(chunk.size());
+            for (Object[] row : chunk) {
+                parsed.add(new Document((String) row[0], (String) row[1], parseMetadata((String) row[2])));
+                embeddings.add(parseVector((String) row[3]));
+            }
+
+            putAll(parsed, embeddings);
+            lastId = (String) chunk.get(chunk.size() - 1)[0];
+        }
+    }
+
+    /**
+     * 세그먼트 매핑 + 저장된 그래프 로드 (그래프가 없거나 맞지 않으면 매핑된 벡터로 다시 구성)
+     * 이후 vector_store 의 내용/메타데이터를 상담 번호로 노드에 연결
+     */
+    private void loadFromSegment() throws IOException {
+        Map<String, Integer> nodeByKey = new HashMap<>();
+
+        lock.writeLock().lock();
+        try {
+            segmentName = readCurrentSegmentName();
+            segment = QuantizedVectorSegment.open(Path.of(segmentDir), segmentName, encoding(), dimensions);
+            index = new HnswIndex(segment, m, efConstruction, Math.max(segment.size(), loadChunkSize));
+
+            if (!index.readGraph(graphFile(segmentName))) {
+                log.info("Rebuilding HNSW graph from {} mapped vectors", segment.size());
+                for (int node = 0; node < segment.size(); node++) {
+                    index.insert(node);
+                }
+                graphDirty = true;
+            }
+
+            resetDocuments();
+            for (int node = 0; node < segment.size(); node++) {
+                documents.add(null);
+                if (!index.isDeleted(node)) {
+                    Integer previous = nodeByKey.put(segment.key(node), node);
+                    if (previous != null) {
+                        index.remove(previous);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Set<Integer> matchedNodes = new HashSet<>();
+        String lastId = MIN_UUID;
+        while (true) {
+            List<Document> chunk = jdbcTemplate.query(SELECT_DOCUMENT_CHUNK_SQL,
+                    (rs, rowNum) -> new Document(rs.getString(1), rs.getString(2), parseMetadata(rs.getString(3))),
+                    lastId, loadChunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            List<Document> missing = new ArrayList<>();
+            lock.writeLock().lock();
+            try {
+                for (Document document : chunk) {
+                    if (changedDuringLoad.contains(document.getId())) {
+                        continue;
+                    }
+                    Integer node = nodeByKey.get(segmentKey(document));
+                    if (node == null) {
+                        missing.add(document);
+                        continue;
+                    }
+                    matchedNodes.add(node);
+                    documents.set(node, document);
+                    nodeById.put(document.getId(), node);
+                    idByConsultationNumber.put(segmentKey(document), document.getId());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // 세그먼트에 없는 문서(마지막 저장 이후 추가된 문서)만 임베딩을 읽어 추가
+            if (!missing.isEmpty()) {
+                Map<String, float[]> embeddings = new HashMap<>();
+                jdbcTemplate.query(SELECT_EMBEDDINGS_SQL,
+                        rs -> {
+                            embeddings.put(rs.getString(1), parseVector(rs.getString(2)));
+                        },
+                        (Object) missing.stream().map(Document::getId).toArray(String[]::new));
+                putAll(missing, missing.stream().map(document -> embeddings.get(document.getId())).toList());
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+        }
+
+        // vector_store 에서 지워진 문서의 노드는 삭제 표시
+        lock.writeLock().lock();
+        try {
+            for (int node : nodeByKey.values()) {
+                if (!matchedNodes.contains(node) && documents.get(node) == null) {
+                    index.remove(node);
+                    graphDirty = true;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        saveGraph();
+    }
+
+    private void resetDocuments() {
+        documents.clear();
+        nodeById.clear();
+        idByConsultationNumber.clear();
+        changedDuringLoad.clear();
+    }
+
+    private void putAll(List<Document> documents, List<float[]> embeddings) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                if (embeddings.get(i) != null && !changedDuringLoad.contains(documents.get(i).getId())) {
+                    put(documents.get(i), embeddings.get(i));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 다른 노드가 vector_store 에 쓰거나 지운 문서를 반영
+     * - updated_at/deleted_at 이 지난 기준점 - refresh-overlap-ms 이후인 행 (늦게 커밋된 트랜잭션 대비 겹쳐 읽음)
+     * - 내용/메타데이터가 로컬과 같은 문서(이 노드가 쓴 문서, 겹쳐 읽은 문서)는 다시 넣지 않음
+     */
+    @Scheduled(fixedDelayString = "${consultation.vector-store.local-index.refresh-interval-ms:30000}",
+            initialDelayString = "${consultation.vector-store.local-index.refresh-interval-ms:30000}")
+    public void refresh() {
+        if (!enabled || !loaded) {
+            return;
+        }
+
+        try {
+            Timestamp startedAt = currentDatabaseTime();
+            Timestamp since = new Timestamp(refreshWatermark.getTime() - refreshOverlapMs);
+
+            int removed = applyRemoteDeletes(since);
+            int updated = applyRemoteChanges(since);
+            jdbcTemplate.update(PURGE_DELETIONS_SQL);
+
+            refreshWatermark = startedAt;
+            lastRefreshMillis = System.currentTimeMillis();
+            refreshedDocuments.addAndGet(removed + updated);
+            if (removed + updated > 0) {
+                similarConsultationCache.invalidate();
+                log.info("Local HNSW index refreshed - updated: {}, removed: {}", updated, removed);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refresh local HNSW index from vector_store: {}", e.getMessage());
+        }
+    }
+
+    private int applyRemoteDeletes(Timestamp since) {
+        List<String> deletedIds = jdbcTemplate.queryForList(SELECT_DELETED_SQL, String.class, since);
+        int removed = 0;
+
+        lock.writeLock().lock();
+        try {
+            for (String id : deletedIds) {
+                if (nodeById.containsKey(id)) {
+                    remove(id);
+                    removed++;
+                    if (compacting) {
+                        changedDuringCompaction.add(id);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return removed;
+    }
+
+    private int applyRemoteChanges(Timestamp since) {
+        int updated = 0;
+        String lastId = MIN_UUID;
+        while (true) {
+            List<Document> chunk = jdbcTemplate.query(SELECT_CHANGED_CHUNK_SQL,
+                    (rs, rowNum) -> new Document(rs.getString(1), rs.getString(2), parseMetadata(rs.getString(3))),
+                    since, lastId, loadChunkSize);
+            if (chunk.isEmpty()) {
+                return updated;
+            }
+
+            List<Document> changed;
+            lock.readLock().lock();
+            try {
+                changed = chunk.stream().filter(document -> !isIndexed(document)).toList();
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (!changed.isEmpty()) {
+                Map<String, float[]> embeddings = new HashMap<>();
+                jdbcTemplate.query(SELECT_EMBEDDINGS_SQL,
+                        rs -> {
+                            embeddings.put(rs.getString(1), parseVector(rs.getString(2)));
+                        },
+                        (Object) changed.stream().map(Document::getId).toArray(String[]::new));
+
+                lock.writeLock().lock();
+                try {
+                    for (Document document : changed) {
+                        float[] embedding = embeddings.get(document.getId());
+                        // 조회 사이에 지워진 문서는 다음 갱신의 삭제 기록으로 처리
+                        if (embedding == null || isIndexed(document)) {
+                            continue;
+                        }
+                        put(document, embedding);
+                        updated++;
+                        if (compacting) {
+                            changedDuringCompaction.add(document.getId());
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    private boolean isIndexed(Document document) {
+        Integer node = nodeById.get(document.getId());
+        if (node == null) {
+            return false;
+        }
+        Document indexed = documents.get(node);
+        return indexed != null
+                && Objects.equals(indexed.getContent(), document.getContent())
+                && Objects.equals(indexed.getMetadata(), document.getMetadata());
+    }
+
+    private Timestamp currentDatabaseTime() {
+        return jdbcTemplate.queryForObject("SELECT now()", Timestamp.class);
+    }
+
+    // 갱신이 계속 실패하면 다른 노드의 변경이 빠진 인덱스로 검색하지 않도록 pgvector 로 위임
+    private boolean isFresh() {
+        return System.currentTimeMillis() - lastRefreshMillis <= maxStalenessMs;
+    }
+
+    /**
+     * 그래프 저장 - 재시작 시 다시 구성하지 않도록 주기적으로/종료 시 기록
+     */
+    @Scheduled(fixedDelayString = "${consultation.vector-store.local-index.graph-save-interval-ms:600000}",
+            initialDelayString = "${consultation.vector-store.local-index.graph-save-interval-ms:600000}")
+    public void saveGraph() {
+        if (segment == null) {
+            return;
+        }
+
+        // 저장 중 그래프가 바뀌지 않도록 읽기 잠금 (검색은 계속 가능)
+        lock.readLock().lock();
+        try {
+            if (!graphDirty) {
+                return;
+            }
+            segment.force();
+            index.writeGraph(graphFile(segmentName));
+            graphDirty = false;
+            log.debug("Saved HNSW graph ({} nodes)", index.nodeCount());
+        } catch (IOException e) {
+            log.warn("Failed to save HNSW graph: {}", e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 삭제 표시 노드가 compaction-deleted-ratio 이상(최소 compaction-min-deleted 건)이면 살아 있는 노드만으로 재구성
+     * 삭제 표시는 검색 시 건너뛰기만 하므로 쌓이면 탐색 비용과 세그먼트/그래프 크기만 늘어남
+     */
+    @Scheduled(fixedDelayString = "${consultation.vector-store.local-index.compaction-check-interval-ms:600000}",
+            initialDelayString = "${consultation.vector-store.local-index.compaction-check-interval-ms:600000}")
+    public void compactIfNeeded() {
+        if (!loaded) {
+            return;
+        }
+
+        int deletedNodes;
+        int nodes;
+        lock.readLock().lock();
+        try {
+            deletedNodes = index.deletedCount();
+            nodes = index.nodeCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (deletedNodes < compactionMinDeleted || deletedNodes < nodes * compactionDeletedRatio) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            compact();
+            compactions.incrementAndGet();
+            log.info("Compacted local HNSW index - removed {} deleted of {} nodes ({}ms)", deletedNodes, nodes,
+                    System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.warn("Failed to compact local HNSW index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 살아 있는 노드를 청크 단위로 복사하여 새 저장소/그래프 구성 (읽기 잠금은 복사하는 동안만, 그래프 구성은 잠금 밖)
+     * 복사 중에 바뀐 문서는 쓰기 잠금 안에서 다시 반영한 뒤 교체
+     */
+    private void compact() throws IOException {
+        int snapshotNodes;
+        lock.writeLock().lock();
+        try {
+            compacting = true;
+            changedDuringCompaction.clear();
+            snapshotNodes = index.nodeCount();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        String newName = segment != null ? SEGMENT_NAME + "-" + System.currentTimeMillis() : null;
+        CompactedIndex target = new CompactedIndex(newName != null
+                ? QuantizedVectorSegment.open(Path.of(segmentDir), newName, encoding(), dimensions)
+                : null);
+        QuantizedVectorSegment previousSegment;
+        String previousName;
+        try {
+            for (int start = 0; start < snapshotNodes; start += loadChunkSize) {
+                List<Document> live = new ArrayList<>(loadChunkSize);
+                List<float[]> vectors = new ArrayList<>(loadChunkSize);
+                lock.readLock().lock();
+                try {
+                    for (int node = start; node < Math.min(snapshotNodes, start + loadChunkSize); node++) {
+                        if (documents.get(node) != null && !index.isDeleted(node)) {
+                            live.add(documents.get(node));
+                            vectors.add(readVector(node));
+                        }
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                for (int i = 0; i < live.size(); i++) {
+                    target.append(live.get(i), vectors.get(i));
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (String id : changedDuringCompaction) {
+                    target.remove(id);
+                    Integer node = nodeById.get(id);
+                    if (node != null) {
+                        target.append(documents.get(node), readVector(node));
+                    }
+                }
+                if (target.segment != null) {
+                    target.segment.force();
+                    target.index.writeGraph(graphFile(newName));
+                    writeCurrentSegmentName(newName);
+                }
+
+                previousSegment = segment;
+                previousName = segmentName;
+                index = target.index;
+                heapVectors = target.heapVectors;
+                segment = target.segment;
+                segmentName = newName != null ? newName : segmentName;
+                documents.clear();
+                documents.addAll(target.documents);
+                nodeById.clear();
+                nodeById.putAll(target.nodeById);
+                graphDirty = false;
+                compacting = false;
+                changedDuringCompaction.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                compacting = false;
+                changedDuringCompaction.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (target.segment != null) {
+                target.segment.close();
+                deleteSegmentFiles(newName);
+            }
+            throw e;
+        }
+
+        // 교체 후에는 이전 세그먼트를 참조하는 검색이 없으므로 닫고 삭제
+        if (previousSegment != null) {
+            previousSegment.close();
+            deleteSegmentFiles(previousName);
+        }
+    }
+
+    /**
+     * 압축 결과 - 새 저장소/그래프와 노드 번호 매핑
+     */
+    private final class CompactedIndex {
+
+        private final QuantizedVectorSegment segment;
+        private final HeapVectorStorage heapVectors;
+        private final HnswIndex index;
+        private final List<Document> documents = new ArrayList<>();
+        private final Map<String, Integer> nodeById = new HashMap<>();
+
+        private CompactedIndex(QuantizedVectorSegment segment) {
+            this.segment = segment;
+            this.heapVectors = segment == null
+                    ? new HeapVectorStorage(dimensions, Math.max(HnswVectorStore.this.index.size(), loadChunkSize))
+                    : null;
+            this.index = new HnswIndex(segment != null ? segment : heapVectors, m, efConstruction,
+                    Math.max(HnswVectorStore.this.index.size(), loadChunkSize));
+        }
+
+        private void append(Document document, float[] vector) throws IOException {
+            int node = segment != null ? segment.append(segmentKey(document), vector) : heapVectors.append(vector);
+            index.insert(node);
+            nodeById.put(document.getId(), node);
+            documents.add(document);
+        }
+
+        private void remove(String id) {
+            Integer node = nodeById.remove(id);
+            if (node != null) {
+                index.remove(node);
+                documents.set(node, null);
+            }
+        }
+    }
+
+    private float[] readVector(int node) {
+        float[] vector = new float[dimensions];
+        index.storage().read(node, vector, 0);
+        return vector;
+    }
+
+    private QuantizedVectorSegment.Encoding encoding() {
+        return QuantizedVectorSegment.Encoding.valueOf(quantization.toUpperCase());
+    }
+
+    private Path graphFile(String name) {
+        return Path.of(segmentDir, name + GRAPH_SUFFIX);
+    }
+
+    // 현재 세그먼트 이름 - 압축 전에는 파일이 없으므로 기본 이름
+    private String readCurrentSegmentName() throws IOException {
+        Path current = Path.of(segmentDir, CURRENT_FILE);
+        if (!Files.exists(current)) {
+            return SEGMENT_NAME;
+        }
+        String name = Files.readString(current).trim();
+        return name.isEmpty() ? SEGMENT_NAME : name;
+    }
+
+    // 임시 파일에 쓴 뒤 이동 - 중간에 끊겨도 이전/새 세그먼트 중 하나를 온전히 가리킴
+    private void writeCurrentSegmentName(String name) throws IOException {
+        Path directory = Path.of(segmentDir);
+        Path temp = Files.createTempFile(directory, CURRENT_FILE, ".tmp");
+        Files.writeString(temp, name);
+        Files.move(temp, directory.resolve(CURRENT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteSegmentFiles(String name) {
+        try {
+            QuantizedVectorSegment.delete(Path.of(segmentDir), name);
+            Files.deleteIfExists(graphFile(name));
+        } catch (IOException e) {
+            log.warn("Failed to delete vector segment {}: {}", name, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        saveGraph();
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Failed to close vector segment: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        pgVectorStore.add(documents);
+        if (!enabled || index == null) {
+            return;
+        }
+
+        // pgvector 가 임베딩을 채우지 않은 경우 캐시된 임베딩 사용
+        List<float[]> embeddings = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            float[] embedding = document.getEmbedding();
+            embeddings.add(embedding != null && embedding.length > 0 ? embedding : embeddingModel.embed(document));
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                put(documents.get(i), embeddings.get(i));
+                if (compacting) {
+                    changedDuringCompaction.add(documents.get(i).getId());
+                }
+                if (!loaded) {
+                    changedDuringLoad.add(documents.get(i).getId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        Optional<Boolean> result = pgVectorStore.delete(idList);
+        if (!enabled || index == null) {
+            return result;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                remove(id);
+                if (compacting) {
+                    changedDuringCompaction.add(id);
+                }
+                if (!loaded) {
+                    changedDuringLoad.add(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (!enabled || !loaded || !isFresh() || request.hasFilterExpression()) {
+            delegatedSearches.incrementAndGet();
+            return pgVectorSearch.similaritySearch(request);
+        }
+
+        try {
+            List<Document> results = searchLocal(embeddingModel.embed(request.getQuery()),
+                    request.getTopK(), request.getSimilarityThreshold());
+            localSearches.incrementAndGet();
+            return results;
+        } catch (Exception e) {
+            log.warn("Local HNSW search failed, falling back to pgvector: {}", e.getMessage());
+            delegatedSearches.incrementAndGet();
+            return pgVectorSearch.similaritySearch(request);
+        }
+    }
+
+    /**
+     * 여러 질의 일괄 검색 - 임베딩은 한 번의 EmbeddingModel 호출로 계산
+     * 로컬 인덱스를 쓸 수 있으면 질의별로 인덱스 검색, 아니면 pgvector 한 번의 SQL 로 검색 (결과는 질의 순서대로)
+     */
+    public List<List<Document>> similaritySearch(List<String> queries, int topK, double similarityThreshold,
+                                                 Filter.Expression filter) {
+        if (queries.isEmpty()) {
+            return List.of();
+        }
+
+        List<float[]> embeddings = embeddingModel.embed(queries);
+        if (enabled && loaded && isFresh() && filter == null) {
+            try {
+                List<List<Document>> results = new ArrayList<>(queries.size());
+                for (float[] embedding : embeddings) {
+                    results.add(searchLocal(embedding, topK, similarityThreshold));
+                }
+                localSearches.addAndGet(queries.size());
+                return results;
+            } catch (Exception e) {
+                log.warn("Local HNSW batch search failed, falling back to pgvector: {}", e.getMessage());
+            }
+        }
+
+        delegatedSearches.addAndGet(queries.size());
+        return pgVectorSearch.similaritySearch(queries, embeddings, topK, similarityThreshold, filter);
+    }
+
+    private List<Document> searchLocal(float[] query, int topK, double similarityThreshold) {
+        List<Document> results = new ArrayList<>(topK);
+
+        lock.readLock().lock();
+        try {
+            for (HnswIndex.Hit hit : searchIndex(query, topK)) {
+                if (hit.similarity() < similarityThreshold) {
+                    break;
+                }
+                Document document = documents.get(hit.node());
+                // pgvector 결과와 같게 거리(1 - 코사인 유사도)를 메타데이터에 포함
+                Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+                metadata.put("distance", 1 - hit.similarity());
+                results.add(new Document(document.getId(), document.getContent(), metadata));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results;
+    }
+
+    /**
+     * 양자화 세그먼트면 rerank-factor 배수만큼 근사 후보를 뽑아 float32 로 다시 계산하여 상위 topK
+     */
+    private List<HnswIndex.Hit> searchIndex(float[] query, int topK) {
+        if (segment == null) {
+            return index.search(query, topK, efSearch);
+        }
+
+        int candidates = topK * Math.max(1, rerankFactor);
+        float[] normalized = HnswIndex.normalize(query);
+        return index.search(query, candidates, Math.max(efSearch, candidates)).stream()
+                .map(hit -> new HnswIndex.Hit(hit.node(), segment.exactDot(normalized, hit.node())))
+                .sorted(Comparator.comparingDouble(HnswIndex.Hit::similarity).reversed())
+                .limit(topK)
+                .toList();
+    }
+
+    /**
+     * 같은 ID 는 교체, 같은 상담 번호의 다른 ID 는 제거 (VectorDocumentStore 의 중복 행 정리와 동일)
+     */
+    private void put(Document document, float[] embedding) {
+        if (embedding.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + embedding.length);
+        }
+
+        // 실패할 수 있는 추가를 먼저 수행 - 실패하면 기존 노드/매핑은 그대로 남음
+        int node;
+        if (segment != null) {
+            try {
+                node = segment.append(segmentKey(document), embedding);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            graphDirty = true;
+        } else {
+            node = heapVectors.append(embedding);
+        }
+        documents.add(new Document(document.getId(), document.getContent(), document.getMetadata()));
+        index.insert(node);
+
+        Integer replaced = nodeById.put(document.getId(), node);
+        if (replaced != null) {
+            index.remove(replaced);
+            documents.set(replaced, null);
+        }
+
+        Object consultationNumber = document.getMetadata().get("consultationNumber");
+        if (consultationNumber != null) {
+            String previousId = idByConsultationNumber.put(consultationNumber.toString(), document.getId());
+            if (previousId != null && !previousId.equals(document.getId())) {
+                remove(previousId);
+                if (compacting) {
+                    changedDuringCompaction.add(previousId);
+                }
+            }
+        }
+    }
+
+    private void remove(String id) {
+        Integer node = nodeById.remove(id);
+        if (node != null) {
+            index.remove(node);
+            documents.set(node, null);
+            graphDirty = true;
+        }
+    }
+
+    // 세그먼트 키 - 상담 번호 (없으면 문서 ID)
+    private static String segmentKey(Document document) {
+        Object consultationNumber = document.getMetadata().get("consultationNumber");
+        return consultationNumber != null ? consultationNumber.toString() : document.getId();
+    }
+
+    static Map<String, Object> parseMetadata(String json) {
+        if (json == null || json.isBlank()) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {
+            });
+        } catch (Exception e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * pgvector 텍스트 표현 "[0.1,0.2,...]" 파싱
+     */
+    static float[] parseVector(String text) {
+        int start = text.indexOf('[') + 1;
+        int end = text.lastIndexOf(']');
+        int count = 1;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == ',') {
+                count++;
+            }
+        }
+
+        float[] vector = new float[count];
+        int position = start;
+        for (int i = 0; i < count; i++) {
+            int comma = text.indexOf(',', position);
+            int next = comma < 0 || comma > end ? end : comma;
+            vector[i] = Float.parseFloat(text.substring(position, next).trim());
+            position = next + 1;
+        }
+        return vector;
+    }
+
+    public Map<String, Object> getStats() {
+        long local = localSearches.get();
+        long delegated = delegatedSearches.get();
+        HnswIndex current = index;
+
+        return Map.of(
+                "enabled", enabled,
+                "loaded", loaded,
+                "documents", current != null ? current.size() : 0,
+                "deletedNodes", current != null ? current.deletedCount() : 0,
+                "localSearches", local,
+                "delegatedSearches", delegated,
+                "localSearchRate", local + delegated > 0 ? (double) local / (local + delegated) * 100 : 0,
+                "efSearch", efSearch,
+                "maintenance", Map.of(
+                        "compactions", compactions.get(),
+                        "refreshedDocuments", refreshedDocuments.get(),
+                        "lastRefreshAgeMs", lastRefreshMillis > 0 ? System.currentTimeMillis() - lastRefreshMillis : -1,
+                        "fresh", isFresh()),
+                "storage", segment != null ? "mmap/" + quantization : "heap"
+        );
+    }
+}
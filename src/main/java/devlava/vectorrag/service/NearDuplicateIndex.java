@@ -0,0 +1,346 @@
+package devlava.vectorrag.service;
+
+import devlava.vectorrag.dto.ConsultationAnalysisResult;
+import devlava.vectorrag.entity.SttData;
+import devlava.vectorrag.repository.SttDataRepository;
+import devlava.vectorrag.util.SimHash;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 거의 같은 상담 탐지 (SimHash + LSH) - 스크립트대로 진행된 상담은 기존 분석 결과를 재사용
+ * - 64비트 서명을 (max-hamming-distance + 1)개 밴드로 나눠 밴드별 해시 테이블에 등록
+ *   해밍 거리가 max 이하인 두 서명은 비둘기집 원리로 최소 한 밴드가 정확히 같으므로 후보 누락 없음
+ * - LLM 으로 분석된 결과만 재사용 대상 (재사용/사전 필터/실패 결과는 등록하지 않음)
+ * - verify-sample-rate 비율만큼은 재사용 대상이어도 LLM 으로 분석하여 일치율을 기록
+ */
+@Component
+@Slf4j
+public class NearDuplicateIndex {
+
+    private static final String SELECT_INDEXED_SQL = """
+            SELECT consultation_number, content_simhash
+            FROM tb_stt_data
+            WHERE analysis_status = 'COMPLETED'
+              AND (analysis_source IS NULL OR analysis_source = 'LLM')
+              AND content_simhash IS NOT NULL
+              AND response1 IS DISTINCT FROM '분석 실패 - 수동 확인 필요'
+              AND consultation_number > ?
+            ORDER BY consultation_number
+            LIMIT ?
+            """;
+
+    private static final String SELECT_MISSING_SIMHASH_SQL = """
+            SELECT consultation_number, consultation_content
+            FROM tb_stt_data
+            WHERE analysis_status = 'COMPLETED'
+              AND content_simhash IS NULL
+              AND consultation_number > ?
+            ORDER BY consultation_number
+            LIMIT ?
+            """;
+
+    private static final String UPDATE_SIMHASH_SQL =
+            "UPDATE tb_stt_data SET content_simhash = ? WHERE consultation_number = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SttDataRepository sttDataRepository;
+
+    @Value("${consultation.analysis.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${consultation.analysis.dedup.max-hamming-distance:3}")
+    private int maxHammingDistance;
+
+    @Value("${consultation.analysis.dedup.verify-sample-rate:0.0}")
+    private double verifySampleRate;
+
+    @Value("${consultation.analysis.dedup.max-bucket-size:64}")
+    private int maxBucketSize;
+
+    @Value("${consultation.analysis.dedup.load-chunk-size:1000}")
+    private int loadChunkSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private List<Map<Long, List<Entry>>> bandTables;
+    // 상담 번호별 등록된 서명 - 재분석으로 다시 등록되면 버킷에 중복으로 쌓지 않고 교체
+    private final Map<String, Long> signatures = new HashMap<>();
+    private int[] bandShifts;
+    private long[] bandMasks;
+    private volatile boolean loaded;
+
+    private final AtomicLong indexed = new AtomicLong(0);
+    private final AtomicLong lookups = new AtomicLong(0);
+    private final AtomicLong reused = new AtomicLong(0);
+    private final AtomicLong verified = new AtomicLong(0);
+    private final AtomicLong verifyMismatches = new AtomicLong(0);
+
+    private record Entry(String consultationNumber, long simhash) {
+    }
+
+    record Match(String consultationNumber, int distance) {
+    }
+
+    public NearDuplicateIndex() {
+    }
+
+    /**
+     * 스프링/DB 없이 생성 (밴드 조회 단위 테스트)
+     */
+    NearDuplicateIndex(int maxHammingDistance, int maxBucketSize) {
+        this.enabled = true;
+        this.maxHammingDistance = maxHammingDistance;
+        this.maxBucketSize = maxBucketSize;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        int bands = maxHammingDistance + 1;
+        int bitsPerBand = 64 / bands;
+
+        bandTables = new ArrayList<>(bands);
+        bandShifts = new int[bands];
+        bandMasks = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            int bits = band == bands - 1 ? 64 - bitsPerBand * band : bitsPerBand;
+            bandShifts[band] = bitsPerBand * band;
+            bandMasks[band] = bits == 64 ? -1L : (1L << bits) - 1;
+            bandTables.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 스키마 갱신이 끝난 뒤 기존 분석 결과로 인덱스를 채움 (서명이 없는 기존 행은 계산하여 저장)
+     * - 로드가 끝나기 전에는 재사용하지 않음
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            long backfilled = backfillMissingSignatures();
+
+            String lastConsultationNumber = "";
+            while (true) {
+                List<Entry> chunk = jdbcTemplate.query(SELECT_INDEXED_SQL,
+                        (rs, rowNum) -> new Entry(rs.getString(1), rs.getLong(2)),
+                        lastConsultationNumber, loadChunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                chunk.forEach(entry -> add(entry.consultationNumber(), entry.simhash()));
+                lastConsultationNumber = chunk.get(chunk.size() - 1).consultationNumber();
+            }
+
+            loaded = true;
+            log.info("Near-duplicate index loaded - entries: {}, backfilled signatures: {} ({}ms)",
+                    indexed.get(), backfilled, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("Failed to load near-duplicate index, analysis reuse disabled", e);
+        }
+    }
+
+    private long backfillMissingSignatures() {
+        long count = 0;
+        String lastConsultationNumber = "";
+        while (true) {
+            List<Object[]> updates = jdbcTemplate.query(SELECT_MISSING_SIMHASH_SQL,
+                    (rs, rowNum) -> new Object[]{SimHash.compute(rs.getString(2)), rs.getString(1)},
+                    lastConsultationNumber, loadChunkSize);
+            if (updates.isEmpty()) {
+                return count;
+            }
+            jdbcTemplate.batchUpdate(UPDATE_SIMHASH_SQL, updates);
+            lastConsultationNumber = (String) updates.get(updates.size() - 1)[1];
+            count += updates.size();
+        }
+    }
+
+    /**
+     * LLM 분석 결과가 저장된 뒤 호출 (AnalysisResultWriter)
+     * - 이미 등록된 상담은 서명이 같으면 건너뛰고, 다르면 기존 항목을 지운 뒤 다시 등록
+     */
+    public void add(String consultationNumber, long simhash) {
+        if (!enabled) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Long previous = signatures.remove(consultationNumber);
+            if (previous != null) {
+                if (previous == simhash) {
+                    signatures.put(consultationNumber, simhash);
+                    return;
+                }
+                removeEntries(consultationNumber, previous);
+                indexed.decrementAndGet();
+            }
+
+            boolean added = false;
+            for (int band = 0; band < bandTables.size(); band++) {
+                List<Entry> bucket = bandTables.get(band).computeIfAbsent(bandKey(band, simhash), k -> new ArrayList<>());
+                // 같은 스크립트 상담이 아주 많으면 대표 몇 건만 유지
+                if (bucket.size() < maxBucketSize) {
+                    bucket.add(new Entry(consultationNumber, simhash));
+                    added = true;
+                }
+            }
+            if (added) {
+                signatures.put(consultationNumber, simhash);
+                indexed.incrementAndGet();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeEntries(String consultationNumber, long simhash) {
+        for (int band = 0; band < bandTables.size(); band++) {
+            Map<Long, List<Entry>> table = bandTables.get(band);
+            long key = bandKey(band, simhash);
+            List<Entry> bucket = table.get(key);
+            if (bucket != null) {
+                bucket.removeIf(entry -> entry.consultationNumber().equals(consultationNumber));
+                if (bucket.isEmpty()) {
+                    table.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 거의 같은 기존 상담의 분석 결과 (재사용 표시 포함)
+     */
+    public Optional<ConsultationAnalysisResult> findReusableResult(String consultationNumber, long simhash) {
+        if (!enabled || !loaded) {
+            return Optional.empty();
+        }
+
+        lookups.incrementAndGet();
+        Match match = findClosest(consultationNumber, simhash);
+        if (match == null) {
+            return Optional.empty();
+        }
+
+        Optional<ConsultationAnalysisResult> result = sttDataRepository.findById(match.consultationNumber())
+                .filter(source -> "COMPLETED".equals(source.getAnalysisStatus()))
+                .map(NearDuplicateIndex::toReusedResult);
+
+        result.ifPresent(r -> {
+            reused.incrementAndGet();
+            log.info("Near-duplicate of consultation {} found for {} (hamming distance: {})",
+                    match.consultationNumber(), consultationNumber, match.distance());
+        });
+        return result;
+    }
+
+    Match findClosest(String consultationNumber, long simhash) {
+        Match best = null;
+        lock.readLock().lock();
+        try {
+            for (int band = 0; band < bandTables.size(); band++) {
+                List<Entry> bucket = bandTables.get(band).get(bandKey(band, simhash));
+                if (bucket == null) {
+                    continue;
+                }
+                for (Entry entry : bucket) {
+                    if (entry.consultationNumber().equals(consultationNumber)) {
+                        continue;
+                    }
+                    int distance = SimHash.hammingDistance(simhash, entry.simhash());
+                    if (distance <= maxHammingDistance && (best == null || distance < best.distance())) {
+                        best = new Match(entry.consultationNumber(), distance);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return best;
+    }
+
+    private static ConsultationAnalysisResult toReusedResult(SttData source) {
+        ConsultationAnalysisResult result = new ConsultationAnalysisResult();
+        result.setMainInquiry(source.getResponse1());
+        result.setHasMarketing(source.getResponse2());
+        result.setMarketingType(source.getResponse3());
+        result.setMarketingMent(source.getResponse4());
+        result.setCustomerAgreed(source.getResponse5());
+        result.setInappropriateMarketing(source.getResponse6());
+        result.setInappropriateMent(source.getResponse7());
+        result.setAnalysisSource(ConsultationAnalysisResult.SOURCE_REUSED);
+        result.setReusedFrom(source.getConsultationNumber());
+        return result;
+    }
+
+    /**
+     * 재사용 대상이어도 일부는 LLM 으로 다시 분석하여 재사용 품질을 확인
+     */
+    public boolean shouldVerify() {
+        return verifySampleRate > 0 && ThreadLocalRandom.current().nextDouble() < verifySampleRate;
+    }
+
+    /**
+     * 재사용했을 결과와 실제 LLM 결과 비교 (넛지 여부, 유형, 부적절 여부)
+     */
+    public boolean recordVerification(ConsultationAnalysisResult reusedResult, ConsultationAnalysisResult analyzed) {
+        verified.incrementAndGet();
+        boolean matches = Objects.equals(reusedResult.getHasNudge(), analyzed.getHasNudge())
+                && Objects.equals(reusedResult.getNudgeType(), analyzed.getNudgeType())
+                && Objects.equals(reusedResult.getInappropriateNudge(), analyzed.getInappropriateNudge());
+        if (!matches) {
+            verifyMismatches.incrementAndGet();
+            log.warn("Near-duplicate verification mismatch - source: {}, reused: {}/{}/{}, analyzed: {}/{}/{}",
+                    reusedResult.getReusedFrom(),
+                    reusedResult.getHasNudge(), reusedResult.getNudgeType(), reusedResult.getInappropriateNudge(),
+                    analyzed.getHasNudge(), analyzed.getNudgeType(), analyzed.getInappropriateNudge());
+        }
+        return matches;
+    }
+
+    private long bandKey(int band, long simhash) {
+        return (simhash >>> bandShifts[band]) & bandMasks[band];
+    }
+
+    public Map<String, Object> getStats() {
+        long lookup = lookups.get();
+        long verify = verified.get();
+
+        return Map.of(
+                "enabled", enabled,
+                "loaded", loaded,
+                "entries", indexed.get(),
+                "lookups", lookup,
+                "reused", reused.get(),
+                "reuseRate", lookup > 0 ? (double) reused.get() / lookup * 100 : 0,
+                "verified", verify,
+                "verifyAgreementRate", verify > 0 ? (double) (verify - verifyMismatches.get()) / verify * 100 : 0,
+                "maxHammingDistance", maxHammingDistance
+        );
+    }
+}
@@ -0,0 +1,93 @@
+package devlava.vectorrag.service;
+
+import devlava.vectorrag.dto.ConsultationAnalysisResult;
+import devlava.vectorrag.util.NudgeDictionary;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 넛지 사전 필터 - LLM 호출 전에 구문 사전으로 명백한 비넛지 상담을 걸러냄
+ * - 상담사 발화에서 넛지 유형/영업/부적절 구문이 하나도 없으면 hasNudge=N 으로 바로 확정
+ * - 하나라도 있으면 애매하거나 넛지 가능성이 있으므로 기존 RAG 분석으로 넘김
+ * - 사전은 consultation.analysis.prefilter.dictionary 리소스에서 로드 ([카테고리] + 한 줄에 한 구문)
+ * - 같은 사전을 TranscriptCompactor 의 발화 점수에도 사용
+ */
+@Component
+@Slf4j
+public class NudgePreFilter {
+
+    private static final int MAX_INQUIRY_CHARS = 100;
+
+    @Value("${consultation.analysis.prefilter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${consultation.analysis.prefilter.dictionary:classpath:nudge-dictionary.txt}")
+    private Resource dictionary;
+
+    private NudgeDictionary nudgeDictionary;
+
+    /**
+     * matchedCategories 가 비어 있으면 명백한 비넛지
+     */
+    public record Decision(boolean clearNegative, Set<String> matchedCategories) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        nudgeDictionary = NudgeDictionary.load(dictionary.getInputStream());
+        log.info("Nudge pre-filter loaded {} phrases in {} categories (enabled: {})",
+                nudgeDictionary.phraseCount(), nudgeDictionary.categoryCount(), enabled);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public NudgeDictionary getDictionary() {
+        return nudgeDictionary;
+    }
+
+    /**
+     * 고객 발화는 제외하고 상담사(또는 화자 미상) 발화만 검사 - 고객이 먼저 요금제를 물어본 경우 등은 넛지가 아님
+     */
+    public Decision classify(List<TranscriptCompactor.Turn> turns) {
+        Set<String> matchedCategories = new LinkedHashSet<>();
+        for (TranscriptCompactor.Turn turn : turns) {
+            if (turn.speaker() != TranscriptCompactor.Speaker.CUSTOMER) {
+                matchedCategories.addAll(nudgeDictionary.match(turn.text()).signalCategories());
+            }
+        }
+        return new Decision(matchedCategories.isEmpty(), matchedCategories);
+    }
+
+    /**
+     * 명백한 비넛지 상담의 결과 - 주요 문의는 첫 고객 발화로 대신함
+     */
+    public ConsultationAnalysisResult negativeResult(List<TranscriptCompactor.Turn> turns) {
+        String mainInquiry = turns.stream()
+                .filter(turn -> turn.speaker() == TranscriptCompactor.Speaker.CUSTOMER)
+                .map(TranscriptCompactor.Turn::text)
+                .findFirst()
+                .map(text -> text.length() > MAX_INQUIRY_CHARS ? text.substring(0, MAX_INQUIRY_CHARS) + "..." : text)
+                .orElse("단순 문의 (넛지 없음)");
+
+        ConsultationAnalysisResult result = new ConsultationAnalysisResult();
+        result.setMainInquiry(mainInquiry);
+        result.setHasNudge("N");
+        result.setNudgeType("N");
+        result.setNudgeContent("N");
+        result.setCustomerResponse("N");
+        result.setInappropriateNudge("N");
+        result.setInappropriateReason("N");
+        result.setAnalysisSource(ConsultationAnalysisResult.SOURCE_PREFILTER);
+        return result;
+    }
+}
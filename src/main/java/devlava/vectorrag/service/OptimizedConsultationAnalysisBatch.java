@@ -5,21 +5,30 @@ import devlava.vectorrag.dto.ConsultationAnalysisResult;
 import devlava.vectorrag.entity.SttData;
 import devlava.vectorrag.repository.SttDataRepository;
 import devlava.vectorrag.util.ConsultationAnalysisLogger;
+import devlava.vectorrag.util.SimHash;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 @Slf4j
 public class OptimizedConsultationAnalysisBatch {
 
+    private static final String MODE_SEQUENTIAL = "sequential";
+
     private final AtomicBoolean isProcessing = new AtomicBoolean(false);
 
     @Autowired
@@ -28,6 +37,28 @@ public class OptimizedConsultationAnalysisBatch {
     @Autowired
     private ConsultationAnalysisService analysisService;
 
+    @Autowired
+    private ConsultationWorkQueue workQueue;
+
+    @Autowired
+    private AnalysisResultWriter resultWriter;
+
+    @Autowired
+    private NearDuplicateIndex nearDuplicateIndex;
+
+    @Autowired
+    private AnalysisMetricsService metricsService;
+
+    @Autowired
+    @Qualifier("analysisExecutor")
+    private TaskExecutor analysisExecutor;
+
+    @Value("${consultation.analysis.mode:concurrent}")
+    private String processingMode;
+
+    @Value("${consultation.analysis.max-concurrency:4}")
+    private int maxConcurrency;
+
     @Value("${consultation.analysis.batch-size:3}")
     private int batchSize;
 
@@ -37,8 +68,16 @@ public class OptimizedConsultationAnalysisBatch {
     @Value("${consultation.analysis.max-retry-count:2}")
     private int maxRetryCount;
 
-    @Scheduled(fixedDelay = 300000) // 5분마다 실행
-    public void processUnanalyzedConsultationsSequentially() {
+    @Value("${consultation.analysis.retrieval.prefetch:true}")
+    private boolean prefetchRetrieval;
+
+    @Value("${consultation.analysis.retrieval.prefetch-page-size:16}")
+    private int prefetchPageSize;
+
+    // 기본 5분마다 실행 (부하 테스트 등에서는 initial-delay 를 늘려 자동 실행을 막음)
+    @Scheduled(fixedDelayString = "${consultation.analysis.schedule.interval-ms:300000}",
+            initialDelayString = "${consultation.analysis.schedule.initial-delay-ms:0}")
+    public void processUnanalyzedConsultations() {
 
         if (!isProcessing.compareAndSet(false, true)) {
             log.info("Batch analysis is already running, skipping this execution");
@@ -46,85 +85,222 @@ public class OptimizedConsultationAnalysisBatch {
         }
 
         try {
-            log.info("Starting sequential batch analysis process");
+            log.info("Starting {} batch analysis process", processingMode);
             ConsultationAnalysisLogger.logBatchStart(batchSize);
 
+            // 점유가 만료된 PROCESSING 건도 다시 가져오므로 대기 건수가 0이어도 점유를 시도
             long pendingCount = sttDataRepository.countPendingAnalysis();
-            log.info("Found {} pending consultations for analysis", pendingCount);
-
-            if (pendingCount == 0) {
-                log.info("No pending consultations found");
-                return;
+            metricsService.recordPendingBacklog(pendingCount);
+            log.info("Found {} pending consultations for analysis (node: {})",
+                    pendingCount, workQueue.getNodeId());
+
+            if (MODE_SEQUENTIAL.equalsIgnoreCase(processingMode)) {
+                processSequentially(pendingCount);
+            } else {
+                processConcurrently(pendingCount);
             }
 
-            int processedCount = 0;
-            int failedCount = 0;
-            int totalProcessed = 0;
+        } catch (Exception e) {
+            log.error("Error during batch analysis process", e);
+        } finally {
+            isProcessing.set(false);
+        }
+    }
 
-            while (totalProcessed < pendingCount) {
-                List<SttData> batch = sttDataRepository.findUnanalyzedData(
-                        PageRequest.of(0, batchSize)
-                );
+    /**
+     * 대기 건수 지표 갱신 - 스크레이프마다 COUNT 를 실행하지 않도록 주기적으로 조회한 값을 노출
+     */
+    @Scheduled(fixedDelayString = "${consultation.analysis.backlog-gauge-interval-ms:30000}")
+    public void refreshBacklogGauge() {
+        try {
+            metricsService.recordPendingBacklog(sttDataRepository.countPendingAnalysis());
+        } catch (Exception e) {
+            log.warn("Failed to refresh pending backlog gauge: {}", e.getMessage());
+        }
+    }
 
-                if (batch.isEmpty()) {
-                    break;
-                }
+    /**
+     * 동시 처리 모드 - 세마포어로 동시 분석 개수를 제한하여 고정 대기 없이 배압 적용
+     * 한 페이지(prefetch-page-size)를 미리 점유하여 참고 사례를 한 번에 조회한 뒤, 슬롯이 빌 때마다 한 건씩 실행
+     */
+    private void processConcurrently(long pendingCount) {
+        Semaphore inFlight = new Semaphore(maxConcurrency);
+        AtomicInteger processedCount = new AtomicInteger(0);
+        AtomicInteger failedCount = new AtomicInteger(0);
+        Deque<SttData> lookahead = new ArrayDeque<>();
+        int pageSize = prefetchRetrieval ? Math.max(prefetchPageSize, maxConcurrency) : maxConcurrency;
+        int dispatched = 0;
 
-                log.info("Processing batch of {} consultations (Total processed: {})",
-                        batch.size(), totalProcessed);
+        try {
+            while (isProcessing.get()) {
+                // 처리 슬롯이 빌 때까지 대기 (배압)
+                inFlight.acquire();
+
+                if (lookahead.isEmpty()) {
+                    List<SttData> page = workQueue.claim(pageSize);
+                    if (page.isEmpty()) {
+                        inFlight.release();
+                        break;
+                    }
+                    log.debug("Claimed page of {} consultations (Total dispatched: {})", page.size(), dispatched);
+                    prefetchSimilarConsultations(page);
+                    lookahead.addAll(page);
+                }
 
-                for (SttData sttData : batch) {
-                    try {
-                        if (totalProcessed > 0) {
-                            Thread.sleep(processingDelay);
+                SttData sttData = lookahead.poll();
+                metricsService.recordClaimedBacklog(lookahead.size());
+                dispatched++;
+                try {
+                    analysisExecutor.execute(() -> {
+                        try {
+                            if (processConsultationWithRetry(sttData)) {
+                                processedCount.incrementAndGet();
+                            } else {
+                                failedCount.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            log.error("Unexpected error processing consultation: {}",
+                                    sttData.getConsultationNumber(), e);
+                            failedCount.incrementAndGet();
+                        } finally {
+                            inFlight.release();
+                            int completed = processedCount.get() + failedCount.get();
+                            if (completed % 10 == 0) {
+                                log.info("Progress: {} processed ({} pending at start)",
+                                        completed, pendingCount);
+                            }
                         }
+                    });
+                } catch (TaskRejectedException e) {
+                    log.error("Analysis executor rejected consultation: {}",
+                            sttData.getConsultationNumber(), e);
+                    inFlight.release();
+                    workQueue.release(sttData);
+                }
+            }
 
-                        boolean success = processConsultationWithRetry(sttData);
-                        if (success) {
-                            processedCount++;
-                        } else {
-                            failedCount++;
-                        }
-                        totalProcessed++;
+            // 실행 중인 분석이 모두 끝날 때까지 대기
+            inFlight.acquire(maxConcurrency);
 
-                        if (totalProcessed % 10 == 0) {
-                            log.info("Progress: {}/{} processed", totalProcessed, pendingCount);
-                        }
+        } catch (InterruptedException e) {
+            log.warn("Batch processing interrupted", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            // 중단 시 아직 시작하지 않은 점유 건은 바로 반환 (점유 만료까지 기다리지 않도록)
+            lookahead.forEach(workQueue::release);
+            metricsService.recordClaimedBacklog(0);
+        }
 
-                    } catch (InterruptedException e) {
-                        log.warn("Batch processing interrupted", e);
-                        Thread.currentThread().interrupt();
-                        break;
-                    } catch (Exception e) {
-                        log.error("Unexpected error processing consultation: {}",
-                                sttData.getConsultationNumber(), e);
+        ConsultationAnalysisLogger.logBatchComplete(processedCount.get(), failedCount.get());
+        log.info("Concurrent batch analysis completed - Processed: {}, Failed: {}",
+                processedCount.get(), failedCount.get());
+    }
+
+    /**
+     * 순차 처리 모드 - 건별 지연을 두고 한 건씩 처리
+     */
+    private void processSequentially(long pendingCount) {
+        int processedCount = 0;
+        int failedCount = 0;
+        int totalProcessed = 0;
+
+        while (isProcessing.get()) {
+            List<SttData> batch = workQueue.claim(batchSize);
+
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            log.info("Processing batch of {} consultations (Total processed: {})",
+                    batch.size(), totalProcessed);
+            prefetchSimilarConsultations(batch);
+
+            int remaining = batch.size();
+            for (SttData sttData : batch) {
+                metricsService.recordClaimedBacklog(--remaining);
+                try {
+                    if (totalProcessed > 0) {
+                        Thread.sleep(processingDelay);
+                    }
+
+                    boolean success = processConsultationWithRetry(sttData);
+                    if (success) {
+                        processedCount++;
+                    } else {
                         failedCount++;
-                        totalProcessed++;
                     }
-                }
+                    totalProcessed++;
 
-                if (totalProcessed < pendingCount) {
-                    try {
-                        Thread.sleep(5000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
+                    if (totalProcessed % 10 == 0) {
+                        log.info("Progress: {}/{} processed", totalProcessed, pendingCount);
                     }
+
+                } catch (InterruptedException e) {
+                    log.warn("Batch processing interrupted", e);
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    log.error("Unexpected error processing consultation: {}",
+                            sttData.getConsultationNumber(), e);
+                    failedCount++;
+                    totalProcessed++;
+                }
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            if (batch.size() == batchSize) {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 }
             }
+        }
+
+        metricsService.recordClaimedBacklog(0);
+        ConsultationAnalysisLogger.logBatchComplete(processedCount, failedCount);
+        log.info("Sequential batch analysis completed - Processed: {}, Failed: {}",
+                processedCount, failedCount);
+    }
 
-            ConsultationAnalysisLogger.logBatchComplete(processedCount, failedCount);
-            log.info("Sequential batch analysis completed - Processed: {}, Failed: {}",
-                    processedCount, failedCount);
+    /**
+     * 점유한 페이지의 참고 사례를 한 번에 임베딩/검색하여 검색 캐시를 채움 (한 건이면 이득이 없어 생략)
+     */
+    private void prefetchSimilarConsultations(List<SttData> batch) {
+        if (!prefetchRetrieval || batch.size() < 2) {
+            return;
+        }
 
+        try {
+            analysisService.prefetchSimilarConsultations(batch.stream()
+                    .map(SttData::getConsultationContent)
+                    .toList());
         } catch (Exception e) {
-            log.error("Error during sequential batch analysis process", e);
-        } finally {
-            isProcessing.set(false);
+            log.warn("Failed to prefetch similar consultations for {} consultations: {}",
+                    batch.size(), e.getMessage());
         }
     }
 
+    /**
+     * 건별 처리 시간/성공 여부를 지표에 기록 (재시도 포함 전체 시간)
+     */
     private boolean processConsultationWithRetry(SttData sttData) {
+        long startTime = System.currentTimeMillis();
+        metricsService.recordProcessingStart();
+        boolean success = false;
+        try {
+            success = analyzeWithRetry(sttData);
+            return success;
+        } finally {
+            metricsService.recordProcessingComplete(System.currentTimeMillis() - startTime, success);
+        }
+    }
+
+    private boolean analyzeWithRetry(SttData sttData) {
         int retryCount = 0;
 
         while (retryCount < maxRetryCount) {
@@ -132,16 +308,16 @@ public class OptimizedConsultationAnalysisBatch {
                 long startTime = System.currentTimeMillis();
                 ConsultationAnalysisLogger.logAnalysisStart(sttData.getConsultationNumber());
 
-                // 처리 중 상태로 변경
-                updateConsultationStatus(sttData, "PROCESSING");
+                // 거의 같은 상담의 결과가 있으면 재사용, 없으면 RAG 기반 분석 실행
+                ConsultationAnalysisResult result = analyzeOrReuse(sttData);
 
-                // RAG 기반 분석 실행
-                ConsultationAnalysisResult result = analysisService.analyzeWithRAG(
-                        sttData.getConsultationContent()
-                );
+                // 기본값으로 대체된 결과는 완료로 저장하지 않고 재시도, 끝내 실패하면 FAILED 처리
+                if (ConsultationAnalysisResult.SOURCE_FALLBACK.equals(result.getAnalysisSource())) {
+                    throw new IllegalStateException("Analysis fell back to default result");
+                }
 
-                // 결과 저장 - 각각 독립적인 트랜잭션으로 처리
-                analysisService.updateAnalysisResult(sttData, result);
+                // 결과 저장은 write-behind 버퍼에서 배치로 처리
+                resultWriter.submit(sttData, result);
 
                 long processingTime = System.currentTimeMillis() - startTime;
                 ConsultationAnalysisLogger.logAnalysisComplete(
@@ -167,8 +343,8 @@ public class OptimizedConsultationAnalysisBatch {
                 } else {
                     ConsultationAnalysisLogger.logAnalysisError(
                             sttData.getConsultationNumber(), e.getMessage());
-                    // 별도 트랜잭션으로 실패 상태 업데이트
-                    analysisService.markAsFailed(sttData);
+                    // 실패 상태도 버퍼를 통해 배치로 업데이트
+                    resultWriter.submitFailure(sttData);
                     return false;
                 }
             }
@@ -177,22 +353,37 @@ public class OptimizedConsultationAnalysisBatch {
         return false;
     }
 
-    private void updateConsultationStatus(SttData sttData, String status) {
-        try {
-            sttData.setAnalysisStatus(status);
-            sttDataRepository.save(sttData);
-        } catch (Exception e) {
-            log.error("Failed to update status for consultation: {}",
-                    sttData.getConsultationNumber(), e);
+    private ConsultationAnalysisResult analyzeOrReuse(SttData sttData) {
+        if (sttData.getContentSimhash() == null) {
+            sttData.setContentSimhash(SimHash.compute(sttData.getConsultationContent()));
+        }
+
+        ConsultationAnalysisResult reused = nearDuplicateIndex
+                .findReusableResult(sttData.getConsultationNumber(), sttData.getContentSimhash())
+                .orElse(null);
+
+        if (reused == null) {
+            return analysisService.analyzeWithRAG(sttData.getConsultationContent());
         }
+
+        if (!nearDuplicateIndex.shouldVerify()) {
+            return reused;
+        }
+
+        // 검증 샘플 - LLM 결과를 저장하고 재사용 결과와의 일치 여부만 기록
+        // 검증 분석이 실패하면 비교하지 않고 재사용 결과를 저장
+        ConsultationAnalysisResult analyzed = analysisService.analyzeWithRAG(sttData.getConsultationContent());
+        if (ConsultationAnalysisResult.SOURCE_FALLBACK.equals(analyzed.getAnalysisSource())) {
+            return reused;
+        }
+        nearDuplicateIndex.recordVerification(reused, analyzed);
+        return analyzed;
     }
 
     public void processSpecificConsultation(String consultationNumber) {
         log.info("Manual processing requested for consultation: {}", consultationNumber);
 
-        SttData sttData = sttDataRepository.findById(consultationNumber)
-                .orElseThrow(() -> new IllegalArgumentException("Consultation not found: " + consultationNumber));
-
+        SttData sttData = workQueue.claimSpecific(consultationNumber);
         processConsultationWithRetry(sttData);
     }
 
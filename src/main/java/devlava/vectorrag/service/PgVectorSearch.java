@@ -0,0 +1,493 @@
+package devlava.vectorrag.service;
+
+import devlava.vectorrag.util.MetadataFilterSql;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.PgVectorStore;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * pgvector 검색 경로 - 저장 형식(storage-mode)에 맞는 인덱스로 검색
+ * - full: 768차원 float32 HNSW (PgVectorStore 기본 동작)
+ * - halfvec: embedding::halfvec 식 인덱스 (인덱스 크기 절반)
+ * - binary: binary_quantize(embedding) 해밍 거리 인덱스로 후보 검색 후 float32 코사인 거리로 재정렬 (인덱스 크기 1/32)
+ * - truncated: 앞쪽 N차원(Matryoshka, nomic-embed-text v1.5)만 인덱싱하여 후보 검색 후 float32 로 재정렬
+ * 원본 embedding 열은 그대로 두므로 모드 전환 시 재임베딩 없이 인덱스만 다시 만들면 됨
+ * 메타데이터 필터 검색은 인덱스를 타는 SQL 조건(MetadataFilterSql)으로 처리, 변환할 수 없는 식만 PgVectorStore 로 위임
+ */
+@Component
+@Slf4j
+public class PgVectorSearch {
+
+    public enum Mode {
+        FULL, HALFVEC, BINARY, TRUNCATED
+    }
+
+    // PgVectorStore 가 만드는 기본 HNSW 인덱스
+    private static final String FULL_INDEX = "spring_ai_vector_index";
+
+    // ORDER BY 식이 인덱스 식과 다르면(+ 0) 인덱스를 쓰지 않으므로 정확한 전수 검색 기준
+    private static final String EXACT_SQL = """
+            SELECT id::text FROM vector_store
+            WHERE id <> ?::uuid
+            ORDER BY (embedding <=> ?::vector) + 0
+            LIMIT ?
+            """;
+
+    @Autowired
+    private PgVectorStore pgVectorStore;
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.ai.vectorstore.pgvector.dimensions:768}")
+    private int dimensions;
+
+    @Value("${consultation.vector-store.pgvector.storage-mode:full}")
+    private String storageMode;
+
+    @Value("${consultation.vector-store.pgvector.truncated-dimensions:256}")
+    private int truncatedDimensions;
+
+    @Value("${consultation.vector-store.pgvector.rerank-factor:4}")
+    private int rerankFactor;
+
+    @Value("${consultation.vector-store.recall-report.enabled:false}")
+    private boolean recallReportEnabled;
+
+    @Value("${consultation.vector-store.recall-report.max-sample-size:200}")
+    private int maxRecallSampleSize;
+
+    @Value("${consultation.vector-store.recall-report.max-top-k:20}")
+    private int maxRecallTopK;
+
+    // 보고서는 전수 검색과 인덱스 생성/제거를 하므로 한 번에 하나만
+    private final AtomicBoolean recallReportRunning = new AtomicBoolean(false);
+
+    private Mode mode;
+
+    /**
+     * 스키마 초기화 이후 현재 모드의 인덱스 생성, 다른 모드의 인덱스는 제거 (쓰기마다 유지 비용이 들므로)
+     * CONCURRENTLY 로 생성/제거하여 그동안에도 vector_store 쓰기가 막히지 않음
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepareIndexes() {
+        try {
+            createIndex(mode());
+            for (Mode other : Mode.values()) {
+                if (other != mode()) {
+                    dropIndex(other);
+                }
+            }
+            log.info("pgvector storage mode: {} (indexes: {})", mode(), indexSizes());
+        } catch (Exception e) {
+            log.error("Failed to prepare pgvector index for storage mode {}", mode(), e);
+        }
+    }
+
+    public Mode mode() {
+        if (mode == null) {
+            mode = Mode.valueOf(storageMode.trim().toUpperCase());
+        }
+        return mode;
+    }
+
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (request.hasFilterExpression()) {
+            MetadataFilterSql.Clause filter = MetadataFilterSql.translate(request.getFilterExpression());
+            if (filter == null) {
+                return pgVectorStore.similaritySearch(request);
+            }
+            return filteredSearch(request, filter);
+        }
+        if (mode() == Mode.FULL) {
+            return pgVectorStore.similaritySearch(request);
+        }
+
+        float[] query = embeddingModel.embed(request.getQuery());
+        return queryDocuments(searchSql(mode(), true), request.getSimilarityThreshold(),
+                searchParameters(mode(), query, null, request.getTopK()));
+    }
+
+    /**
+     * 메타데이터 조건(인덱스)으로 후보를 줄인 뒤 float32 코사인 거리로 정렬
+     * 조건이 넓으면 플래너가 full 모드의 HNSW 인덱스를 쓰고, 좁으면 조건 인덱스로 찾은 후보만 정렬
+     */
+    private List<Document> filteredSearch(SearchRequest request, MetadataFilterSql.Clause filter) {
+        String vector = toVectorLiteral(embeddingModel.embed(request.getQuery()));
+
+        List<Object> parameters = new ArrayList<>(filter.parameters().size() + 3);
+        parameters.add(vector);
+        parameters.addAll(filter.parameters());
+        parameters.add(vector);
+        parameters.add(request.getTopK());
+
+        return queryDocuments("SELECT id::text, content, metadata::text, embedding <=> ?::vector AS distance "
+                        + "FROM vector_store WHERE " + filter.sql() + " ORDER BY embedding <=> ?::vector LIMIT ?",
+                request.getSimilarityThreshold(), parameters.toArray());
+    }
+
+    /**
+     * 여러 질의 벡터의 topK 를 한 번의 SQL 로 검색 (unnest 한 질의 배열에 LATERAL 조인), 결과는 질의 순서대로
+     * 변환할 수 없는 필터 식이면 질의별로 PgVectorStore 에 위임
+     */
+    public List<List<Document>> similaritySearch(List<String> queries, List<float[]> embeddings, int topK,
+                                                 double similarityThreshold, Filter.Expression filterExpression) {
+        MetadataFilterSql.Clause filter = null;
+        if (filterExpression != null) {
+            filter = MetadataFilterSql.translate(filterExpression);
+            if (filter == null) {
+                return queries.stream()
+                        .map(query -> pgVectorStore.similaritySearch(SearchRequest.query(query)
+                                .withTopK(topK)
+                                .withSimilarityThreshold(similarityThreshold)
+                                .withFilterExpression(filterExpression)))
+                        .toList();
+            }
+        }
+
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(embeddings.stream().map(PgVectorSearch::toVectorLiteral).toArray(String[]::new));
+        String nearest;
+        if (filter != null) {
+            nearest = "SELECT id, content, metadata, embedding <=> q.embedding AS distance FROM vector_store "
+                    + "WHERE " + filter.sql() + " ORDER BY embedding <=> q.embedding LIMIT ?";
+            parameters.addAll(filter.parameters());
+        } else {
+            nearest = batchNearestSql(mode());
+            if (mode() == Mode.BINARY || mode() == Mode.TRUNCATED) {
+                parameters.add(topK * Math.max(1, rerankFactor));
+            }
+        }
+        parameters.add(topK);
+
+        List<List<Document>> results = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            results.add(new ArrayList<>());
+        }
+
+        double maxDistance = 1 - similarityThreshold;
+        jdbcTemplate.query("SELECT q.ordinal, n.id::text, n.content, n.metadata::text, n.distance "
+                        + "FROM unnest(?::vector[]) WITH ORDINALITY AS q(embedding, ordinal) "
+                        + "CROSS JOIN LATERAL (" + nearest + ") n "
+                        + "ORDER BY q.ordinal, n.distance",
+                rs -> {
+                    double distance = rs.getDouble(5);
+                    if (distance <= maxDistance) {
+                        Map<String, Object> metadata = HnswVectorStore.parseMetadata(rs.getString(4));
+                        metadata.put("distance", distance);
+                        results.get(rs.getInt(1) - 1).add(new Document(rs.getString(2), rs.getString(3), metadata));
+                    }
+                },
+                parameters.toArray());
+        return results;
+    }
+
+    // LATERAL 안의 질의별 검색 - ORDER BY 식은 모드별 인덱스 식과 같게
+    private String batchNearestSql(Mode target) {
+        String columns = "id, content, metadata, embedding <=> q.embedding AS distance";
+        return switch (target) {
+            case FULL -> "SELECT " + columns + " FROM vector_store ORDER BY embedding <=> q.embedding LIMIT ?";
+            case HALFVEC -> "SELECT " + columns + " FROM vector_store "
+                    + "ORDER BY embedding::halfvec(%d) <=> q.embedding::halfvec(%d) LIMIT ?"
+                    .formatted(dimensions, dimensions);
+            case BINARY -> "SELECT " + columns + " FROM (SELECT id, content, metadata, embedding FROM vector_store "
+                    + "ORDER BY binary_quantize(embedding)::bit(%d) <~> binary_quantize(q.embedding)::bit(%d) LIMIT ?) c "
+                    .formatted(dimensions, dimensions)
+                    + "ORDER BY distance LIMIT ?";
+            case TRUNCATED -> "SELECT " + columns + " FROM (SELECT id, content, metadata, embedding FROM vector_store "
+                    + "ORDER BY subvector(embedding, 1, %d)::vector(%d) <=> subvector(q.embedding, 1, %d)::vector(%d) "
+                    .formatted(truncatedDimensions, truncatedDimensions, truncatedDimensions, truncatedDimensions)
+                    + "LIMIT ?) c "
+                    + "ORDER BY distance LIMIT ?";
+        };
+    }
+
+    // 거리(1 - 코사인 유사도)는 PgVectorStore 결과와 같게 메타데이터에 포함
+    private List<Document> queryDocuments(String sql, double similarityThreshold, Object... parameters) {
+        double maxDistance = 1 - similarityThreshold;
+        List<Document> results = new ArrayList<>();
+        jdbcTemplate.query(sql, rs -> {
+            double distance = rs.getDouble(4);
+            if (distance <= maxDistance) {
+                Map<String, Object> metadata = HnswVectorStore.parseMetadata(rs.getString(3));
+                metadata.put("distance", distance);
+                results.add(new Document(rs.getString(1), rs.getString(2), metadata));
+            }
+        }, parameters);
+        return results;
+    }
+
+    /**
+     * 모드별 recall@k / 지연 시간 / 인덱스 크기 비교
+     * 저장된 문서 sampleSize 건의 임베딩을 질의로 사용 (자기 자신 제외), 기준은 인덱스 없는 float32 전수 검색
+     * 인덱스가 없는 모드는 전수 검색이 되므로 buildIndexes=true 로 모든 모드의 인덱스를 만든 뒤 비교
+     * (CONCURRENTLY 로 생성하고, 보고서가 끝나면 현재 모드가 아닌 인덱스는 다시 제거)
+     * 운영 테이블에 부하를 주므로 sampleSize/topK 는 상한 이내, 동시에 하나만 실행
+     */
+    public Map<String, Object> recallReport(int sampleSize, int topK, boolean buildIndexes) {
+        if (sampleSize < 1 || sampleSize > maxRecallSampleSize) {
+            throw new IllegalArgumentException("sampleSize must be between 1 and " + maxRecallSampleSize);
+        }
+        if (topK < 1 || topK > maxRecallTopK) {
+            throw new IllegalArgumentException("topK must be between 1 and " + maxRecallTopK);
+        }
+        if (!recallReportRunning.compareAndSet(false, true)) {
+            throw new IllegalStateException("Recall report is already running");
+        }
+
+        try {
+            if (!buildIndexes) {
+                return buildRecallReport(sampleSize, topK);
+            }
+
+            try {
+                for (Mode candidate : Mode.values()) {
+                    createIndex(candidate);
+                }
+                return buildRecallReport(sampleSize, topK);
+            } finally {
+                for (Mode candidate : Mode.values()) {
+                    if (candidate != mode()) {
+                        dropIndex(candidate);
+                    }
+                }
+            }
+        } finally {
+            recallReportRunning.set(false);
+        }
+    }
+
+    public boolean isRecallReportEnabled() {
+        return recallReportEnabled;
+    }
+
+    private Map<String, Object> buildRecallReport(int sampleSize, int topK) {
+
+        List<Object[]> samples = jdbcTemplate.query(
+                "SELECT id::text, embedding::text FROM vector_store ORDER BY random() LIMIT ?",
+                (rs, rowNum) -> new Object[]{rs.getString(1), HnswVectorStore.parseVector(rs.getString(2))},
+                sampleSize);
+
+        List<List<String>> exact = new ArrayList<>(samples.size());
+        long[] exactNanos = new long[samples.size()];
+        for (int i = 0; i < samples.size(); i++) {
+            long startTime = System.nanoTime();
+            exact.add(queryIds(EXACT_SQL, samples.get(i)[0], toVectorLiteral((float[]) samples.get(i)[1]), topK));
+            exactNanos[i] = System.nanoTime() - startTime;
+        }
+
+        Map<String, Object> indexSizes = indexSizes();
+        Map<String, Object> modes = new LinkedHashMap<>();
+        modes.put("exact", latencySummary(exactNanos, 1.0, null));
+        for (Mode candidate : Mode.values()) {
+            long[] nanos = new long[samples.size()];
+            int found = 0;
+            for (int i = 0; i < samples.size(); i++) {
+                long startTime = System.nanoTime();
+                List<String> ids = queryIds(searchSql(candidate, false),
+                        searchParameters(candidate, (float[]) samples.get(i)[1], (String) samples.get(i)[0], topK));
+                nanos[i] = System.nanoTime() - startTime;
+
+                Set<String> expected = new HashSet<>(exact.get(i));
+                found += (int) ids.stream().filter(expected::contains).count();
+            }
+            int expectedTotal = exact.stream().mapToInt(List::size).sum();
+            modes.put(candidate.name().toLowerCase(), latencySummary(nanos,
+                    expectedTotal > 0 ? (double) found / expectedTotal : 0,
+                    indexSizes.get(indexName(candidate))));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("storageMode", mode().name().toLowerCase());
+        report.put("samples", samples.size());
+        report.put("topK", topK);
+        report.put("rerankFactor", rerankFactor);
+        report.put("truncatedDimensions", truncatedDimensions);
+        report.put("tableBytes", jdbcTemplate.queryForObject(
+                "SELECT pg_total_relation_size('vector_store')", Long.class));
+        report.put("modes", modes);
+        return report;
+    }
+
+    /**
+     * ORDER BY 식은 인덱스 식과 정확히 같아야 인덱스 검색이 됨
+     * withDocument=false 이면 recall 측정용으로 ID 만 조회하고 자기 자신(id <> ?)은 제외
+     */
+    private String searchSql(Mode target, boolean withDocument) {
+        String columns = withDocument
+                ? "id::text, content, metadata::text, embedding <=> ?::vector AS distance"
+                : "id::text";
+        String where = withDocument ? "" : "WHERE id <> ?::uuid ";
+
+        return switch (target) {
+            case FULL -> "SELECT " + columns + " FROM vector_store " + where
+                    + "ORDER BY embedding <=> ?::vector LIMIT ?";
+            case HALFVEC -> "SELECT " + columns + " FROM vector_store " + where
+                    + "ORDER BY embedding::halfvec(%d) <=> ?::halfvec(%d) LIMIT ?".formatted(dimensions, dimensions);
+            case BINARY -> "SELECT " + columns + " FROM (SELECT id, content, metadata, embedding FROM vector_store "
+                    + where + "ORDER BY binary_quantize(embedding)::bit(%d) <~> ?::bit(%d) LIMIT ?) candidates "
+                    .formatted(dimensions, dimensions)
+                    + "ORDER BY embedding <=> ?::vector LIMIT ?";
+            case TRUNCATED -> "SELECT " + columns + " FROM (SELECT id, content, metadata, embedding FROM vector_store "
+                    + where + "ORDER BY subvector(embedding, 1, %d)::vector(%d) <=> ?::vector(%d) LIMIT ?) candidates "
+                    .formatted(truncatedDimensions, truncatedDimensions, truncatedDimensions)
+                    + "ORDER BY embedding <=> ?::vector LIMIT ?";
+        };
+    }
+
+    // searchSql 의 자리표시자 순서: [거리 열 질의] [제외 ID] 모드별 질의 (후보 수) [재정렬 질의] topK
+    private Object[] searchParameters(Mode target, float[] query, String excludeId, int topK) {
+        String vector = toVectorLiteral(query);
+        List<Object> parameters = new ArrayList<>(6);
+        if (excludeId == null) {
+            parameters.add(vector);
+        } else {
+            parameters.add(excludeId);
+        }
+
+        int candidates = topK * Math.max(1, rerankFactor);
+        switch (target) {
+            case FULL, HALFVEC -> parameters.add(vector);
+            case BINARY -> {
+                parameters.add(toBitLiteral(query));
+                parameters.add(candidates);
+                parameters.add(vector);
+            }
+            case TRUNCATED -> {
+                parameters.add(toVectorLiteral(Arrays.copyOf(query, truncatedDimensions)));
+                parameters.add(candidates);
+                parameters.add(vector);
+            }
+        }
+        parameters.add(topK);
+        return parameters.toArray();
+    }
+
+    private List<String> queryIds(String sql, Object... parameters) {
+        return jdbcTemplate.queryForList(sql, String.class, parameters);
+    }
+
+    private void createIndex(Mode target) {
+        String expression = switch (target) {
+            case FULL -> "embedding vector_cosine_ops";
+            case HALFVEC -> "(embedding::halfvec(%d)) halfvec_cosine_ops".formatted(dimensions);
+            case BINARY -> "(binary_quantize(embedding)::bit(%d)) bit_hamming_ops".formatted(dimensions);
+            case TRUNCATED -> "(subvector(embedding, 1, %d)::vector(%d)) vector_cosine_ops"
+                    .formatted(truncatedDimensions, truncatedDimensions);
+        };
+
+        // 이전에 중단된 CONCURRENTLY 빌드는 INVALID 인덱스를 남기므로 지우고 다시 생성
+        Boolean valid = jdbcTemplate.query("""
+                        SELECT i.indisvalid FROM pg_index i
+                        JOIN pg_class c ON c.oid = i.indexrelid
+                        WHERE c.relname = ?
+                        """,
+                rs -> rs.next() ? rs.getBoolean(1) : null,
+                indexName(target));
+        if (Boolean.TRUE.equals(valid)) {
+            return;
+        }
+        if (valid != null) {
+            log.warn("Dropping invalid pgvector index {} before rebuilding", indexName(target));
+            dropIndex(target);
+        }
+
+        // autocommit 연결에서 실행 (CONCURRENTLY 는 트랜잭션 안에서 실행할 수 없음)
+        long startTime = System.currentTimeMillis();
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + indexName(target)
+                + " ON vector_store USING hnsw (" + expression + ")");
+        log.info("Built pgvector index {} ({}ms)", indexName(target), System.currentTimeMillis() - startTime);
+    }
+
+    private void dropIndex(Mode target) {
+        try {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName(target));
+        } catch (Exception e) {
+            log.warn("Failed to drop pgvector index {}: {}", indexName(target), e.getMessage());
+        }
+    }
+
+    private String indexName(Mode target) {
+        return switch (target) {
+            case FULL -> FULL_INDEX;
+            case HALFVEC -> "vector_store_embedding_halfvec_idx";
+            case BINARY -> "vector_store_embedding_binary_idx";
+            case TRUNCATED -> "vector_store_embedding_t" + truncatedDimensions + "_idx";
+        };
+    }
+
+    private Map<String, Object> indexSizes() {
+        Map<String, Object> sizes = new LinkedHashMap<>();
+        jdbcTemplate.query("""
+                        SELECT indexname, pg_relation_size(quote_ident(indexname)::regclass)
+                        FROM pg_indexes
+                        WHERE tablename = 'vector_store'
+                        ORDER BY indexname
+                        """,
+                rs -> {
+                    sizes.put(rs.getString(1), rs.getLong(2));
+                });
+        return sizes;
+    }
+
+    private static Map<String, Object> latencySummary(long[] nanos, double recall, Object indexBytes) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("recall", recall);
+        summary.put("meanMs", sorted.length > 0 ? Arrays.stream(sorted).average().orElse(0) / 1_000_000 : 0);
+        summary.put("p50Ms", percentile(sorted, 0.50) / 1_000_000.0);
+        summary.put("p95Ms", percentile(sorted, 0.95) / 1_000_000.0);
+        summary.put("indexBytes", indexBytes);
+        return summary;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    static String toVectorLiteral(float[] vector) {
+        StringBuilder builder = new StringBuilder(vector.length * 10).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(vector[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    // binary_quantize 와 같은 규칙 (양수면 1)
+    static String toBitLiteral(float[] vector) {
+        char[] bits = new char[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            bits[i] = vector[i] > 0 ? '1' : '0';
+        }
+        return new String(bits);
+    }
+}
@@ -0,0 +1,150 @@
+package devlava.vectorrag.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 유사 상담 검색 결과 캐시
+ * - 키: 정규화된 검색어 + topK + 임계값의 SHA-256 (hashCode 충돌 없음)
+ * - 크기(LRU) 및 TTL 제한
+ * - vector store에 참고 사례가 저장/삭제되면 버전을 올려 기존 결과를 무효화
+ *   (다른 노드가 저장한 사례는 로컬 인덱스 갱신 시 무효화, TTL 은 그 외 경로의 안전장치)
+ */
+@Component
+@Slf4j
+public class SimilarConsultationCache {
+
+    @Value("${consultation.analysis.retrieval-cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${consultation.analysis.retrieval-cache.ttl-ms:600000}")
+    private long ttlMs;
+
+    private final AtomicLong version = new AtomicLong(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong expirations = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong invalidations = new AtomicLong(0);
+
+    private final Map<String, CachedResult> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            if (size() > maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private record CachedResult(List<Document> documents, long version, long createdAtMillis) {
+    }
+
+    public String key(String query, int topK, double similarityThreshold) {
+        return key(query, topK, similarityThreshold, "");
+    }
+
+    /**
+     * 필터 식이 다르면 다른 결과이므로 키에 포함
+     */
+    public String key(String query, int topK, double similarityThreshold, String filter) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(CachingEmbeddingModel.normalize(query).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update((topK + ":" + similarityThreshold).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(filter.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 검색 시작 전에 현재 버전을 받아두고 put 시 전달 - 검색 중 무효화된 결과가 저장되지 않도록 함
+     */
+    public long currentVersion() {
+        return version.get();
+    }
+
+    public List<Document> get(String key) {
+        synchronized (entries) {
+            CachedResult cached = entries.get(key);
+            if (cached == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            if (cached.version() != version.get()) {
+                entries.remove(key);
+                misses.incrementAndGet();
+                return null;
+            }
+
+            if (System.currentTimeMillis() - cached.createdAtMillis() > ttlMs) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+
+            hits.incrementAndGet();
+            return cached.documents();
+        }
+    }
+
+    public void put(String key, List<Document> documents, long searchVersion) {
+        if (searchVersion != version.get()) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.put(key, new CachedResult(List.copyOf(documents), searchVersion, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * 참고 사례가 저장/삭제되었을 때 호출
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+        log.debug("Similar consultation cache invalidated (version: {})", version.get());
+    }
+
+    public Map<String, Object> getStats() {
+        long hit = hits.get();
+        long miss = misses.get();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+
+        return Map.of(
+                "entries", size,
+                "hits", hit,
+                "misses", miss,
+                "hitRate", hit + miss > 0 ? (double) hit / (hit + miss) * 100 : 0,
+                "expirations", expirations.get(),
+                "evictions", evictions.get(),
+                "invalidations", invalidations.get(),
+                "version", version.get()
+        );
+    }
+}
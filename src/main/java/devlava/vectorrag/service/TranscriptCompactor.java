@@ -0,0 +1,389 @@
+package devlava.vectorrag.service;
+
+import devlava.vectorrag.dto.CompactedTranscript;
+import devlava.vectorrag.util.NudgeDictionary;
+import devlava.vectorrag.util.TokenEstimator;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * STT 상담 내용 전처리 - 발화 단위 분리 후 넛지 관련도가 높은 발화부터 토큰 예산 안에 채움
+ * - 문자열을 한 번만 읽으면서 제어문자/공백 정리와 화자 분리를 같이 수행 (정규식 없음)
+ * - 인사말, 대기 안내 같은 발화는 예산이 부족하면 먼저 빠지고, 넛지 멘트와 바로 뒤 고객 반응은 남김
+ * - 예산 안에 들어오면 전체 발화를 그대로 사용
+ * - 발화 점수의 단서 구문은 사전 필터와 같은 넛지 사전(nudge-dictionary.txt)에서 한 번 읽기로 찾음
+ */
+@Component
+@Slf4j
+public class TranscriptCompactor {
+
+    private static final String[] AGENT_LABELS = {"상담사", "상담원", "agent", "Agent", "AGENT"};
+    private static final String[] CUSTOMER_LABELS = {"고객", "손님", "customer", "Customer", "CUSTOMER"};
+
+    private static final String OMITTED_MARKER = "(중략)";
+
+    @Autowired
+    private NudgePreFilter nudgePreFilter;
+
+    @Value("${consultation.analysis.compaction.token-budget:1200}")
+    private int tokenBudget;
+
+    @Value("${consultation.analysis.compaction.max-turn-chars:400}")
+    private int maxTurnChars;
+
+    private NudgeDictionary dictionary;
+
+    public enum Speaker {
+        AGENT("상담사"), CUSTOMER("고객"), UNKNOWN(null);
+
+        private final String label;
+
+        Speaker(String label) {
+            this.label = label;
+        }
+    }
+
+    public record Turn(int index, Speaker speaker, String text) {
+
+        public String format() {
+            return speaker.label != null ? speaker.label + ": " + text : text;
+        }
+    }
+
+    private record ScoredTurn(Turn turn, int tokens, double score) {
+    }
+
+    public TranscriptCompactor() {
+    }
+
+    /**
+     * 스프링 없이 생성 (JMH 벤치마크 등)
+     */
+    TranscriptCompactor(int tokenBudget, int maxTurnChars, NudgeDictionary dictionary) {
+        this.tokenBudget = tokenBudget;
+        this.maxTurnChars = maxTurnChars;
+        this.dictionary = dictionary;
+    }
+
+    @PostConstruct
+    public void init() {
+        dictionary = nudgePreFilter.getDictionary();
+    }
+
+    public CompactedTranscript compact(String content) {
+        return compact(content, tokenBudget);
+    }
+
+    public CompactedTranscript compact(String content, int budget) {
+        return compact(splitTurns(content), budget);
+    }
+
+    public CompactedTranscript compact(List<Turn> turns) {
+        return compact(turns, tokenBudget);
+    }
+
+    public CompactedTranscript compact(List<Turn> turns, int budget) {
+        if (turns.isEmpty()) {
+            return new CompactedTranscript("", 0, 0, 0, 0);
+        }
+
+        List<ScoredTurn> scored = score(turns);
+        int originalTokens = scored.stream().mapToInt(ScoredTurn::tokens).sum();
+
+        if (originalTokens <= budget) {
+            String text = join(turns);
+            return new CompactedTranscript(text, TokenEstimator.estimate(text), originalTokens, turns.size(), turns.size());
+        }
+
+        // 관련도 높은 순으로 예산 안에 들어가는 발화만 선택 (동점이면 앞쪽 발화 우선)
+        // 구간(window) 단위로 호출될 수 있으므로 발화 번호가 아닌 목록 위치 기준으로 표시
+        int firstIndex = turns.get(0).index();
+        boolean[] kept = new boolean[turns.size()];
+        int used = 0;
+        List<ScoredTurn> byScore = new ArrayList<>(scored);
+        byScore.sort(Comparator.comparingDouble(ScoredTurn::score).reversed()
+                .thenComparingInt(s -> s.turn().index()));
+        for (ScoredTurn candidate : byScore) {
+            if (used + candidate.tokens() <= budget) {
+                kept[candidate.turn().index() - firstIndex] = true;
+                used += candidate.tokens();
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        int keptTurns = 0;
+        boolean omitted = false;
+        for (Turn turn : turns) {
+            if (!kept[turn.index() - firstIndex]) {
+                omitted = true;
+                continue;
+            }
+            if (omitted) {
+                appendLine(sb, OMITTED_MARKER);
+                omitted = false;
+            }
+            appendLine(sb, turn.format());
+            keptTurns++;
+        }
+        if (omitted) {
+            appendLine(sb, OMITTED_MARKER);
+        }
+
+        String text = sb.toString();
+        log.debug("Transcript compacted - turns: {}/{}, tokens: {} -> {}",
+                keptTurns, turns.size(), originalTokens, TokenEstimator.estimate(text));
+        return new CompactedTranscript(text, TokenEstimator.estimate(text), originalTokens, turns.size(), keptTurns);
+    }
+
+    /**
+     * 긴 상담을 발화 경계에서 겹치는 구간으로 분할
+     * - 각 구간은 windowTokens 이하 (단일 발화가 더 길면 그 발화 하나로 구간 구성)
+     * - 다음 구간은 이전 구간의 마지막 overlapTurns 개 발화부터 시작하여 넛지와 고객 반응이 잘리지 않도록 함
+     */
+    public List<List<Turn>> windows(List<Turn> turns, int windowTokens, int overlapTurns) {
+        List<List<Turn>> windows = new ArrayList<>();
+        int start = 0;
+        while (start < turns.size()) {
+            int end = start;
+            int used = 0;
+            while (end < turns.size()) {
+                int tokens = TokenEstimator.estimate(turns.get(end).format()) + 1;
+                if (end > start && used + tokens > windowTokens) {
+                    break;
+                }
+                used += tokens;
+                end++;
+            }
+
+            windows.add(turns.subList(start, end));
+            if (end >= turns.size()) {
+                break;
+            }
+            // 겹침을 두더라도 최소 한 발화는 전진
+            start = Math.max(start + 1, end - overlapTurns);
+        }
+        return windows;
+    }
+
+    /**
+     * 발화 분리 - 줄바꿈 또는 화자 표기("상담사:", "[고객]" 등)를 경계로 사용
+     * - 화자 표기가 없는 줄은 앞 발화의 화자를 이어받음
+     * - max-turn-chars 보다 긴 발화는 문장 끝에서 나눔
+     */
+    public List<Turn> splitTurns(String content) {
+        List<Turn> turns = new ArrayList<>();
+        if (content == null || content.isEmpty()) {
+            return turns;
+        }
+
+        StringBuilder current = new StringBuilder();
+        Speaker speaker = Speaker.UNKNOWN;
+        boolean pendingSpace = false;
+        boolean atWordStart = true;
+
+        int i = 0;
+        while (i < content.length()) {
+            char c = content.charAt(i);
+
+            if (c == '\n' || c == '\r') {
+                addTurn(turns, speaker, current);
+                pendingSpace = false;
+                atWordStart = true;
+                i++;
+                continue;
+            }
+
+            if (c <= ' ' || c == 0x7F || Character.isWhitespace(c)) {
+                pendingSpace = current.length() > 0;
+                atWordStart = true;
+                i++;
+                continue;
+            }
+
+            if (atWordStart) {
+                int labelEnd = matchSpeakerLabel(content, i);
+                if (labelEnd > 0) {
+                    addTurn(turns, speaker, current);
+                    speaker = speakerAt(content, i);
+                    pendingSpace = false;
+                    i = labelEnd;
+                    continue;
+                }
+            }
+
+            if (pendingSpace) {
+                current.append(' ');
+                pendingSpace = false;
+            }
+            current.append(c);
+            atWordStart = false;
+            i++;
+        }
+        addTurn(turns, speaker, current);
+
+        return turns;
+    }
+
+    private void addTurn(List<Turn> turns, Speaker speaker, StringBuilder current) {
+        int start = 0;
+        while (current.length() - start > maxTurnChars) {
+            int cut = sentenceBreak(current, start, start + maxTurnChars);
+            turns.add(new Turn(turns.size(), speaker, current.substring(start, cut).trim()));
+            start = cut;
+        }
+
+        String rest = current.substring(start).trim();
+        if (!rest.isEmpty()) {
+            turns.add(new Turn(turns.size(), speaker, rest));
+        }
+        current.setLength(0);
+    }
+
+    private static int sentenceBreak(CharSequence text, int start, int limit) {
+        int space = -1;
+        for (int i = limit - 1; i > start; i--) {
+            char c = text.charAt(i);
+            if (c == '.' || c == '?' || c == '!') {
+                return i + 1;
+            }
+            if (space < 0 && c == ' ') {
+                space = i + 1;
+            }
+        }
+        return space > 0 ? space : limit;
+    }
+
+    /**
+     * 화자 표기가 시작되면 표기가 끝나는 위치를, 아니면 0 반환
+     * - "상담사:", "상담사 :", "[상담사]", "<고객>" 형태 지원
+     */
+    private static int matchSpeakerLabel(String content, int start) {
+        int pos = start;
+        char open = content.charAt(pos);
+        char close = open == '[' ? ']' : open == '<' ? '>' : open == '(' ? ')' : 0;
+        if (close != 0) {
+            pos++;
+        }
+
+        int labelEnd = matchLabel(content, pos);
+        if (labelEnd < 0) {
+            return 0;
+        }
+        pos = labelEnd;
+
+        if (close != 0) {
+            if (pos >= content.length() || content.charAt(pos) != close) {
+                return 0;
+            }
+            pos++;
+            if (pos < content.length() && content.charAt(pos) == ':') {
+                pos++;
+            }
+            return pos;
+        }
+
+        while (pos < content.length() && content.charAt(pos) == ' ') {
+            pos++;
+        }
+        if (pos < content.length() && content.charAt(pos) == ':') {
+            return pos + 1;
+        }
+        return 0;
+    }
+
+    private static int matchLabel(String content, int pos) {
+        for (String label : AGENT_LABELS) {
+            if (content.startsWith(label, pos)) {
+                return pos + label.length();
+            }
+        }
+        for (String label : CUSTOMER_LABELS) {
+            if (content.startsWith(label, pos)) {
+                return pos + label.length();
+            }
+        }
+        return -1;
+    }
+
+    private static Speaker speakerAt(String content, int start) {
+        int pos = content.charAt(start) == '[' || content.charAt(start) == '<' || content.charAt(start) == '('
+                ? start + 1 : start;
+        for (String label : AGENT_LABELS) {
+            if (content.startsWith(label, pos)) {
+                return Speaker.AGENT;
+            }
+        }
+        return Speaker.CUSTOMER;
+    }
+
+    /**
+     * 발화별 관련도 점수 (넛지 사전 카테고리 기준)
+     * - 상담사 발화: 넛지 유형 단서(유형당 3점), 영업일반 구문(구문당 1점), 부적절 단서(3점)
+     * - 고객 발화: 첫 문의(4점), 넛지 직후 반응(2점 + 반응 표현)
+     * - 짧은 인사/대기 발화는 감점
+     */
+    private List<ScoredTurn> score(List<Turn> turns) {
+        List<ScoredTurn> scored = new ArrayList<>(turns.size());
+        boolean firstCustomerSeen = false;
+        double previousAgentScore = 0;
+
+        for (Turn turn : turns) {
+            String text = turn.text();
+            NudgeDictionary.Matches matches = dictionary.match(text);
+            double score = 0;
+
+            score += matches.nudgeTypes() * 3;
+            score += matches.count(NudgeDictionary.SALES);
+            score += matches.has(NudgeDictionary.INAPPROPRIATE) ? 3 : 0;
+
+            if (turn.speaker() == Speaker.CUSTOMER) {
+                score *= 0.5;
+                if (!firstCustomerSeen) {
+                    score += 4;
+                    firstCustomerSeen = true;
+                }
+                if (previousAgentScore >= 3) {
+                    score += 2 + (matches.has(NudgeDictionary.CUSTOMER_RESPONSE) ? 1 : 0);
+                }
+            } else if (turn.speaker() == Speaker.UNKNOWN && turn == turns.get(0)) {
+                score += 2;
+            }
+
+            if (text.length() < 40 && matches.has(NudgeDictionary.FILLER)) {
+                score -= 2;
+            }
+
+            if (turn.speaker() != Speaker.CUSTOMER) {
+                previousAgentScore = score;
+            }
+            scored.add(new ScoredTurn(turn, TokenEstimator.estimate(turn.format()) + 1, score));
+        }
+        return scored;
+    }
+
+    private static String join(List<Turn> turns) {
+        StringBuilder sb = new StringBuilder();
+        for (Turn turn : turns) {
+            appendLine(sb, turn.format());
+        }
+        return sb.toString();
+    }
+
+    private static void appendLine(StringBuilder sb, String line) {
+        if (sb.length() > 0) {
+            sb.append('\n');
+        }
+        sb.append(line);
+    }
+
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+}
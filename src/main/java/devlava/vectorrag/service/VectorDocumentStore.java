@@ -0,0 +1,197 @@
+package devlava.vectorrag.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * vector_store 쓰기 경로
+ * - 상담 번호 기반 결정적 ID로 upsert (PgVectorStore는 ON CONFLICT (id) DO UPDATE 사용)
+ * - 존재 여부 확인은 기본 키 조회로 처리
+ * - 결정적 ID 도입 이전에 랜덤 ID로 저장된 같은 상담의 행은 삭제 (VectorStore 를 거쳐 로컬 HNSW 인덱스에도 반영)
+ * - 다른 노드의 로컬 인덱스 갱신용으로 updated_at 컬럼과 삭제 기록 테이블(vector_store_deletions)을 트리거로 유지
+ */
+@Component
+@Slf4j
+public class VectorDocumentStore {
+
+    @Autowired
+    private VectorStore vectorStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SimilarConsultationCache similarConsultationCache;
+
+    @PostConstruct
+    public void ensureIndexes() {
+        try {
+            // 이전 랜덤 ID 행 정리용 상담 번호 인덱스
+            jdbcTemplate.execute("""
+                CREATE INDEX IF NOT EXISTS idx_vector_store_consultation_number
+                ON vector_store ((metadata->>'consultationNumber'))
+                """);
+        } catch (Exception e) {
+            log.warn("Failed to create consultation number index on vector_store: {}", e.getMessage());
+        }
+
+        try {
+            ensureChangeTracking();
+        } catch (Exception e) {
+            log.warn("Failed to set up change tracking on vector_store: {}", e.getMessage());
+        }
+
+        try {
+            migrateFilterMetadata();
+
+            // 필터 검색용 - 키 = 값 포함 조건(GIN), 상담사 목록/상담 시간 범위(식 인덱스)
+            jdbcTemplate.execute("""
+                CREATE INDEX IF NOT EXISTS idx_vector_store_metadata
+                ON vector_store USING gin ((metadata::jsonb) jsonb_path_ops)
+                """);
+            jdbcTemplate.execute("""
+                CREATE INDEX IF NOT EXISTS idx_vector_store_consultant
+                ON vector_store ((metadata->>'consultant'))
+                """);
+            jdbcTemplate.execute("""
+                CREATE INDEX IF NOT EXISTS idx_vector_store_consultation_time
+                ON vector_store ((metadata->>'consultationTime'))
+                """);
+        } catch (Exception e) {
+            log.warn("Failed to create metadata filter indexes on vector_store: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 변경 추적 - upsert(INSERT ... ON CONFLICT DO UPDATE) 마다 updated_at 갱신, 삭제는 vector_store_deletions 에 기록
+     * (다시 추가된 ID 의 삭제 기록은 지움)
+     */
+    private void ensureChangeTracking() {
+        jdbcTemplate.execute("""
+            ALTER TABLE vector_store ADD COLUMN IF NOT EXISTS updated_at timestamptz NOT NULL DEFAULT now()
+            """);
+        jdbcTemplate.execute("""
+            CREATE INDEX IF NOT EXISTS idx_vector_store_updated_at ON vector_store (updated_at)
+            """);
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS vector_store_deletions (
+                id uuid PRIMARY KEY,
+                deleted_at timestamptz NOT NULL DEFAULT now()
+            )
+            """);
+        jdbcTemplate.execute("""
+            CREATE INDEX IF NOT EXISTS idx_vector_store_deletions_deleted_at ON vector_store_deletions (deleted_at)
+            """);
+        jdbcTemplate.execute("""
+            CREATE OR REPLACE FUNCTION vector_store_touch() RETURNS trigger AS $$
+            BEGIN
+                NEW.updated_at := now();
+                DELETE FROM vector_store_deletions WHERE id = NEW.id;
+                RETURN NEW;
+            END
+            $$ LANGUAGE plpgsql
+            """);
+        jdbcTemplate.execute("""
+            CREATE OR REPLACE FUNCTION vector_store_record_delete() RETURNS trigger AS $$
+            BEGIN
+                INSERT INTO vector_store_deletions (id) VALUES (OLD.id)
+                ON CONFLICT (id) DO UPDATE SET deleted_at = now();
+                RETURN OLD;
+            END
+            $$ LANGUAGE plpgsql
+            """);
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS vector_store_touch ON vector_store");
+        jdbcTemplate.execute("""
+            CREATE TRIGGER vector_store_touch BEFORE INSERT OR UPDATE ON vector_store
+            FOR EACH ROW EXECUTE FUNCTION vector_store_touch()
+            """);
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS vector_store_record_delete ON vector_store");
+        jdbcTemplate.execute("""
+            CREATE TRIGGER vector_store_record_delete AFTER DELETE ON vector_store
+            FOR EACH ROW EXECUTE FUNCTION vector_store_record_delete()
+            """);
+    }
+
+    /**
+     * 필터 메타데이터 도입 이전 문서 보정 - analysisResult 의 hasNudge/nudgeType 을 최상위 키로 복사하고
+     * consultationTime 을 고정 형식으로 변환 (청크 단위, 보정된 행은 다시 조회되지 않음)
+     */
+    private void migrateFilterMetadata() {
+        long migrated = 0;
+        while (true) {
+            int updated = jdbcTemplate.update("""
+                UPDATE vector_store
+                SET metadata = (metadata::jsonb || jsonb_strip_nulls(jsonb_build_object(
+                        'hasNudge', COALESCE((metadata->>'analysisResult')::jsonb->>'hasNudge', 'N'),
+                        'nudgeType', COALESCE((metadata->>'analysisResult')::jsonb->>'nudgeType', 'N'),
+                        'consultationTime', to_char((metadata->>'consultationTime')::timestamp,
+                                                    'YYYY-MM-DD"T"HH24:MI:SS'))))::json
+                WHERE id IN (
+                    SELECT id FROM vector_store
+                    WHERE metadata->>'hasNudge' IS NULL
+                    LIMIT 1000
+                )
+                """);
+            if (updated == 0) {
+                break;
+            }
+            migrated += updated;
+        }
+
+        if (migrated > 0) {
+            log.info("Migrated filter metadata for {} vector_store documents", migrated);
+        }
+    }
+
+    /**
+     * 문서 upsert 후 같은 상담 번호의 중복 행 제거
+     * - 저장에 성공하면 검색 캐시 버전을 올려 새 참고 사례가 바로 검색에 반영되도록 함
+     */
+    public void upsert(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+
+        vectorStore.add(documents);
+        removeStaleDuplicates(documents);
+        similarConsultationCache.invalidate();
+    }
+
+    private int removeStaleDuplicates(List<Document> documents) {
+        String[] consultationNumbers = documents.stream()
+                .map(document -> String.valueOf(document.getMetadata().get("consultationNumber")))
+                .toArray(String[]::new);
+        String[] ids = documents.stream()
+                .map(Document::getId)
+                .toArray(String[]::new);
+
+        try {
+            // 로컬 HNSW 인덱스에서도 빠지도록 VectorStore 를 거쳐 삭제
+            List<String> staleIds = jdbcTemplate.queryForList("""
+                SELECT id::text FROM vector_store
+                WHERE metadata->>'consultationNumber' = ANY(?)
+                  AND id <> ALL(?::uuid[])
+                """, String.class, consultationNumbers, ids);
+            if (staleIds.isEmpty()) {
+                return 0;
+            }
+            vectorStore.delete(staleIds);
+
+            int removed = staleIds.size();
+            if (removed > 0) {
+                log.info("Removed {} stale duplicate documents from vector_store", removed);
+            }
+            return removed;
+        } catch (Exception e) {
+            log.warn("Failed to remove stale duplicate documents from vector_store: {}", e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -2,35 +2,56 @@
 package devlava.vectorrag.service;
 
 import devlava.vectorrag.entity.SttData;
+import devlava.vectorrag.entity.VectorSyncCheckpoint;
 import devlava.vectorrag.repository.SttDataRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import devlava.vectorrag.repository.VectorSyncCheckpointRepository;
+import devlava.vectorrag.util.ConsultationDocuments;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class VectorStoreInitializer implements CommandLineRunner {
 
+    // 결정적 문서 ID 도입 이전의 랜덤 ID 행을 이관하기 위해 새 체크포인트로 한 번 더 백필
+    private static final String BACKFILL_CHECKPOINT = "vector-store-backfill-v2";
+    private static final String INCREMENTAL_CHECKPOINT = "vector-store-incremental";
+
+    private final AtomicBoolean isSyncing = new AtomicBoolean(false);
+
     @Autowired
     private SttDataRepository sttDataRepository;
 
     @Autowired
-    private VectorStore vectorStore;
+    private VectorDocumentStore vectorDocumentStore;
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private SimilarConsultationCache similarConsultationCache;
+
+    @Autowired
+    private VectorSyncCheckpointRepository checkpointRepository;
+
+    @Value("${consultation.vector-store.backfill.chunk-size:200}")
+    private int backfillChunkSize;
+
+    @Value("${consultation.vector-store.sync.safety-lag-ms:30000}")
+    private long syncSafetyLagMs;
 
     @Override
     public void run(String... args) throws Exception {
@@ -38,118 +59,168 @@ public class VectorStoreInitializer implements CommandLineRunner {
         initializeVectorStoreWithDuplicateCheck();
     }
 
+    /**
+     * 최초 1회(또는 중단된 경우 이어서) 전체 백필 후, 이후에는 watermark 기반 증분 동기화만 수행
+     */
     public void initializeVectorStoreWithDuplicateCheck() {
-        try {
-            // 1. 분석 완료된 데이터 조회
-            List<SttData> analyzedData = sttDataRepository.findAnalyzedData();
-            log.info("Found {} analyzed consultations in tb_stt_data", analyzedData.size());
+        if (!isSyncing.compareAndSet(false, true)) {
+            log.info("Vector store sync is already running, skipping initialization");
+            return;
+        }
 
-            if (analyzedData.isEmpty()) {
-                log.info("No analyzed data found for vector store initialization");
-                return;
+        try {
+            VectorSyncCheckpoint checkpoint = checkpointRepository.findById(BACKFILL_CHECKPOINT)
+                    .orElseGet(() -> new VectorSyncCheckpoint(BACKFILL_CHECKPOINT));
+
+            if (checkpoint.isCompleted()) {
+                log.info("Vector store backfill already completed, running incremental sync only");
+            } else {
+                startIncrementalWatermarkIfAbsent();
+                backfillVectorStore(checkpoint);
             }
 
-            // 2. vector_store 테이블에서 기존 consultation_number들 조회
-            Set<String> existingConsultationNumbers = getExistingConsultationNumbers();
-            log.info("Found {} existing documents in vector_store", existingConsultationNumbers.size());
+            syncChangedData();
 
-            // 3. 새로 추가할 데이터만 필터링
-            List<SttData> newDataToAdd = analyzedData.stream()
-                    .filter(data -> !existingConsultationNumbers.contains(data.getConsultationNumber()))
-                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            log.error("Failed to initialize vector store", e);
+        } finally {
+            isSyncing.set(false);
+        }
+    }
 
-            if (newDataToAdd.isEmpty()) {
-                log.info("All analyzed data already exists in vector store. No duplicates added.");
-                return;
-            }
+    /**
+     * 주기적 증분 동기화 - 마지막 watermark 이후 분석 완료된 건만 반영 (O(변경 건수))
+     */
+    @Scheduled(fixedDelayString = "${consultation.vector-store.sync.interval-ms:60000}",
+            initialDelayString = "${consultation.vector-store.sync.interval-ms:60000}")
+    public void syncIncrementally() {
+        if (!isSyncing.compareAndSet(false, true)) {
+            log.debug("Vector store sync is already running, skipping this execution");
+            return;
+        }
 
-            log.info("Adding {} new documents to vector store (avoiding {} duplicates)",
-                    newDataToAdd.size(), analyzedData.size() - newDataToAdd.size());
+        try {
+            syncChangedData();
+        } catch (Exception e) {
+            log.error("Incremental vector store sync failed", e);
+        } finally {
+            isSyncing.set(false);
+        }
+    }
 
-            // 4. 새 데이터만 vector store에 추가
-            List<Document> documents = newDataToAdd.stream()
-                    .map(this::createDocument)
+    /**
+     * 백필이 새로 시작될 때 증분 동기화 시작점을 현재 시각으로 설정
+     * - 백필 진행 중에 분석 완료된 건은 이후 증분 동기화가 반영
+     */
+    private void startIncrementalWatermarkIfAbsent() {
+        if (checkpointRepository.existsById(INCREMENTAL_CHECKPOINT)) {
+            return;
+        }
+
+        VectorSyncCheckpoint incremental = new VectorSyncCheckpoint(INCREMENTAL_CHECKPOINT);
+        incremental.setWatermark(LocalDateTime.now().minus(Duration.ofMillis(syncSafetyLagMs)));
+        incremental.setLastConsultationNumber("");
+        checkpointRepository.save(incremental);
+    }
+
+    private void syncChangedData() {
+        VectorSyncCheckpoint checkpoint = checkpointRepository.findById(INCREMENTAL_CHECKPOINT).orElse(null);
+        if (checkpoint == null || checkpoint.getWatermark() == null) {
+            log.debug("Incremental sync watermark not initialized yet, skipping");
+            return;
+        }
+
+        LocalDateTime watermark = checkpoint.getWatermark();
+        String lastConsultationNumber = checkpoint.getLastConsultationNumber() != null
+                ? checkpoint.getLastConsultationNumber() : "";
+        // 늦게 커밋되는 트랜잭션을 놓치지 않도록 최근 구간은 다음 동기화로 미룸
+        LocalDateTime upperBound = LocalDateTime.now().minus(Duration.ofMillis(syncSafetyLagMs));
+
+        long changedCount = 0;
+
+        while (true) {
+            List<SttData> chunk = sttDataRepository.findAnalyzedDataChangedSince(
+                    watermark, lastConsultationNumber, upperBound, PageRequest.of(0, backfillChunkSize));
+
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            // 결정적 ID 로 upsert 하므로 이미 있는 상담도 최신 분석 결과/메타데이터로 갱신
+            List<Document> documents = chunk.stream()
+                    .map(ConsultationDocuments::fromAnalyzedData)
                     .collect(Collectors.toList());
 
-            vectorStore.add(documents);
+            vectorDocumentStore.upsert(documents);
 
-            log.info("Successfully added {} new documents to vector store", documents.size());
+            SttData last = chunk.get(chunk.size() - 1);
+            watermark = last.getAnalysisDate();
+            lastConsultationNumber = last.getConsultationNumber();
+            checkpoint.setWatermark(watermark);
+            checkpoint.setLastConsultationNumber(lastConsultationNumber);
+            checkpointRepository.save(checkpoint);
 
-        } catch (Exception e) {
-            log.error("Failed to initialize vector store", e);
+            changedCount += chunk.size();
+        }
+
+        if (changedCount > 0) {
+            log.info("Incremental vector store sync - upserted: {} (watermark: {})", changedCount, watermark);
         }
     }
 
     /**
-     * vector_store 테이블에서 기존 consultation_number들 조회
+     * 분석 완료 데이터를 청크 단위로 순회하며 vector store에 추가
+     * - 청크마다 체크포인트를 저장하므로 재시작 시 마지막 청크 이후부터 이어서 처리
      */
-    private Set<String> getExistingConsultationNumbers() {
-        try {
-            String sql = """
-                SELECT DISTINCT metadata->>'consultationNumber' as consultation_number 
-                FROM vector_store 
-                WHERE metadata->>'consultationNumber' IS NOT NULL
-                """;
+    private void backfillVectorStore(VectorSyncCheckpoint checkpoint) {
+        String lastConsultationNumber = checkpoint.getLastConsultationNumber() != null
+                ? checkpoint.getLastConsultationNumber() : "";
+
+        if (lastConsultationNumber.isEmpty()) {
+            log.info("Starting vector store backfill (chunk size: {})", backfillChunkSize);
+        } else {
+            log.info("Resuming vector store backfill after consultation {} (chunk size: {})",
+                    lastConsultationNumber, backfillChunkSize);
+        }
 
-            List<String> existingNumbers = jdbcTemplate.queryForList(sql, String.class);
-            log.debug("Existing consultation numbers in vector_store: {}", existingNumbers);
-            return Set.copyOf(existingNumbers);
+        long scannedCount = 0;
 
-        } catch (Exception e) {
-            log.warn("Failed to query existing consultation numbers from vector_store table: {}", e.getMessage());
-            log.info("Assuming vector_store is empty");
-            return Set.of();
-        }
-    }
+        while (true) {
+            List<SttData> chunk = sttDataRepository.findAnalyzedDataAfter(
+                    lastConsultationNumber, PageRequest.of(0, backfillChunkSize));
 
-    private Document createDocument(SttData sttData) {
-        try {
-            Map<String, String> analysisResult = Map.of(
-                    "mainInquiry", sttData.getResponse1() != null ? sttData.getResponse1() : "",
-                    "hasNudge", sttData.getResponse2() != null ? sttData.getResponse2() : "N",
-                    "nudgeType", sttData.getResponse3() != null ? sttData.getResponse3() : "N",
-                    "nudgeContent", sttData.getResponse4() != null ? sttData.getResponse4() : "N",
-                    "customerResponse", sttData.getResponse5() != null ? sttData.getResponse5() : "N",
-                    "inappropriateNudge", sttData.getResponse6() != null ? sttData.getResponse6() : "N",
-                    "inappropriateReason", sttData.getResponse7() != null ? sttData.getResponse7() : "N"
-            );
-
-            String analysisResultJson = objectMapper.writeValueAsString(analysisResult);
-
-            Map<String, Object> metadata = Map.of(
-                    "consultationNumber", sttData.getConsultationNumber(),
-                    "consultant", sttData.getConsultant(),
-                    "analysisResult", analysisResultJson,
-                    "consultationTime", sttData.getConsultationTime().toString()
-            );
-
-            return new Document(sttData.getConsultationContent(), metadata);
+            if (chunk.isEmpty()) {
+                break;
+            }
 
-        } catch (Exception e) {
-            log.error("Error creating document for consultation: {}", sttData.getConsultationNumber(), e);
-            Map<String, Object> metadata = Map.of(
-                    "consultationNumber", sttData.getConsultationNumber(),
-                    "consultant", sttData.getConsultant()
-            );
-            return new Document(sttData.getConsultationContent(), metadata);
+            // 결정적 ID 로 upsert 하므로 이미 있는 상담도 최신 분석 결과/메타데이터로 갱신
+            List<Document> documents = chunk.stream()
+                    .map(ConsultationDocuments::fromAnalyzedData)
+                    .collect(Collectors.toList());
+
+            vectorDocumentStore.upsert(documents);
+
+            lastConsultationNumber = chunk.get(chunk.size() - 1).getConsultationNumber();
+            checkpoint.setLastConsultationNumber(lastConsultationNumber);
+            checkpointRepository.save(checkpoint);
+
+            scannedCount += chunk.size();
+            log.info("Backfill progress - upserted: {} (last: {})", scannedCount, lastConsultationNumber);
         }
+
+        checkpoint.setCompleted(true);
+        checkpointRepository.save(checkpoint);
+
+        log.info("Vector store backfill completed - upserted: {}", scannedCount);
     }
 
     /**
-     * 새로운 분석 결과를 vector store에 추가 (중복 체크 포함)
+     * 새로운 분석 결과를 vector store에 반영 (같은 상담은 결정적 ID 로 upsert 되어 갱신)
      */
     public void addNewAnalyzedData(SttData sttData) {
         try {
-            Set<String> existing = getExistingConsultationNumbers();
-            if (existing.contains(sttData.getConsultationNumber())) {
-                log.debug("Consultation {} already exists in vector store, skipping",
-                        sttData.getConsultationNumber());
-                return;
-            }
-
-            Document document = createDocument(sttData);
-            vectorStore.add(List.of(document));
-            log.info("Added new analyzed data to vector store: {}", sttData.getConsultationNumber());
+            vectorDocumentStore.upsert(List.of(ConsultationDocuments.fromAnalyzedData(sttData)));
+            log.info("Upserted analyzed data to vector store: {}", sttData.getConsultationNumber());
         } catch (Exception e) {
             log.error("Failed to add new analyzed data to vector store: {}",
                     sttData.getConsultationNumber(), e);
@@ -163,16 +234,16 @@ public class VectorStoreInitializer implements CommandLineRunner {
         try {
             log.warn("Clearing all data from vector_store table");
             jdbcTemplate.execute("DELETE FROM vector_store");
+            similarConsultationCache.invalidate();
 
-            List<SttData> analyzedData = sttDataRepository.findAnalyzedData();
-            if (!analyzedData.isEmpty()) {
-                List<Document> documents = analyzedData.stream()
-                        .map(this::createDocument)
-                        .collect(Collectors.toList());
+            VectorSyncCheckpoint checkpoint = checkpointRepository.findById(BACKFILL_CHECKPOINT)
+                    .orElseGet(() -> new VectorSyncCheckpoint(BACKFILL_CHECKPOINT));
+            checkpoint.setLastConsultationNumber(null);
+            checkpoint.setCompleted(false);
 
-                vectorStore.add(documents);
-                log.info("Reinitialized vector_store with {} documents", documents.size());
-            }
+            checkpointRepository.deleteById(INCREMENTAL_CHECKPOINT);
+            startIncrementalWatermarkIfAbsent();
+            backfillVectorStore(checkpoint);
         } catch (Exception e) {
             log.error("Failed to clear and reinitialize vector_store", e);
         }
@@ -0,0 +1,123 @@
+package devlava.vectorrag.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick 다중 패턴 매처 - 패턴 수와 관계없이 텍스트를 한 번만 읽어 모든 패턴을 찾음
+ * - 생성 후 불변이므로 여러 스레드에서 동시에 사용 가능
+ * - ignoreWhitespace 이면 패턴과 텍스트의 공백을 무시 (STT 띄어쓰기 차이 대응: "손해 보고" == "손해보고")
+ */
+public class AhoCorasickMatcher {
+
+    private final List<String> patterns;
+    private final boolean ignoreWhitespace;
+
+    // 노드별 문자 전이 / 실패 링크 / 해당 노드에서 끝나는 패턴 번호 (실패 링크를 따라간 출력 포함)
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final int[] failure;
+    private final int[][] outputs;
+
+    public AhoCorasickMatcher(List<String> patterns, boolean ignoreWhitespace) {
+        this.patterns = List.copyOf(patterns);
+        this.ignoreWhitespace = ignoreWhitespace;
+
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        transitions.add(new HashMap<>());
+        nodeOutputs.add(new ArrayList<>());
+
+        for (int p = 0; p < this.patterns.size(); p++) {
+            String pattern = this.patterns.get(p);
+            int node = 0;
+            int length = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (ignoreWhitespace && Character.isWhitespace(c)) {
+                    continue;
+                }
+                Integer next = transitions.get(node).get(c);
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.get(node).put(c, next);
+                    transitions.add(new HashMap<>());
+                    nodeOutputs.add(new ArrayList<>());
+                }
+                node = next;
+                length++;
+            }
+            if (length > 0) {
+                nodeOutputs.get(node).add(p);
+            }
+        }
+
+        failure = new int[transitions.size()];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(0).values()) {
+            queue.add(child);
+        }
+
+        // BFS 로 실패 링크 계산
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> edge : transitions.get(node).entrySet()) {
+                int child = edge.getValue();
+                int fallback = failure[node];
+                while (fallback != 0 && !transitions.get(fallback).containsKey(edge.getKey())) {
+                    fallback = failure[fallback];
+                }
+                Integer target = transitions.get(fallback).get(edge.getKey());
+                failure[child] = target != null && target != child ? target : 0;
+                nodeOutputs.get(child).addAll(nodeOutputs.get(failure[child]));
+                queue.add(child);
+            }
+        }
+
+        outputs = new int[nodeOutputs.size()][];
+        for (int i = 0; i < nodeOutputs.size(); i++) {
+            outputs[i] = nodeOutputs.get(i).stream().mapToInt(Integer::intValue).distinct().toArray();
+        }
+    }
+
+    /**
+     * 텍스트에 한 번 이상 나타난 패턴 번호 집합
+     */
+    public BitSet matchedPatterns(CharSequence text) {
+        BitSet matched = new BitSet(patterns.size());
+        if (text == null) {
+            return matched;
+        }
+
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (ignoreWhitespace && Character.isWhitespace(c)) {
+                continue;
+            }
+
+            Integer next = transitions.get(node).get(c);
+            while (next == null && node != 0) {
+                node = failure[node];
+                next = transitions.get(node).get(c);
+            }
+            node = next != null ? next : 0;
+
+            for (int pattern : outputs[node]) {
+                matched.set(pattern);
+            }
+        }
+        return matched;
+    }
+
+    public String pattern(int index) {
+        return patterns.get(index);
+    }
+
+    public int size() {
+        return patterns.size();
+    }
+}
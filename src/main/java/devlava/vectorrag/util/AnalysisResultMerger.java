@@ -0,0 +1,94 @@
+package devlava.vectorrag.util;
+
+import devlava.vectorrag.dto.ConsultationAnalysisResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 구간(window)별 분석 결과를 하나의 결과로 병합 - 같은 입력이면 항상 같은 결과
+ * - mainInquiry: 첫 구간 (고객 문의는 보통 통화 앞부분)
+ * - hasNudge: 한 구간이라도 Y 이면 Y
+ * - nudgeType: 넛지가 있는 구간에서 가장 많이 나온 유형, 동률이면 먼저 나온 유형 / nudgeContent 는 그 유형이 처음 나온 구간
+ * - customerResponse: 넛지가 있는 구간 중 하나라도 Y 이면 Y
+ * - inappropriateNudge: 한 구간이라도 Y 이면 Y / inappropriateReason 은 중복 제거 후 구간 순서대로 연결
+ * 입력은 검증/정규화(validateAndCleanResult)를 마친 결과여야 함
+ */
+public class AnalysisResultMerger {
+
+    private static final String REASON_SEPARATOR = "; ";
+
+    public static ConsultationAnalysisResult merge(List<ConsultationAnalysisResult> windowResults) {
+        if (windowResults == null || windowResults.isEmpty()) {
+            throw new IllegalArgumentException("No window results to merge");
+        }
+        if (windowResults.size() == 1) {
+            return windowResults.get(0);
+        }
+
+        ConsultationAnalysisResult merged = new ConsultationAnalysisResult();
+        merged.setMainInquiry(windowResults.get(0).getMainInquiry());
+
+        // 유형별 등장 횟수와 처음 나온 구간 (LinkedHashMap 으로 등장 순서 유지)
+        Map<String, Integer> typeCounts = new LinkedHashMap<>();
+        Map<String, ConsultationAnalysisResult> firstByType = new LinkedHashMap<>();
+        boolean customerResponded = false;
+
+        for (ConsultationAnalysisResult result : windowResults) {
+            if (!"Y".equals(result.getHasNudge())) {
+                continue;
+            }
+            String type = isBlankOrN(result.getNudgeType()) ? "N" : result.getNudgeType().trim();
+            typeCounts.merge(type, 1, Integer::sum);
+            firstByType.putIfAbsent(type, result);
+            customerResponded |= "Y".equals(result.getCustomerResponse());
+        }
+
+        if (typeCounts.isEmpty()) {
+            merged.setHasNudge("N");
+            merged.setNudgeType("N");
+            merged.setNudgeContent("N");
+            merged.setCustomerResponse("N");
+        } else {
+            String bestType = null;
+            int bestCount = 0;
+            for (Map.Entry<String, Integer> entry : typeCounts.entrySet()) {
+                // 유형을 특정한 구간을 "N" 보다 우선
+                boolean better = entry.getValue() > bestCount
+                        || (entry.getValue() == bestCount && "N".equals(bestType) && !"N".equals(entry.getKey()));
+                if (bestType == null || better) {
+                    bestType = entry.getKey();
+                    bestCount = entry.getValue();
+                }
+            }
+
+            merged.setHasNudge("Y");
+            merged.setNudgeType(bestType);
+            merged.setNudgeContent(firstByType.get(bestType).getNudgeContent());
+            merged.setCustomerResponse(customerResponded ? "Y" : "N");
+        }
+
+        List<String> reasons = new ArrayList<>();
+        for (ConsultationAnalysisResult result : windowResults) {
+            if (!"Y".equals(result.getInappropriateNudge())) {
+                continue;
+            }
+            String reason = result.getInappropriateReason();
+            if (!isBlankOrN(reason) && !reasons.contains(reason.trim())) {
+                reasons.add(reason.trim());
+            }
+        }
+
+        boolean inappropriate = windowResults.stream().anyMatch(r -> "Y".equals(r.getInappropriateNudge()));
+        merged.setInappropriateNudge(inappropriate ? "Y" : "N");
+        merged.setInappropriateReason(reasons.isEmpty() ? "N" : String.join(REASON_SEPARATOR, reasons));
+
+        return merged;
+    }
+
+    private static boolean isBlankOrN(String value) {
+        return value == null || value.isBlank() || "N".equalsIgnoreCase(value.trim());
+    }
+}
@@ -1,4 +1,313 @@
 package devlava.vectorrag.util;
 
+import devlava.vectorrag.dto.ConsultationAnalysisResult;
+
+/**
+ * 분석 결과 JSON 단일 패스 파서
+ * - 응답 문자를 한 번만 읽으면서 7개 필드를 바로 결과 객체에 채움 (중간 트리/부분 문자열 생성 없음)
+ * - Y/N 필드는 파싱 중에 정규화하여 상수 문자열만 사용
+ * - JSON 앞의 설명 문장, 알 수 없는 키, 중첩 값은 건너뜀
+ */
 public class AnalysisResultParser {
+
+    private static final String[] FIELD_NAMES = {
+            "mainInquiry",
+            "hasNudge",
+            "nudgeType",
+            "nudgeContent",
+            "customerResponse",
+            "inappropriateNudge",
+            "inappropriateReason"
+    };
+
+    private static final int MAIN_INQUIRY = 0;
+    private static final int HAS_NUDGE = 1;
+    private static final int NUDGE_TYPE = 2;
+    private static final int NUDGE_CONTENT = 3;
+    private static final int CUSTOMER_RESPONSE = 4;
+    private static final int INAPPROPRIATE_NUDGE = 5;
+    private static final int INAPPROPRIATE_REASON = 6;
+    private static final int UNKNOWN = -1;
+
+    private final CharSequence input;
+    private int pos;
+
+    private AnalysisResultParser(CharSequence input) {
+        this.input = input;
+    }
+
+    public static ConsultationAnalysisResult parse(CharSequence response) {
+        if (response == null) {
+            throw new IllegalArgumentException("Valid JSON not found in response");
+        }
+        return new AnalysisResultParser(response).parseObject();
+    }
+
+    private ConsultationAnalysisResult parseObject() {
+        while (pos < input.length() && input.charAt(pos) != '{') {
+            pos++;
+        }
+        if (pos >= input.length()) {
+            throw new IllegalArgumentException("Valid JSON not found in response");
+        }
+        pos++;
+
+        ConsultationAnalysisResult result = new ConsultationAnalysisResult();
+
+        skipWhitespace();
+        if (peek() == '}') {
+            return result;
+        }
+
+        while (true) {
+            skipWhitespace();
+            expect('"');
+            int field = readFieldName();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+
+            switch (field) {
+                case HAS_NUDGE -> result.setHasNudge(readYN());
+                case CUSTOMER_RESPONSE -> result.setCustomerResponse(readYN());
+                case INAPPROPRIATE_NUDGE -> result.setInappropriateNudge(readYN());
+                case MAIN_INQUIRY -> result.setMainInquiry(readText());
+                case NUDGE_TYPE -> result.setNudgeType(readText());
+                case NUDGE_CONTENT -> result.setNudgeContent(readText());
+                case INAPPROPRIATE_REASON -> result.setInappropriateReason(readText());
+                default -> skipValue();
+            }
+
+            skipWhitespace();
+            char c = next();
+            if (c == '}') {
+                return result;
+            }
+            if (c != ',') {
+                throw error("',' or '}' expected");
+            }
+        }
+    }
+
+    /**
+     * 키를 읽으면서 알려진 필드명과 바로 비교 (키 문자열을 만들지 않음)
+     */
+    private int readFieldName() {
+        int start = pos;
+        while (pos < input.length() && input.charAt(pos) != '"') {
+            if (input.charAt(pos) == '\\') {
+                // 이스케이프가 들어간 키는 알려진 필드가 아님
+                skipStringBody();
+                return UNKNOWN;
+            }
+            pos++;
+        }
+        int end = pos;
+        expect('"');
+
+        int length = end - start;
+        for (int field = 0; field < FIELD_NAMES.length; field++) {
+            String name = FIELD_NAMES[field];
+            if (name.length() == length && regionEquals(start, name)) {
+                return field;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private boolean regionEquals(int start, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (input.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Y/N 값 - 앞뒤 공백을 제외하고 "Y"(대소문자 무관) 또는 true 이면 Y, 그 외는 N
+     */
+    private String readYN() {
+        char c = peek();
+        if (c == '"') {
+            pos++;
+            int significant = 0;
+            boolean yes = false;
+            while (true) {
+                char ch = next();
+                if (ch == '"') {
+                    break;
+                }
+                if (ch == '\\') {
+                    next();
+                    significant++;
+                    continue;
+                }
+                if (!Character.isWhitespace(ch)) {
+                    significant++;
+                    yes = ch == 'Y' || ch == 'y';
+                }
+            }
+            return significant == 1 && yes ? "Y" : "N";
+        }
+
+        if (matchLiteral("true")) {
+            return "Y";
+        }
+        skipValue();
+        return "N";
+    }
+
+    /**
+     * 텍스트 값 - 이스케이프가 없으면 subSequence 한 번으로 생성
+     */
+    private String readText() {
+        char c = peek();
+        if (c == '"') {
+            pos++;
+            int start = pos;
+            while (true) {
+                char ch = next();
+                if (ch == '"') {
+                    return input.subSequence(start, pos - 1).toString();
+                }
+                if (ch == '\\') {
+                    pos = start;
+                    return readEscapedString();
+                }
+            }
+        }
+
+        if (matchLiteral("null")) {
+            return null;
+        }
+
+        int start = pos;
+        skipValue();
+        return input.subSequence(start, pos).toString().trim();
+    }
+
+    private String readEscapedString() {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char ch = next();
+            if (ch == '"') {
+                return sb.toString();
+            }
+            if (ch != '\\') {
+                sb.append(ch);
+                continue;
+            }
+
+            char escaped = next();
+            switch (escaped) {
+                case 'n' -> sb.append('\n');
+                case 't' -> sb.append('\t');
+                case 'r' -> sb.append('\r');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'u' -> {
+                    if (pos + 4 > input.length()) {
+                        throw error("invalid unicode escape");
+                    }
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(input.charAt(pos++), 16);
+                        if (digit < 0) {
+                            throw error("invalid unicode escape");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    sb.append((char) code);
+                }
+                default -> sb.append(escaped);
+            }
+        }
+    }
+
+    private void skipValue() {
+        char c = peek();
+        if (c == '"') {
+            pos++;
+            skipStringBody();
+            return;
+        }
+
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                char ch = next();
+                if (ch == '"') {
+                    skipStringBody();
+                } else if (ch == '{' || ch == '[') {
+                    depth++;
+                } else if (ch == '}' || ch == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+            return;
+        }
+
+        // 숫자, true/false/null
+        while (pos < input.length()) {
+            char ch = input.charAt(pos);
+            if (ch == ',' || ch == '}' || ch == ']' || Character.isWhitespace(ch)) {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void skipStringBody() {
+        while (true) {
+            char ch = next();
+            if (ch == '"') {
+                return;
+            }
+            if (ch == '\\') {
+                next();
+            }
+        }
+    }
+
+    private boolean matchLiteral(String literal) {
+        if (pos + literal.length() > input.length()) {
+            return false;
+        }
+        if (!regionEquals(pos, literal)) {
+            return false;
+        }
+        pos += literal.length();
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos >= input.length()) {
+            throw error("unexpected end of input");
+        }
+        return input.charAt(pos);
+    }
+
+    private char next() {
+        if (pos >= input.length()) {
+            throw error("unexpected end of input");
+        }
+        return input.charAt(pos++);
+    }
+
+    private void expect(char expected) {
+        if (next() != expected) {
+            throw error("'" + expected + "' expected");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid analysis JSON at position " + pos + ": " + message);
+    }
 }
@@ -0,0 +1,113 @@
+package devlava.vectorrag.util;
+
+import devlava.vectorrag.dto.ConsultationAnalysisResult;
+import devlava.vectorrag.entity.SttData;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.document.Document;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 상담 데이터를 vector store 문서로 변환
+ * - 문서 ID는 상담 번호에서 결정적으로 생성하여 같은 상담은 항상 같은 행으로 upsert 됨
+ * - 검색 필터용 메타데이터(consultant, consultationTime, hasNudge, nudgeType)는 최상위 키로 저장
+ */
+@Slf4j
+public class ConsultationDocuments {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 문자열 비교로 시간 범위 필터가 되도록 초 단위까지 고정 형식
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    /**
+     * 상담 번호 기반 이름 UUID (vector_store.id 컬럼이 uuid 타입)
+     */
+    public static String documentId(String consultationNumber) {
+        return UUID.nameUUIDFromBytes(("consultation:" + consultationNumber)
+                .getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * tb_stt_data에 저장된 분석 결과로 문서 생성
+     */
+    public static Document fromAnalyzedData(SttData sttData) {
+        return createDocument(sttData,
+                sttData.getResponse1() != null ? sttData.getResponse1() : "",
+                sttData.getResponse2() != null ? sttData.getResponse2() : "N",
+                sttData.getResponse3() != null ? sttData.getResponse3() : "N",
+                sttData.getResponse4() != null ? sttData.getResponse4() : "N",
+                sttData.getResponse5() != null ? sttData.getResponse5() : "N",
+                sttData.getResponse6() != null ? sttData.getResponse6() : "N",
+                sttData.getResponse7() != null ? sttData.getResponse7() : "N");
+    }
+
+    /**
+     * 방금 생성된 분석 결과로 문서 생성
+     */
+    public static Document fromAnalysisResult(SttData sttData, ConsultationAnalysisResult result) {
+        return createDocument(sttData,
+                result.getMainInquiry(),
+                result.getHasNudge(),
+                result.getNudgeType(),
+                result.getNudgeContent(),
+                result.getCustomerResponse(),
+                result.getInappropriateNudge(),
+                result.getInappropriateReason());
+    }
+
+    private static Document createDocument(SttData sttData, String mainInquiry, String hasNudge,
+                                           String nudgeType, String nudgeContent, String customerResponse,
+                                           String inappropriateNudge, String inappropriateReason) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("consultationNumber", sttData.getConsultationNumber());
+        if (sttData.getConsultant() != null) {
+            metadata.put("consultant", sttData.getConsultant());
+        }
+        metadata.put("hasNudge", hasNudge != null ? hasNudge : "N");
+        metadata.put("nudgeType", nudgeType != null ? nudgeType : "N");
+
+        Map<String, String> analysisResult = new LinkedHashMap<>();
+        analysisResult.put("mainInquiry", mainInquiry);
+        analysisResult.put("hasNudge", hasNudge);
+        analysisResult.put("nudgeType", nudgeType);
+        analysisResult.put("nudgeContent", nudgeContent);
+        analysisResult.put("customerResponse", customerResponse);
+        analysisResult.put("inappropriateNudge", inappropriateNudge);
+        analysisResult.put("inappropriateReason", inappropriateReason);
+
+        try {
+            metadata.put("analysisResult", objectMapper.writeValueAsString(analysisResult));
+        } catch (JsonProcessingException e) {
+            // 분석 결과 없이도 유사 문서 검색에는 사용 가능
+            log.error("Error serializing analysis result for consultation: {}",
+                    sttData.getConsultationNumber(), e);
+        }
+
+        if (sttData.getConsultationTime() != null) {
+            metadata.put("consultationTime", formatTime(sttData.getConsultationTime()));
+        }
+
+        return new Document(documentId(sttData.getConsultationNumber()),
+                sttData.getConsultationContent(), metadata);
+    }
+
+    public static String formatTime(LocalDateTime time) {
+        return TIME_FORMAT.format(time);
+    }
+
+    /**
+     * tb_consultation_vectors 저장용 분석 결과 JSON
+     */
+    public static String analysisResultJson(Document document) {
+        Object json = document.getMetadata().get("analysisResult");
+        return json != null ? json.toString() : "{}";
+    }
+}
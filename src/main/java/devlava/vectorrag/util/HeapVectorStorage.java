@@ -0,0 +1,58 @@
+package devlava.vectorrag.util;
+
+import java.util.Arrays;
+
+/**
+ * 힙 float32 벡터 저장소 - 모든 벡터를 하나의 float[] 에 연속 저장 (박싱 없음)
+ */
+public class HeapVectorStorage implements VectorStorage {
+
+    private final int dimensions;
+    private float[] vectors;
+    private int size;
+
+    public HeapVectorStorage(int dimensions, int initialCapacity) {
+        this.dimensions = dimensions;
+        this.vectors = new float[Math.max(16, initialCapacity) * dimensions];
+    }
+
+    /**
+     * 정규화하여 추가 후 노드 번호 반환
+     */
+    public int append(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + vector.length);
+        }
+        if ((size + 1) * dimensions > vectors.length) {
+            vectors = Arrays.copyOf(vectors, Math.max(size + 1, size + (size >> 1)) * dimensions);
+        }
+        float[] normalized = HnswIndex.normalize(vector);
+        System.arraycopy(normalized, 0, vectors, size * dimensions, dimensions);
+        return size++;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public float similarity(float[] query, int offset, int node) {
+        int base = node * dimensions;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[offset + i] * vectors[base + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void read(int node, float[] target, int offset) {
+        System.arraycopy(vectors, node * dimensions, target, offset, dimensions);
+    }
+}
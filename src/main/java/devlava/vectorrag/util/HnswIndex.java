@@ -0,0 +1,519 @@
+package devlava.vectorrag.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * HNSW 근사 최근접 이웃 인덱스 (코사인 유사도)
+ * - 벡터는 VectorStorage 에 정규화하여 저장 (힙 float32 또는 메모리 매핑 양자화), 유사도는 내적
+ * - 이웃 목록은 노드/레벨별 int[] (0번 칸이 개수)
+ * - 삭제는 표시만 하고 검색 결과에서 제외 (그래프 연결은 유지)
+ * - 스레드 안전하지 않음 - 호출 측에서 읽기/쓰기 잠금으로 보호 (검색끼리는 동시 실행 가능)
+ */
+public class HnswIndex {
+
+    private static final int GRAPH_MAGIC = 0x48475246; // "HGRF"
+
+    private final VectorStorage storage;
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    // 검색마다 방문 표시 배열을 새로 만들지 않도록 스레드별로 재사용 (epoch 값으로 초기화 생략)
+    private final ThreadLocal<VisitedMarks> visitedMarks = ThreadLocal.withInitial(VisitedMarks::new);
+
+    public record Hit(int node, float similarity) {
+    }
+
+    public HnswIndex(VectorStorage storage, int m, int efConstruction, int initialCapacity) {
+        this.storage = storage;
+        this.dimensions = storage.dimensions();
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new Random(42);
+        this.links = new int[Math.max(16, initialCapacity)][][];
+    }
+
+    /**
+     * 저장소에 이미 추가된 벡터를 그래프에 연결 (노드 번호는 순서대로)
+     */
+    public void insert(int node) {
+        if (node != size) {
+            throw new IllegalArgumentException("Nodes must be inserted in order, expected " + size + " but got " + node);
+        }
+
+        if (node >= links.length) {
+            links = Arrays.copyOf(links, Math.max(node + 1, links.length + (links.length >> 1)));
+        }
+        float[] base = new float[dimensions];
+        storage.read(node, base, 0);
+        size++;
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxConnections(l) + 1];
+        }
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(base, current, l);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            int[] sorted = searchLayer(base, current, efConstruction, l).drainDescending();
+            int[] selected = selectNeighbors(node, base, sorted, m);
+            for (int neighbor : selected) {
+                connect(node, neighbor, l);
+                connect(neighbor, node, l);
+            }
+            current = sorted[0];
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    public void remove(int node) {
+        if (node >= 0 && node < size && !deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    public boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    /**
+     * 유사도 내림차순 상위 k 개 (삭제된 노드 제외) - 양자화 저장소면 근사 유사도
+     */
+    public List<Hit> search(float[] query, int k, int ef) {
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+
+        float[] normalized = normalize(query);
+        int current = greedyClosestFromTop(normalized);
+
+        // 삭제 표시된 노드만큼 여유를 두고 탐색
+        int[] sorted = searchLayer(normalized, current, Math.max(ef, k) + Math.min(deletedCount, k), 0)
+                .drainDescending();
+        List<Hit> hits = new ArrayList<>(Math.min(k, sorted.length));
+        for (int candidate : sorted) {
+            if (deleted.get(candidate)) {
+                continue;
+            }
+            hits.add(new Hit(candidate, storage.similarity(normalized, 0, candidate)));
+            if (hits.size() == k) {
+                break;
+            }
+        }
+        return hits;
+    }
+
+    public int size() {
+        return size - deletedCount;
+    }
+
+    public int nodeCount() {
+        return size;
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    public VectorStorage storage() {
+        return storage;
+    }
+
+    public static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0;
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * 그래프(이웃 목록, 삭제 표시) 저장 - 벡터는 저장소가 따로 보관
+     * 임시 파일에 쓴 뒤 이동하여 중간에 끊겨도 이전 그래프가 남음
+     */
+    public void writeGraph(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(GRAPH_MAGIC);
+            out.writeInt(size);
+            out.writeInt(m);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+
+            long[] deletedWords = deleted.toLongArray();
+            out.writeInt(deletedWords.length);
+            for (long word : deletedWords) {
+                out.writeLong(word);
+            }
+
+            for (int node = 0; node < size; node++) {
+                out.writeByte(links[node].length);
+                for (int[] neighbors : links[node]) {
+                    out.writeShort(neighbors[0]);
+                    for (int i = 1; i <= neighbors[0]; i++) {
+                        out.writeInt(neighbors[i]);
+                    }
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 저장된 그래프 읽기 - 파일이 없거나 저장소 벡터 수/설정과 맞지 않으면 false (다시 구성해야 함)
+     */
+    public boolean readGraph(Path file) throws IOException {
+        if (!Files.exists(file) || size != 0) {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != GRAPH_MAGIC) {
+                return false;
+            }
+            int nodes = in.readInt();
+            if (nodes != storage.size() || in.readInt() != m) {
+                return false;
+            }
+            int entry = in.readInt();
+            int top = in.readInt();
+
+            long[] deletedWords = new long[in.readInt()];
+            for (int i = 0; i < deletedWords.length; i++) {
+                deletedWords[i] = in.readLong();
+            }
+
+            int[][][] loaded = new int[Math.max(16, nodes)][][];
+            for (int node = 0; node < nodes; node++) {
+                loaded[node] = new int[in.readByte()][];
+                for (int l = 0; l < loaded[node].length; l++) {
+                    int count = in.readShort();
+                    int[] neighbors = new int[maxConnections(l) + 1];
+                    neighbors[0] = count;
+                    for (int i = 1; i <= count; i++) {
+                        neighbors[i] = in.readInt();
+                    }
+                    loaded[node][l] = neighbors;
+                }
+            }
+
+            links = loaded;
+            size = nodes;
+            entryPoint = entry;
+            maxLevel = top;
+            deleted.clear();
+            deleted.or(BitSet.valueOf(deletedWords));
+            deletedCount = deleted.cardinality();
+            return true;
+        }
+    }
+
+    private int greedyClosestFromTop(float[] query) {
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        return current;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentSimilarity = storage.similarity(query, 0, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float similarity = storage.similarity(query, 0, neighbors[i]);
+                if (similarity > currentSimilarity) {
+                    currentSimilarity = similarity;
+                    current = neighbors[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 한 레벨에서 ef 개 후보 탐색 - 결과는 유사도가 가장 낮은 것이 top 인 힙
+     */
+    private NodeHeap searchLayer(float[] query, int entry, int ef, int level) {
+        VisitedMarks visited = visitedMarks.get();
+        visited.reset(size);
+
+        NodeHeap candidates = new NodeHeap(ef * 2, true);
+        NodeHeap results = new NodeHeap(ef + 1, false);
+
+        float entrySimilarity = storage.similarity(query, 0, entry);
+        candidates.push(entry, entrySimilarity);
+        results.push(entry, entrySimilarity);
+        visited.mark(entry);
+
+        while (candidates.size() > 0) {
+            float candidateSimilarity = candidates.topScore();
+            int candidate = candidates.pop();
+            if (results.size() >= ef && candidateSimilarity < results.topScore()) {
+                break;
+            }
+
+            int[][] nodeLinks = links[candidate];
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbors = nodeLinks[level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (!visited.mark(neighbor)) {
+                    continue;
+                }
+                float similarity = storage.similarity(query, 0, neighbor);
+                if (results.size() < ef || similarity > results.topScore()) {
+                    candidates.push(neighbor, similarity);
+                    results.push(neighbor, similarity);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 이웃 선택 휴리스틱 - 이미 고른 이웃보다 기준 노드에 더 가까운 후보만 선택 (방향이 겹치는 이웃 배제)
+     * 다 채우지 못하면 남은 후보 중 가까운 순으로 채움
+     */
+    private int[] selectNeighbors(int node, float[] base, int[] sortedCandidates, int limit) {
+        int[] selected = new int[Math.min(limit, sortedCandidates.length)];
+        float[] selectedVectors = new float[selected.length * dimensions];
+        boolean[] taken = new boolean[sortedCandidates.length];
+        int count = 0;
+
+        for (int i = 0; i < sortedCandidates.length && count < selected.length; i++) {
+            int candidate = sortedCandidates[i];
+            if (candidate == node) {
+                taken[i] = true;
+                continue;
+            }
+            float toNode = storage.similarity(base, 0, candidate);
+            boolean keep = true;
+            for (int j = 0; j < count; j++) {
+                if (storage.similarity(selectedVectors, j * dimensions, candidate) > toNode) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                storage.read(candidate, selectedVectors, count * dimensions);
+                selected[count++] = candidate;
+                taken[i] = true;
+            }
+        }
+
+        for (int i = 0; i < sortedCandidates.length && count < selected.length; i++) {
+            if (!taken[i] && sortedCandidates[i] != node) {
+                selected[count++] = sortedCandidates[i];
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] neighbors = links[from][level];
+        int count = neighbors[0];
+        for (int i = 1; i <= count; i++) {
+            if (neighbors[i] == to) {
+                return;
+            }
+        }
+
+        int limit = maxConnections(level);
+        if (count < limit) {
+            neighbors[count + 1] = to;
+            neighbors[0] = count + 1;
+            return;
+        }
+
+        // 가득 차면 기존 이웃 + 새 이웃 중에서 다시 선택
+        float[] base = new float[dimensions];
+        storage.read(from, base, 0);
+        NodeHeap heap = new NodeHeap(count + 1, true);
+        for (int i = 1; i <= count; i++) {
+            heap.push(neighbors[i], storage.similarity(base, 0, neighbors[i]));
+        }
+        heap.push(to, storage.similarity(base, 0, to));
+        int[] selected = selectNeighbors(from, base, heap.drainDescending(), limit);
+        System.arraycopy(selected, 0, neighbors, 1, selected.length);
+        neighbors[0] = selected.length;
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private static final class VisitedMarks {
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        // 처음 방문이면 true
+        boolean mark(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+
+    /**
+     * (노드, 유사도) 이진 힙 - max 가 true 면 유사도가 가장 높은 노드가 top
+     */
+    private static final class NodeHeap {
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+        private final boolean max;
+
+        NodeHeap(int capacity, boolean max) {
+            this.nodes = new int[Math.max(4, capacity)];
+            this.scores = new float[nodes.length];
+            this.max = max;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            int lastNode = nodes[size];
+            float lastScore = scores[size];
+            int i = 0;
+            while (true) {
+                int child = i * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                    child++;
+                }
+                if (!before(scores[child], lastScore)) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return top;
+        }
+
+        /**
+         * 유사도 내림차순 노드 배열 (힙은 비워짐)
+         */
+        int[] drainDescending() {
+            int[] result = new int[size];
+            if (max) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = pop();
+                }
+            } else {
+                for (int i = result.length - 1; i >= 0; i--) {
+                    result[i] = pop();
+                }
+            }
+            return result;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package devlava.vectorrag.util;
+
+/**
+ * 스트리밍 응답에서 최상위 JSON 객체가 닫히는 시점을 감지
+ * - 청크를 받을 때마다 새로 들어온 문자만 스캔 (문자열/이스케이프 고려)
+ * - 앞부분 maxPrefixChars 안에 '{' 가 없으면 JSON 응답이 아닌 것으로 보고 즉시 실패
+ */
+public class JsonStreamCollector {
+
+    private final StringBuilder buffer = new StringBuilder(512);
+    private final int maxPrefixChars;
+
+    private int scanIndex;
+    private int startIndex = -1;
+    private int endIndex = -1;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    public JsonStreamCollector(int maxPrefixChars) {
+        this.maxPrefixChars = maxPrefixChars;
+    }
+
+    /**
+     * 청크 추가 - 최상위 JSON 객체가 닫혔으면 true
+     */
+    public boolean append(String chunk) {
+        if (isComplete() || chunk == null) {
+            return isComplete();
+        }
+
+        buffer.append(chunk);
+
+        for (; scanIndex < buffer.length(); scanIndex++) {
+            char c = buffer.charAt(scanIndex);
+
+            if (startIndex < 0) {
+                if (c == '{') {
+                    startIndex = scanIndex;
+                    depth = 1;
+                } else if (scanIndex >= maxPrefixChars) {
+                    throw new IllegalStateException("AI 응답이 JSON 형식이 아님: "
+                            + buffer.substring(0, Math.min(buffer.length(), 100)));
+                }
+                continue;
+            }
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+
+            if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    endIndex = scanIndex + 1;
+                    scanIndex++;
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    public boolean isComplete() {
+        return endIndex > 0;
+    }
+
+    public String json() {
+        if (!isComplete()) {
+            throw new IllegalStateException("JSON 객체가 닫히지 않음 (수신 길이: " + buffer.length() + ")");
+        }
+        return buffer.substring(startIndex, endIndex);
+    }
+
+    public int receivedLength() {
+        return buffer.length();
+    }
+}
@@ -0,0 +1,121 @@
+package devlava.vectorrag.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Spring AI 필터 식을 vector_store 메타데이터 인덱스를 타는 SQL 조건으로 변환
+ * - 키 = 값: metadata::jsonb @> '{"키":값}' (GIN jsonb_path_ops) - 숫자/불리언은 JSON 타입 그대로 (3 과 "3" 은 다름)
+ * - 키 IN (...): metadata->>'키' = ANY(?) (consultant 는 식 인덱스)
+ * - 문자열/시각 범위: metadata->>'키' 문자열 비교 (consultationTime 은 식 인덱스, 고정 형식 yyyy-MM-ddTHH:mm:ss)
+ * - 숫자 범위: JSON 숫자인 값만 numeric 으로 비교 (숫자가 아닌 값은 제외)
+ * - AND 만 지원, 그 밖의 식은 null (PgVectorStore 의 jsonpath 필터로 처리)
+ */
+public class MetadataFilterSql {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 키는 SQL 에 그대로 들어가므로 식별자 형태만 허용
+    private static final Pattern KEY_PATTERN = Pattern.compile("[A-Za-z][A-Za-z0-9_]*");
+
+    public record Clause(String sql, List<Object> parameters) {
+    }
+
+    public static Clause translate(Filter.Expression expression) {
+        List<Object> parameters = new ArrayList<>();
+        String sql = translate(expression, parameters);
+        return sql != null ? new Clause(sql, parameters) : null;
+    }
+
+    private static String translate(Filter.Operand operand, List<Object> parameters) {
+        if (operand instanceof Filter.Group group) {
+            return translate(group.content(), parameters);
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            return null;
+        }
+
+        if (expression.type() == Filter.ExpressionType.AND) {
+            String left = translate(expression.left(), parameters);
+            String right = left != null ? translate(expression.right(), parameters) : null;
+            return right != null ? "(" + left + " AND " + right + ")" : null;
+        }
+
+        if (!(expression.left() instanceof Filter.Key key) || !(expression.right() instanceof Filter.Value value)
+                || !KEY_PATTERN.matcher(key.key()).matches()) {
+            return null;
+        }
+
+        String field = "metadata->>'" + key.key() + "'";
+        switch (expression.type()) {
+            case EQ -> {
+                Object json = jsonValue(value.value());
+                if (json == null) {
+                    return null;
+                }
+                try {
+                    parameters.add(objectMapper.writeValueAsString(Map.of(key.key(), json)));
+                } catch (JsonProcessingException e) {
+                    return null;
+                }
+                return "metadata::jsonb @> ?::jsonb";
+            }
+            case IN -> {
+                if (!(value.value() instanceof Collection<?> values)) {
+                    return null;
+                }
+                parameters.add(values.stream().map(MetadataFilterSql::text).toArray(String[]::new));
+                return field + " = ANY(?)";
+            }
+            case GT, GTE, LT, LTE -> {
+                Object bound = value.value();
+                if (bound instanceof Number number) {
+                    parameters.add(number);
+                    field = "(CASE WHEN jsonb_typeof(metadata::jsonb->'" + key.key() + "') = 'number'"
+                            + " THEN (" + field + ")::numeric END)";
+                } else if (bound instanceof String || bound instanceof LocalDateTime) {
+                    parameters.add(text(bound));
+                } else {
+                    return null;
+                }
+                return field + switch (expression.type()) {
+                    case GT -> " > ?";
+                    case GTE -> " >= ?";
+                    case LT -> " < ?";
+                    default -> " <= ?";
+                };
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 저장된 메타데이터와 같은 JSON 타입 - 시각은 저장 형식 문자열, 그 밖의 타입은 변환하지 않음(null)
+     */
+    private static Object jsonValue(Object value) {
+        if (value instanceof LocalDateTime time) {
+            return ConsultationDocuments.formatTime(time);
+        }
+        if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        return null;
+    }
+
+    private static String text(Object value) {
+        if (value instanceof LocalDateTime time) {
+            return ConsultationDocuments.formatTime(time);
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,136 @@
+package devlava.vectorrag.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 넛지 구문 사전 ([카테고리] + 한 줄에 한 구문) - 사전 필터와 발화 압축 점수가 같은 사전/매처를 공유
+ * - 발화 한 번 읽기(Aho-Corasick)로 카테고리별 매칭 구문 수를 구함
+ * - 영업일반/부적절/고객반응/인사대기 외의 카테고리는 넛지 유형
+ * - 고객반응/인사대기는 압축 점수에만 사용 (사전 필터 판정에서 제외)
+ */
+public class NudgeDictionary {
+
+    public static final String SALES = "영업일반";
+    public static final String INAPPROPRIATE = "부적절";
+    public static final String CUSTOMER_RESPONSE = "고객반응";
+    public static final String FILLER = "인사대기";
+
+    private static final Set<String> NON_NUDGE_TYPES = Set.of(SALES, INAPPROPRIATE, CUSTOMER_RESPONSE, FILLER);
+    private static final Set<String> SCORING_ONLY = Set.of(CUSTOMER_RESPONSE, FILLER);
+
+    private final AhoCorasickMatcher matcher;
+    private final int[] patternCategories;
+    private final List<String> categories;
+    private final Map<String, Integer> categoryIndex = new HashMap<>();
+    private final boolean[] nudgeTypes;
+
+    private NudgeDictionary(List<String> patterns, List<String> patternCategoryNames) {
+        this.matcher = new AhoCorasickMatcher(patterns, true);
+        this.categories = List.copyOf(new LinkedHashSet<>(patternCategoryNames));
+        for (int i = 0; i < categories.size(); i++) {
+            categoryIndex.put(categories.get(i), i);
+        }
+        this.patternCategories = patternCategoryNames.stream().mapToInt(categoryIndex::get).toArray();
+        this.nudgeTypes = new boolean[categories.size()];
+        for (int i = 0; i < categories.size(); i++) {
+            nudgeTypes[i] = !NON_NUDGE_TYPES.contains(categories.get(i));
+        }
+    }
+
+    public static NudgeDictionary load(InputStream input) throws IOException {
+        List<String> patterns = new ArrayList<>();
+        List<String> categories = new ArrayList<>();
+        String category = null;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith("[") && line.endsWith("]")) {
+                    category = line.substring(1, line.length() - 1).trim();
+                    continue;
+                }
+                if (category == null) {
+                    throw new IllegalStateException("Phrase without category in nudge dictionary: " + line);
+                }
+                patterns.add(line);
+                categories.add(category);
+            }
+        }
+        return new NudgeDictionary(patterns, categories);
+    }
+
+    /**
+     * 텍스트에 나타난 구문을 카테고리별로 집계 (같은 구문은 한 번만)
+     */
+    public Matches match(CharSequence text) {
+        int[] counts = new int[categories.size()];
+        matcher.matchedPatterns(text).stream().forEach(pattern -> counts[patternCategories[pattern]]++);
+        return new Matches(counts);
+    }
+
+    public int phraseCount() {
+        return matcher.size();
+    }
+
+    public int categoryCount() {
+        return categories.size();
+    }
+
+    public class Matches {
+
+        private final int[] counts;
+
+        private Matches(int[] counts) {
+            this.counts = counts;
+        }
+
+        /**
+         * 매칭된 넛지 유형 카테고리 수
+         */
+        public int nudgeTypes() {
+            int matched = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (nudgeTypes[i] && counts[i] > 0) {
+                    matched++;
+                }
+            }
+            return matched;
+        }
+
+        public int count(String category) {
+            Integer index = categoryIndex.get(category);
+            return index != null ? counts[index] : 0;
+        }
+
+        public boolean has(String category) {
+            return count(category) > 0;
+        }
+
+        /**
+         * 사전 필터 판정용 매칭 카테고리 (고객반응/인사대기 제외)
+         */
+        public Set<String> signalCategories() {
+            Set<String> matched = new LinkedHashSet<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0 && !SCORING_ONLY.contains(categories.get(i))) {
+                    matched.add(categories.get(i));
+                }
+            }
+            return matched;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package devlava.vectorrag.util;
+
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.time.Duration;
+
+/**
+ * Ollama 응답 메타데이터 조회 (prompt_eval_count, eval_duration 등)
+ * - 스트리밍에서는 마지막(done) 청크에만 값이 있으므로 값이 없으면 null 반환
+ */
+public class OllamaResponseMetadata {
+
+    public static final String PROMPT_EVAL_COUNT = "prompt-eval-count";
+    public static final String PROMPT_EVAL_DURATION = "prompt-eval-duration";
+    public static final String EVAL_COUNT = "eval-count";
+    public static final String EVAL_DURATION = "eval-duration";
+    public static final String LOAD_DURATION = "load-duration";
+
+    public static Long count(ChatResponse response, String key) {
+        Object value = rawValue(response, key);
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    /**
+     * 소요 시간(나노초) - Duration 또는 나노초 숫자 모두 처리
+     */
+    public static Long durationNanos(ChatResponse response, String key) {
+        Object value = rawValue(response, key);
+        if (value instanceof Duration duration) {
+            return duration.toNanos();
+        }
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    public static boolean hasPromptEval(ChatResponse response) {
+        return count(response, PROMPT_EVAL_COUNT) != null;
+    }
+
+    public static boolean hasEvalCount(ChatResponse response) {
+        return count(response, EVAL_COUNT) != null;
+    }
+
+    private static Object rawValue(ChatResponse response, String key) {
+        if (response == null) {
+            return null;
+        }
+        ChatResponseMetadata metadata = response.getMetadata();
+        if (metadata == null || !metadata.containsKey(key)) {
+            return null;
+        }
+        return metadata.get(key);
+    }
+
+    public static String content(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return "";
+        }
+        String content = response.getResult().getOutput().getContent();
+        return content != null ? content : "";
+    }
+}
@@ -0,0 +1,328 @@
+package devlava.vectorrag.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 메모리 매핑 양자화 벡터 세그먼트 - 힙 밖(페이지 캐시)에 벡터를 두어 힙/GC 부담 없이 대량 보관
+ * - {name}.qvec: 헤더 + [키(상담 번호) | 스케일 | 양자화 벡터] 고정 길이 레코드 (근사 검색용, 자주 읽힘)
+ * - {name}.fvec: 원본 float32 벡터 고정 길이 레코드 (상위 후보 재정렬에만 사용)
+ * - 벡터는 정규화 후 저장하므로 내적 = 코사인 유사도
+ * - 파일을 매핑만 하면 되므로 재시작 시 vector_store 의 임베딩을 다시 읽지 않음
+ * - 추가(append)만 지원, 단일 쓰기 스레드 전제 (읽기는 동시 가능)
+ * - 삭제된 레코드는 그대로 남으므로 압축은 살아 있는 레코드만 새 이름의 세그먼트로 복사하여 교체 (HnswVectorStore)
+ */
+public class QuantizedVectorSegment implements VectorStorage, AutoCloseable {
+
+    public enum Encoding {
+        INT8(1), FLOAT16(2);
+
+        private final int bytesPerValue;
+
+        Encoding(int bytesPerValue) {
+            this.bytesPerValue = bytesPerValue;
+        }
+    }
+
+    private static final int MAGIC = 0x48565347; // "HVSG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int COUNT_OFFSET = 16;
+    private static final int KEY_BYTES = 64;
+
+    // MappedByteBuffer 는 2GB 미만이고 크기를 늘릴 수 없으므로 64MB 단위로 나눠 매핑
+    private static final long MAX_CHUNK_BYTES = 64L << 20;
+
+    private final Encoding encoding;
+    private final int dimensions;
+    private final int quantizedRecordBytes;
+    private final int fullRecordBytes;
+    private final int quantizedRecordsPerChunk;
+    private final int fullRecordsPerChunk;
+
+    private final FileChannel quantizedChannel;
+    private final FileChannel fullChannel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> quantizedChunks = new ArrayList<>();
+    private final List<MappedByteBuffer> fullChunks = new ArrayList<>();
+    private final List<FloatBuffer> fullViews = new ArrayList<>();
+
+    // 매핑 버퍼에서 값을 하나씩 읽지 않고 스레드별 배열로 한 번에 복사한 뒤 계산
+    private final ThreadLocal<byte[]> quantizedScratch;
+    private final ThreadLocal<float[]> fullScratch;
+
+    private volatile int count;
+
+    private QuantizedVectorSegment(Path directory, String name, Encoding encoding, int dimensions, long maxChunkBytes)
+            throws IOException {
+        this.encoding = encoding;
+        this.dimensions = dimensions;
+        this.quantizedRecordBytes = KEY_BYTES + Float.BYTES + dimensions * encoding.bytesPerValue;
+        this.fullRecordBytes = dimensions * Float.BYTES;
+        this.quantizedRecordsPerChunk = (int) Math.max(1, maxChunkBytes / quantizedRecordBytes);
+        this.fullRecordsPerChunk = (int) Math.max(1, maxChunkBytes / fullRecordBytes);
+        this.quantizedScratch = ThreadLocal.withInitial(() -> new byte[dimensions * encoding.bytesPerValue]);
+        this.fullScratch = ThreadLocal.withInitial(() -> new float[dimensions]);
+
+        Files.createDirectories(directory);
+        this.quantizedChannel = FileChannel.open(directory.resolve(name + ".qvec"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.fullChannel = FileChannel.open(directory.resolve(name + ".fvec"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.header = quantizedChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 세그먼트 열기 - 파일이 없거나 형식(인코딩/차원)이 다르면 비우고 새로 만듦
+     */
+    public static QuantizedVectorSegment open(Path directory, String name, Encoding encoding, int dimensions)
+            throws IOException {
+        return open(directory, name, encoding, dimensions, MAX_CHUNK_BYTES);
+    }
+
+    /**
+     * 매핑 단위를 지정하여 열기 (청크 경계 테스트용)
+     */
+    static QuantizedVectorSegment open(Path directory, String name, Encoding encoding, int dimensions,
+                                       long maxChunkBytes) throws IOException {
+        QuantizedVectorSegment segment = new QuantizedVectorSegment(directory, name, encoding, dimensions, maxChunkBytes);
+        segment.initialize();
+        return segment;
+    }
+
+    private void initialize() throws IOException {
+        boolean compatible = header.getInt(0) == MAGIC
+                && header.getInt(4) == VERSION
+                && header.getInt(8) == encoding.ordinal()
+                && header.getInt(12) == dimensions;
+
+        if (!compatible) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, encoding.ordinal());
+            header.putInt(12, dimensions);
+            header.putInt(COUNT_OFFSET, 0);
+            header.force();
+            quantizedChannel.truncate(HEADER_BYTES);
+            fullChannel.truncate(0);
+        }
+
+        // 마지막 추가가 중간에 끊긴 경우 두 파일 모두에 온전히 있는 레코드까지만 유효
+        long storedCount = header.getInt(COUNT_OFFSET);
+        long completeQuantized = (quantizedChannel.size() - HEADER_BYTES) / quantizedRecordBytes;
+        long completeFull = fullChannel.size() / fullRecordBytes;
+        count = (int) Math.min(storedCount, Math.min(completeQuantized, completeFull));
+        ensureMapped(count);
+    }
+
+    /**
+     * 벡터 추가 후 레코드 번호 반환 (HNSW 노드 번호와 같게 사용)
+     */
+    public int append(String key, float[] vector) throws IOException {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + vector.length);
+        }
+
+        float[] normalized = HnswIndex.normalize(vector);
+        int record = count;
+        ensureMapped(record + 1);
+
+        ByteBuffer full = fullChunks.get(record / fullRecordsPerChunk);
+        int fullOffset = (record % fullRecordsPerChunk) * fullRecordBytes;
+        for (int i = 0; i < dimensions; i++) {
+            full.putFloat(fullOffset + i * Float.BYTES, normalized[i]);
+        }
+
+        ByteBuffer quantized = quantizedChunks.get(record / quantizedRecordsPerChunk);
+        int offset = (record % quantizedRecordsPerChunk) * quantizedRecordBytes;
+        writeKey(quantized, offset, key);
+        int valuesOffset = offset + KEY_BYTES + Float.BYTES;
+        if (encoding == Encoding.INT8) {
+            float maxAbs = 0;
+            for (float value : normalized) {
+                maxAbs = Math.max(maxAbs, Math.abs(value));
+            }
+            float scale = maxAbs > 0 ? maxAbs / 127f : 1f;
+            quantized.putFloat(offset + KEY_BYTES, scale);
+            for (int i = 0; i < dimensions; i++) {
+                quantized.put(valuesOffset + i, (byte) Math.round(normalized[i] / scale));
+            }
+        } else {
+            quantized.putFloat(offset + KEY_BYTES, 1f);
+            for (int i = 0; i < dimensions; i++) {
+                quantized.putShort(valuesOffset + i * 2, toHalf(normalized[i]));
+            }
+        }
+
+        count = record + 1;
+        header.putInt(COUNT_OFFSET, count);
+        return record;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public String key(int record) {
+        ByteBuffer quantized = quantizedChunks.get(record / quantizedRecordsPerChunk);
+        int offset = (record % quantizedRecordsPerChunk) * quantizedRecordBytes;
+        int length = quantized.getShort(offset);
+        byte[] bytes = new byte[length];
+        quantized.get(offset + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 정규화된 질의와 양자화 벡터의 근사 내적
+     */
+    @Override
+    public float similarity(float[] query, int queryOffset, int record) {
+        ByteBuffer quantized = quantizedChunks.get(record / quantizedRecordsPerChunk);
+        int offset = (record % quantizedRecordsPerChunk) * quantizedRecordBytes;
+        float scale = quantized.getFloat(offset + KEY_BYTES);
+        byte[] values = quantizedScratch.get();
+        quantized.get(offset + KEY_BYTES + Float.BYTES, values);
+
+        float sum = 0;
+        if (encoding == Encoding.INT8) {
+            for (int i = 0; i < dimensions; i++) {
+                sum += query[queryOffset + i] * values[i];
+            }
+            return sum * scale;
+        }
+        for (int i = 0; i < dimensions; i++) {
+            short half = (short) ((values[i * 2] & 0xFF) | (values[i * 2 + 1] << 8));
+            sum += query[queryOffset + i] * fromHalf(half);
+        }
+        return sum;
+    }
+
+    /**
+     * 원본 float32 벡터와의 정확한 내적 (재정렬용)
+     */
+    public float exactDot(float[] query, int record) {
+        float[] vector = fullScratch.get();
+        read(record, vector, 0);
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[i] * vector[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 원본 벡터 복사 (그래프 구성 시 비교 기준 벡터)
+     */
+    @Override
+    public void read(int record, float[] target, int targetOffset) {
+        FloatBuffer full = fullViews.get(record / fullRecordsPerChunk);
+        full.get((record % fullRecordsPerChunk) * dimensions, target, targetOffset, dimensions);
+    }
+
+    /**
+     * 디스크에 반영 (종료 시, 주기적으로)
+     */
+    public void force() {
+        quantizedChunks.forEach(MappedByteBuffer::force);
+        fullChunks.forEach(MappedByteBuffer::force);
+        header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        quantizedChannel.close();
+        fullChannel.close();
+    }
+
+    /**
+     * 세그먼트 파일 삭제 (압축 후 이전 세그먼트, 닫은 뒤에 호출)
+     */
+    public static void delete(Path directory, String name) throws IOException {
+        Files.deleteIfExists(directory.resolve(name + ".qvec"));
+        Files.deleteIfExists(directory.resolve(name + ".fvec"));
+    }
+
+    private void ensureMapped(int records) throws IOException {
+        while ((long) quantizedChunks.size() * quantizedRecordsPerChunk < records) {
+            long position = HEADER_BYTES + (long) quantizedChunks.size() * quantizedRecordsPerChunk * quantizedRecordBytes;
+            MappedByteBuffer chunk = quantizedChannel.map(FileChannel.MapMode.READ_WRITE, position,
+                    (long) quantizedRecordsPerChunk * quantizedRecordBytes);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            quantizedChunks.add(chunk);
+        }
+        while ((long) fullChunks.size() * fullRecordsPerChunk < records) {
+            long position = (long) fullChunks.size() * fullRecordsPerChunk * fullRecordBytes;
+            MappedByteBuffer chunk = fullChannel.map(FileChannel.MapMode.READ_WRITE, position,
+                    (long) fullRecordsPerChunk * fullRecordBytes);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            fullChunks.add(chunk);
+            fullViews.add(chunk.asFloatBuffer());
+        }
+    }
+
+    private static void writeKey(ByteBuffer buffer, int offset, String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, KEY_BYTES - Short.BYTES);
+        buffer.putShort(offset, (short) length);
+        buffer.put(offset + Short.BYTES, bytes, 0, length);
+    }
+
+    // IEEE 754 half precision 변환 (Java 17 에는 Float.floatToFloat16 이 없음)
+    static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent <= 0) {
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            // 비정규 수
+            mantissa = (mantissa | 0x800000) >> (1 - exponent);
+            return (short) (sign | ((mantissa + 0x1000) >> 13));
+        }
+        if (exponent >= 31) {
+            return (short) (sign | 0x7C00);
+        }
+        int half = sign | (exponent << 10) | (mantissa >> 13);
+        // 반올림 (자리올림이 지수로 넘어가도 올바른 값)
+        if ((mantissa & 0x1000) != 0) {
+            half++;
+        }
+        return (short) half;
+    }
+
+    static float fromHalf(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+
+        if (exponent == 0) {
+            return Float.intBitsToFloat(sign) + (sign != 0 ? -1 : 1) * mantissa * 0x1p-24f;
+        }
+        if (exponent == 31) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
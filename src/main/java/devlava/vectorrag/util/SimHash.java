@@ -0,0 +1,76 @@
+package devlava.vectorrag.util;
+
+/**
+ * 상담 내용 SimHash (64비트) - 내용이 거의 같으면 해밍 거리가 작은 서명이 나옴
+ * - 공백/문장부호를 제외한 문자 3-gram 을 특징으로 사용 (STT 띄어쓰기, 구두점 차이 무시)
+ * - 같은 3-gram 이 여러 번 나오면 그만큼 가중치가 커짐
+ */
+public class SimHash {
+
+    private static final int SHINGLE_SIZE = 3;
+
+    public static long compute(CharSequence text) {
+        if (text == null) {
+            return 0L;
+        }
+
+        int[] weights = new int[64];
+        char[] window = new char[SHINGLE_SIZE];
+        int filled = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                continue;
+            }
+
+            // 최근 SHINGLE_SIZE 개 문자를 순환 버퍼에 유지
+            System.arraycopy(window, 1, window, 0, SHINGLE_SIZE - 1);
+            window[SHINGLE_SIZE - 1] = Character.toLowerCase(c);
+            if (++filled < SHINGLE_SIZE) {
+                continue;
+            }
+
+            long hash = shingleHash(window);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+            }
+        }
+
+        // 문자가 SHINGLE_SIZE 보다 적으면 있는 문자만으로 하나의 특징 생성
+        if (filled > 0 && filled < SHINGLE_SIZE) {
+            return shingleHash(window);
+        }
+
+        long signature = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                signature |= 1L << bit;
+            }
+        }
+        return signature;
+    }
+
+    public static int hammingDistance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 0~1 유사도 (1 - 해밍 거리 / 64)
+     */
+    public static double similarity(long a, long b) {
+        return 1.0 - hammingDistance(a, b) / 64.0;
+    }
+
+    private static long shingleHash(char[] shingle) {
+        long hash = 0L;
+        for (char c : shingle) {
+            hash = hash * 31 + c;
+        }
+        // splitmix64 finalizer - 비트를 고르게 섞음
+        hash += 0x9E3779B97F4A7C15L;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,30 @@
+package devlava.vectorrag.util;
+
+/**
+ * 프롬프트 토큰 수 근사치 계산 (llama3 계열 토크나이저 기준 경험값)
+ * - 한글 음절: 약 0.7 토큰
+ * - 그 외 문자: 약 4자당 1 토큰 (공백 제외)
+ */
+public class TokenEstimator {
+
+    private static final double TOKENS_PER_HANGUL = 0.7;
+    private static final double CHARS_PER_OTHER_TOKEN = 4.0;
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+
+        int hangul = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '가' && c <= '힣') {
+                hangul++;
+            } else if (!Character.isWhitespace(c)) {
+                other++;
+            }
+        }
+        return (int) Math.ceil(hangul * TOKENS_PER_HANGUL + other / CHARS_PER_OTHER_TOKEN);
+    }
+}
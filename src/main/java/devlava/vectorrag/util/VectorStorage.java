@@ -0,0 +1,23 @@
+package devlava.vectorrag.util;
+
+/**
+ * HNSW 그래프가 참조하는 벡터 저장소 (노드 번호 = 레코드 번호, 정규화된 벡터)
+ * - HeapVectorStorage: 힙의 float32 배열
+ * - QuantizedVectorSegment: 메모리 매핑 int8/float16 (+ 재정렬용 float32)
+ */
+public interface VectorStorage {
+
+    int dimensions();
+
+    int size();
+
+    /**
+     * 정규화된 질의(query[offset..])와 노드의 내적 - 양자화 저장소는 근사값
+     */
+    float similarity(float[] query, int offset, int node);
+
+    /**
+     * 노드의 원본 정밀도 벡터를 target[offset..] 에 복사
+     */
+    void read(int node, float[] target, int offset);
+}
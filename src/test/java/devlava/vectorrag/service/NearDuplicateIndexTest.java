@@ -0,0 +1,103 @@
+package devlava.vectorrag.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NearDuplicateIndexTest {
+
+    private static final int MAX_DISTANCE = 3;
+
+    @Test
+    void alwaysFindsSignaturesWithinMaxDistance() {
+        Random random = new Random(11);
+        NearDuplicateIndex index = new NearDuplicateIndex(MAX_DISTANCE, 64);
+
+        long[] signatures = new long[2000];
+        for (int i = 0; i < signatures.length; i++) {
+            signatures[i] = random.nextLong();
+            index.add("C" + i, signatures[i]);
+        }
+
+        // 밴드 경계에 걸친 비트를 포함해 임의 위치 0~k 비트를 뒤집어도 항상 찾아야 함 (비둘기집 원리)
+        for (int i = 0; i < signatures.length; i++) {
+            int flips = i % (MAX_DISTANCE + 1);
+            long query = flipBits(signatures[i], flips, random);
+
+            NearDuplicateIndex.Match match = index.findClosest("query", query);
+            assertNotNull(match, "signature " + i + " with " + flips + " flipped bits");
+            assertEquals("C" + i, match.consultationNumber());
+            assertEquals(flips, match.distance());
+        }
+    }
+
+    @Test
+    void ignoresSignaturesBeyondMaxDistance() {
+        Random random = new Random(5);
+        NearDuplicateIndex index = new NearDuplicateIndex(MAX_DISTANCE, 64);
+        long signature = random.nextLong();
+        index.add("C1", signature);
+
+        for (int trial = 0; trial < 200; trial++) {
+            assertNull(index.findClosest("query", flipBits(signature, MAX_DISTANCE + 1, random)));
+        }
+    }
+
+    @Test
+    void prefersClosestAndSkipsItself() {
+        NearDuplicateIndex index = new NearDuplicateIndex(MAX_DISTANCE, 64);
+        long signature = 0x0123_4567_89AB_CDEFL;
+        index.add("SELF", signature);
+        index.add("FAR", signature ^ 0b111L);
+        index.add("NEAR", signature ^ (1L << 40));
+
+        NearDuplicateIndex.Match match = index.findClosest("SELF", signature);
+        assertEquals("NEAR", match.consultationNumber());
+        assertEquals(1, match.distance());
+    }
+
+    @Test
+    void reAddingSameConsultationDoesNotFillBuckets() {
+        NearDuplicateIndex index = new NearDuplicateIndex(MAX_DISTANCE, 2);
+        long signature = 0x0F0F_0F0F_0F0F_0F0FL;
+
+        // 재분석으로 같은 상담이 다시 등록되어도 버킷 자리를 차지하지 않아야 함
+        index.add("C1", signature);
+        index.add("C1", signature);
+        index.add("C1", signature);
+        index.add("C2", signature ^ 1L);
+
+        assertEquals("C2", index.findClosest("C1", signature).consultationNumber());
+        assertEquals("C1", index.findClosest("C2", signature ^ 1L).consultationNumber());
+    }
+
+    @Test
+    void reAddingWithNewSignatureReplacesOldEntry() {
+        NearDuplicateIndex index = new NearDuplicateIndex(MAX_DISTANCE, 64);
+        long oldSignature = 0x0123_4567_89AB_CDEFL;
+        long newSignature = ~oldSignature;
+
+        index.add("C1", oldSignature);
+        index.add("C1", newSignature);
+
+        assertNull(index.findClosest("query", oldSignature));
+        assertEquals("C1", index.findClosest("query", newSignature).consultationNumber());
+    }
+
+    private static long flipBits(long signature, int count, Random random) {
+        long result = signature;
+        int flipped = 0;
+        while (flipped < count) {
+            long bit = 1L << random.nextInt(64);
+            if (((result ^ signature) & bit) == 0) {
+                result ^= bit;
+                flipped++;
+            }
+        }
+        return result;
+    }
+}
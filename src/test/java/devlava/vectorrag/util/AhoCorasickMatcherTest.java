@@ -0,0 +1,79 @@
+package devlava.vectorrag.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AhoCorasickMatcherTest {
+
+    @Test
+    void findsOverlappingAndNestedPatterns() {
+        AhoCorasickMatcher matcher = new AhoCorasickMatcher(List.of("he", "she", "his", "hers"), false);
+
+        // "ushers" 에서 she, he, hers 가 겹쳐서 나타남
+        assertEquals(bitSet(0, 1, 3), matcher.matchedPatterns("ushers"));
+        assertEquals(bitSet(0, 2), matcher.matchedPatterns("this he"));
+        assertEquals(new BitSet(), matcher.matchedPatterns("xyz"));
+    }
+
+    @Test
+    void followsFailureLinksAfterPartialMatch() {
+        AhoCorasickMatcher matcher = new AhoCorasickMatcher(List.of("abcd", "bce", "c"), false);
+
+        // "abc" 까지 진행한 뒤 d 대신 e 가 오면 실패 링크로 "bc" 상태로 넘어가 bce 를 찾아야 함
+        assertEquals(bitSet(1, 2), matcher.matchedPatterns("abce"));
+        assertEquals(bitSet(0, 2), matcher.matchedPatterns("aabcd"));
+    }
+
+    @Test
+    void ignoresWhitespaceOnBothSides() {
+        AhoCorasickMatcher matcher = new AhoCorasickMatcher(List.of("손해 보고", "결합할인"), true);
+
+        assertEquals(bitSet(0, 1), matcher.matchedPatterns("지금 손해보고 계시고 결합 할인 받으시면"));
+        assertEquals(new BitSet(), new AhoCorasickMatcher(List.of("손해 보고"), false).matchedPatterns("손해보고"));
+    }
+
+    @Test
+    void matchesSameAsNaiveSearch() {
+        Random random = new Random(7);
+        List<String> patterns = List.of("ab", "aba", "bab", "b", "abba", "bbb", "aab");
+        AhoCorasickMatcher matcher = new AhoCorasickMatcher(patterns, false);
+
+        for (int trial = 0; trial < 500; trial++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 1 + random.nextInt(20); i++) {
+                text.append(random.nextBoolean() ? 'a' : 'b');
+            }
+
+            BitSet expected = new BitSet();
+            for (int p = 0; p < patterns.size(); p++) {
+                if (text.indexOf(patterns.get(p)) >= 0) {
+                    expected.set(p);
+                }
+            }
+            assertEquals(expected, matcher.matchedPatterns(text), "text: " + text);
+        }
+    }
+
+    @Test
+    void handlesNullTextAndDuplicatePatterns() {
+        AhoCorasickMatcher matcher = new AhoCorasickMatcher(List.of("할인", "할인"), false);
+
+        assertTrue(matcher.matchedPatterns(null).isEmpty());
+        assertEquals(bitSet(0, 1), matcher.matchedPatterns("할인 혜택"));
+        assertEquals(2, matcher.size());
+    }
+
+    private static BitSet bitSet(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
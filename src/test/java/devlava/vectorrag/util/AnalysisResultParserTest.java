@@ -0,0 +1,82 @@
+package devlava.vectorrag.util;
+
+import devlava.vectorrag.dto.ConsultationAnalysisResult;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AnalysisResultParserTest {
+
+    @Test
+    void parsesAllFields() {
+        ConsultationAnalysisResult result = AnalysisResultParser.parse("""
+                {
+                  "mainInquiry": "요금제 변경 문의",
+                  "hasNudge": "Y",
+                  "nudgeType": "결합혜택",
+                  "nudgeContent": "인터넷이랑 묶어서 쓰시면 할인됩니다",
+                  "customerResponse": "N",
+                  "inappropriateNudge": "N",
+                  "inappropriateReason": "N"
+                }
+                """);
+
+        assertEquals("요금제 변경 문의", result.getMainInquiry());
+        assertEquals("Y", result.getHasNudge());
+        assertEquals("결합혜택", result.getNudgeType());
+        assertEquals("인터넷이랑 묶어서 쓰시면 할인됩니다", result.getNudgeContent());
+        assertEquals("N", result.getCustomerResponse());
+        assertEquals("N", result.getInappropriateNudge());
+        assertEquals("N", result.getInappropriateReason());
+    }
+
+    @Test
+    void skipsLeadingTextUnknownKeysAndNestedValues() {
+        ConsultationAnalysisResult result = AnalysisResultParser.parse(
+                "분석 결과: {\"confidence\": 0.9, \"extra\": {\"a\": [1, \"}\", {\"b\": null}]},"
+                        + " \"hasNudge\": \"Y\", \"tags\": [\"x\", \"y\"], \"nudgeType\": \"한정혜택\"} 이상입니다");
+
+        assertEquals("Y", result.getHasNudge());
+        assertEquals("한정혜택", result.getNudgeType());
+        assertNull(result.getMainInquiry());
+    }
+
+    @Test
+    void normalizesYesNoValues() {
+        ConsultationAnalysisResult result = AnalysisResultParser.parse(
+                "{\"hasNudge\": \" y \", \"customerResponse\": true, \"inappropriateNudge\": \"Yes\"}");
+
+        assertEquals("Y", result.getHasNudge());
+        assertEquals("Y", result.getCustomerResponse());
+        // "Y" 한 글자가 아니면 N
+        assertEquals("N", result.getInappropriateNudge());
+
+        ConsultationAnalysisResult negative = AnalysisResultParser.parse(
+                "{\"hasNudge\": false, \"customerResponse\": null, \"inappropriateNudge\": \"N\"}");
+        assertEquals("N", negative.getHasNudge());
+        assertEquals("N", negative.getCustomerResponse());
+        assertEquals("N", negative.getInappropriateNudge());
+    }
+
+    @Test
+    void decodesEscapesAndNonStringText() {
+        ConsultationAnalysisResult result = AnalysisResultParser.parse(
+                "{\"nudgeContent\": \"\\\"지금\\\" 가입\\n\\uD61C\\uD0DD\", \"mainInquiry\": null, \"nudgeType\": 3}");
+
+        assertEquals("\"지금\" 가입\n혜택", result.getNudgeContent());
+        assertNull(result.getMainInquiry());
+        assertEquals("3", result.getNudgeType());
+    }
+
+    @Test
+    void rejectsMissingOrTruncatedJson() {
+        assertThrows(IllegalArgumentException.class, () -> AnalysisResultParser.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> AnalysisResultParser.parse("JSON 없음"));
+        assertThrows(IllegalArgumentException.class,
+                () -> AnalysisResultParser.parse("{\"hasNudge\": \"Y\", \"nudgeType\": \"결합"));
+        assertThrows(IllegalArgumentException.class,
+                () -> AnalysisResultParser.parse("{\"hasNudge\" \"Y\"}"));
+    }
+}
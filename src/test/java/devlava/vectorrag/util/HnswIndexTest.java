@@ -0,0 +1,129 @@
+package devlava.vectorrag.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final int VECTORS = 2000;
+    private static final int QUERIES = 100;
+    private static final int TOP_K = 10;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recallAgainstBruteForceIsHigh() {
+        Random random = new Random(42);
+        HeapVectorStorage storage = new HeapVectorStorage(DIMENSIONS, VECTORS);
+        HnswIndex index = build(storage, random);
+
+        double recall = recall(index, storage, random, Set.of());
+        assertTrue(recall >= 0.95, "recall@" + TOP_K + " = " + recall);
+    }
+
+    @Test
+    void deletedNodesAreExcludedFromResults() {
+        Random random = new Random(3);
+        HeapVectorStorage storage = new HeapVectorStorage(DIMENSIONS, VECTORS);
+        HnswIndex index = build(storage, random);
+
+        Set<Integer> deleted = new HashSet<>();
+        for (int node = 0; node < VECTORS; node += 4) {
+            index.remove(node);
+            deleted.add(node);
+        }
+        assertEquals(VECTORS - deleted.size(), index.size());
+        assertEquals(deleted.size(), index.deletedCount());
+
+        double recall = recall(index, storage, random, deleted);
+        assertTrue(recall >= 0.9, "recall@" + TOP_K + " after deletes = " + recall);
+    }
+
+    @Test
+    void graphRoundTripReturnsSameResults() throws IOException {
+        Random random = new Random(9);
+        HeapVectorStorage storage = new HeapVectorStorage(DIMENSIONS, VECTORS);
+        HnswIndex index = build(storage, random);
+        index.remove(7);
+
+        Path graph = tempDir.resolve("vectors.graph");
+        index.writeGraph(graph);
+
+        HnswIndex restored = new HnswIndex(storage, 16, 100, VECTORS);
+        assertTrue(restored.readGraph(graph));
+        assertEquals(index.nodeCount(), restored.nodeCount());
+        assertEquals(index.deletedCount(), restored.deletedCount());
+        assertTrue(restored.isDeleted(7));
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random);
+            assertEquals(index.search(query, TOP_K, 64), restored.search(query, TOP_K, 64));
+        }
+
+        // 저장소 벡터 수나 설정(m)이 다르면 다시 구성해야 하므로 false
+        storage.append(randomVector(random));
+        assertFalse(new HnswIndex(storage, 16, 100, VECTORS).readGraph(graph));
+        assertFalse(new HnswIndex(new HeapVectorStorage(DIMENSIONS, 16), 8, 100, 16)
+                .readGraph(tempDir.resolve("missing.graph")));
+    }
+
+    private static HnswIndex build(HeapVectorStorage storage, Random random) {
+        HnswIndex index = new HnswIndex(storage, 16, 100, VECTORS);
+        for (int i = 0; i < VECTORS; i++) {
+            index.insert(storage.append(randomVector(random)));
+        }
+        return index;
+    }
+
+    private static double recall(HnswIndex index, HeapVectorStorage storage, Random random, Set<Integer> deleted) {
+        int found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = randomVector(random);
+            Set<Integer> expected = new HashSet<>(bruteForce(storage, HnswIndex.normalize(query), deleted));
+
+            List<HnswIndex.Hit> hits = index.search(query, TOP_K, 64);
+            assertEquals(TOP_K, hits.size());
+            for (HnswIndex.Hit hit : hits) {
+                assertFalse(deleted.contains(hit.node()), "deleted node " + hit.node() + " returned");
+                if (expected.contains(hit.node())) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / (QUERIES * TOP_K);
+    }
+
+    private static List<Integer> bruteForce(HeapVectorStorage storage, float[] query, Set<Integer> deleted) {
+        List<Integer> nodes = new ArrayList<>();
+        for (int node = 0; node < storage.size(); node++) {
+            if (!deleted.contains(node)) {
+                nodes.add(node);
+            }
+        }
+        nodes.sort(Comparator.comparingDouble((Integer node) -> storage.similarity(query, 0, node)).reversed());
+        return nodes.subList(0, TOP_K);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
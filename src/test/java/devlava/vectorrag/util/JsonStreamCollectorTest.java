@@ -0,0 +1,54 @@
+package devlava.vectorrag.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonStreamCollectorTest {
+
+    private static final String JSON = "{\"mainInquiry\":\"요금 {문의}\",\"nudgeContent\":\"\\\"결합\\\" [할인]\","
+            + "\"nested\":{\"items\":[1,{\"a\":\"}\"}]},\"hasNudge\":\"Y\"}";
+
+    @Test
+    void completesOnlyWhenTopLevelObjectCloses() {
+        JsonStreamCollector collector = new JsonStreamCollector(200);
+
+        // 한 글자씩 나눠 받아도 문자열 안의 괄호/이스케이프된 따옴표에서 닫혔다고 판단하지 않음
+        for (int i = 0; i < JSON.length() - 1; i++) {
+            assertFalse(collector.append(String.valueOf(JSON.charAt(i))), "closed early at " + i);
+        }
+        assertTrue(collector.append("}"));
+        assertEquals(JSON, collector.json());
+    }
+
+    @Test
+    void stopsAtClosingBraceAndIgnoresTrailingChunks() {
+        JsonStreamCollector collector = new JsonStreamCollector(200);
+
+        assertFalse(collector.append("분석 결과입니다.\n{\"hasNudge\":"));
+        assertTrue(collector.append("\"N\"} 추가 설명"));
+        assertTrue(collector.append("{\"ignored\":true}"));
+
+        assertEquals("{\"hasNudge\":\"N\"}", collector.json());
+    }
+
+    @Test
+    void failsFastWhenNoObjectStartsWithinPrefix() {
+        JsonStreamCollector collector = new JsonStreamCollector(10);
+
+        assertFalse(collector.append("죄송"));
+        assertThrows(IllegalStateException.class, () -> collector.append("합니다. 분석할 수 없습니다."));
+    }
+
+    @Test
+    void jsonFailsWhenStreamEndsBeforeObjectCloses() {
+        JsonStreamCollector collector = new JsonStreamCollector(200);
+
+        assertFalse(collector.append("{\"mainInquiry\":\"요금"));
+        assertFalse(collector.isComplete());
+        assertThrows(IllegalStateException.class, collector::json);
+    }
+}
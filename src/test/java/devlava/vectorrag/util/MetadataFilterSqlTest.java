@@ -0,0 +1,101 @@
+package devlava.vectorrag.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MetadataFilterSqlTest {
+
+    private final FilterExpressionBuilder builder = new FilterExpressionBuilder();
+
+    @Test
+    void translatesEqualityToJsonbContainment() {
+        MetadataFilterSql.Clause clause = MetadataFilterSql.translate(builder.eq("hasNudge", "Y").build());
+
+        assertEquals("metadata::jsonb @> ?::jsonb", clause.sql());
+        assertEquals(List.of("{\"hasNudge\":\"Y\"}"), clause.parameters());
+    }
+
+    @Test
+    void keepsJsonTypeOfEqualityValues() {
+        // 저장된 {"count":3} 은 {"count":"3"} 을 포함하지 않으므로 숫자/불리언은 그대로 직렬화
+        assertEquals(List.of("{\"count\":3}"),
+                MetadataFilterSql.translate(builder.eq("count", 3).build()).parameters());
+        assertEquals(List.of("{\"score\":0.5}"),
+                MetadataFilterSql.translate(builder.eq("score", 0.5).build()).parameters());
+        assertEquals(List.of("{\"reused\":true}"),
+                MetadataFilterSql.translate(builder.eq("reused", true).build()).parameters());
+        assertEquals(List.of("{\"consultationTime\":\"2024-05-01T09:30:00\"}"),
+                MetadataFilterSql.translate(builder.eq("consultationTime", LocalDateTime.of(2024, 5, 1, 9, 30)).build())
+                        .parameters());
+    }
+
+    @Test
+    void comparesNumericRangesAsNumbers() {
+        MetadataFilterSql.Clause clause = MetadataFilterSql.translate(builder.gt("turns", 10).build());
+
+        // 문자열 비교면 "9" > "10" 이 되므로 JSON 숫자만 numeric 으로 비교
+        assertEquals("(CASE WHEN jsonb_typeof(metadata::jsonb->'turns') = 'number'"
+                + " THEN (metadata->>'turns')::numeric END) > ?", clause.sql());
+        assertEquals(List.of(10), clause.parameters());
+    }
+
+    @Test
+    void returnsNullForRangesOnUnsupportedValues() {
+        assertNull(MetadataFilterSql.translate(builder.gt("reused", true).build()));
+    }
+
+    @Test
+    void translatesInToAnyArray() {
+        MetadataFilterSql.Clause clause = MetadataFilterSql.translate(
+                builder.in("consultant", List.<Object>of("kim", "lee")).build());
+
+        assertEquals("metadata->>'consultant' = ANY(?)", clause.sql());
+        assertArrayEquals(new String[]{"kim", "lee"}, (String[]) clause.parameters().get(0));
+    }
+
+    @Test
+    void translatesTimeRangeWithFixedFormat() {
+        LocalDateTime from = LocalDateTime.of(2024, 5, 1, 9, 30);
+        MetadataFilterSql.Clause clause = MetadataFilterSql.translate(builder.gte("consultationTime", from).build());
+
+        assertEquals("metadata->>'consultationTime' >= ?", clause.sql());
+        assertEquals(List.of("2024-05-01T09:30:00"), clause.parameters());
+    }
+
+    @Test
+    void combinesAndGroupsInParameterOrder() {
+        Filter.Expression expression = builder.and(
+                builder.and(
+                        builder.lt("consultationTime", "2024-06-01T00:00:00"),
+                        builder.eq("nudgeType", "결합혜택")),
+                builder.group(builder.in("consultant", List.<Object>of("kim")))).build();
+
+        MetadataFilterSql.Clause clause = MetadataFilterSql.translate(expression);
+
+        assertEquals("((metadata->>'consultationTime' < ? AND metadata::jsonb @> ?::jsonb)"
+                + " AND metadata->>'consultant' = ANY(?))", clause.sql());
+        assertEquals(3, clause.parameters().size());
+        assertEquals("2024-06-01T00:00:00", clause.parameters().get(0));
+        assertEquals("{\"nudgeType\":\"결합혜택\"}", clause.parameters().get(1));
+        assertArrayEquals(new String[]{"kim"}, (String[]) clause.parameters().get(2));
+    }
+
+    @Test
+    void returnsNullForUnsupportedExpressions() {
+        // OR/NOT/NE 는 인덱스 조건으로 바꾸지 않고 PgVectorStore 필터로 처리
+        assertNull(MetadataFilterSql.translate(builder.or(builder.eq("hasNudge", "Y"), builder.eq("hasNudge", "N")).build()));
+        assertNull(MetadataFilterSql.translate(builder.ne("hasNudge", "Y").build()));
+        assertNull(MetadataFilterSql.translate(builder.and(builder.eq("hasNudge", "Y"),
+                builder.not(builder.eq("nudgeType", "N"))).build()));
+        // SQL 에 그대로 들어가는 키는 식별자 형태만 허용
+        assertNull(MetadataFilterSql.translate(builder.eq("a' OR '1'='1", "Y").build()));
+    }
+}
@@ -0,0 +1,114 @@
+package devlava.vectorrag.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QuantizedVectorSegmentTest {
+
+    private static final int DIMENSIONS = 24;
+    // 청크당 레코드가 몇 개뿐이도록 매핑 단위를 줄여 여러 청크 경계를 지나게 함
+    private static final long CHUNK_BYTES = 512;
+    private static final int RECORDS = 50;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void int8RoundTripAcrossChunkBoundaries() throws IOException {
+        roundTrip(QuantizedVectorSegment.Encoding.INT8, 0.01f);
+    }
+
+    @Test
+    void float16RoundTripAcrossChunkBoundaries() throws IOException {
+        roundTrip(QuantizedVectorSegment.Encoding.FLOAT16, 0.002f);
+    }
+
+    private void roundTrip(QuantizedVectorSegment.Encoding encoding, float tolerance) throws IOException {
+        Random random = new Random(17);
+        List<float[]> normalized = new ArrayList<>();
+
+        try (QuantizedVectorSegment segment =
+                     QuantizedVectorSegment.open(tempDir, "vectors", encoding, DIMENSIONS, CHUNK_BYTES)) {
+            for (int i = 0; i < RECORDS; i++) {
+                float[] vector = randomVector(random);
+                normalized.add(HnswIndex.normalize(vector));
+                assertEquals(i, segment.append("C" + i, vector));
+            }
+            assertRecords(segment, normalized, tolerance);
+        }
+
+        // 다시 열면 파일 매핑만으로 같은 레코드가 복원됨
+        try (QuantizedVectorSegment reopened =
+                     QuantizedVectorSegment.open(tempDir, "vectors", encoding, DIMENSIONS, CHUNK_BYTES)) {
+            assertEquals(RECORDS, reopened.size());
+            assertRecords(reopened, normalized, tolerance);
+        }
+    }
+
+    private static void assertRecords(QuantizedVectorSegment segment, List<float[]> normalized, float tolerance) {
+        float[] full = new float[DIMENSIONS];
+        for (int record = 0; record < normalized.size(); record++) {
+            float[] expected = normalized.get(record);
+            assertEquals("C" + record, segment.key(record));
+
+            segment.read(record, full, 0);
+            assertArrayEquals(expected, full, 0f);
+            assertEquals(1f, segment.exactDot(expected, record), 1e-5f);
+
+            // 양자화 근사 내적은 원본 내적과 허용 오차 이내
+            float[] query = normalized.get((record + 1) % normalized.size());
+            assertEquals(dot(query, expected), segment.similarity(query, 0, record), tolerance,
+                    "record " + record);
+        }
+    }
+
+    @Test
+    void incompatibleFormatStartsEmpty() throws IOException {
+        try (QuantizedVectorSegment segment = QuantizedVectorSegment.open(tempDir, "vectors",
+                QuantizedVectorSegment.Encoding.INT8, DIMENSIONS, CHUNK_BYTES)) {
+            segment.append("C1", randomVector(new Random(1)));
+        }
+
+        try (QuantizedVectorSegment segment = QuantizedVectorSegment.open(tempDir, "vectors",
+                QuantizedVectorSegment.Encoding.FLOAT16, DIMENSIONS, CHUNK_BYTES)) {
+            assertEquals(0, segment.size());
+            assertThrows(IllegalArgumentException.class, () -> segment.append("C2", new float[DIMENSIONS + 1]));
+        }
+    }
+
+    @Test
+    void halfPrecisionConversion() {
+        float[] values = {0f, 1f, -1f, 0.5f, 0.1f, -0.333f, 65504f, 6.1e-5f, 1e-6f};
+        for (float value : values) {
+            float restored = QuantizedVectorSegment.fromHalf(QuantizedVectorSegment.toHalf(value));
+            assertEquals(value, restored, Math.max(Math.abs(value) * 1e-3f, 6e-8f), "value " + value);
+        }
+        assertEquals(Float.POSITIVE_INFINITY, QuantizedVectorSegment.fromHalf(QuantizedVectorSegment.toHalf(1e6f)));
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
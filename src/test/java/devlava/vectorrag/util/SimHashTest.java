@@ -0,0 +1,41 @@
+package devlava.vectorrag.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimHashTest {
+
+    private static final String TRANSCRIPT = "상담사: 안녕하세요 고객님, 무엇을 도와드릴까요? 고객: 요금제 변경하려고 하는데요. "
+            + "상담사: 네, 지금 사용량 보니 데이터 요금제가 더 맞으실 것 같습니다. 인터넷이랑 결합하시면 추가 할인도 됩니다. "
+            + "고객: 얼마나 저렴해지나요? 상담사: 월 만 원 정도 줄어듭니다. 고객: 그럼 그걸로 해주세요.";
+
+    @Test
+    void ignoresSpacingPunctuationAndCase() {
+        long signature = SimHash.compute(TRANSCRIPT);
+
+        assertEquals(signature, SimHash.compute(TRANSCRIPT.replace(" ", "").replace(",", "").replace(".", "")));
+        assertEquals(SimHash.compute("Plan ABC change"), SimHash.compute("plan abc, change!"));
+    }
+
+    @Test
+    void similarTextsAreCloserThanUnrelatedTexts() {
+        long signature = SimHash.compute(TRANSCRIPT);
+        long edited = SimHash.compute(TRANSCRIPT.replace("만 원", "만 이천 원"));
+        long unrelated = SimHash.compute("고객: 해외 로밍 신청하려고요. 상담사: 출국 날짜와 국가를 알려주시면 "
+                + "로밍 상품을 안내해 드리겠습니다. 고객: 다음 주 일본입니다. 상담사: 일일 요금제로 신청해 드렸습니다.");
+
+        assertTrue(SimHash.hammingDistance(signature, edited) < SimHash.hammingDistance(signature, unrelated));
+        assertTrue(SimHash.hammingDistance(signature, edited) <= 8);
+    }
+
+    @Test
+    void handlesShortAndEmptyText() {
+        assertEquals(0L, SimHash.compute(null));
+        assertEquals(0L, SimHash.compute(""));
+        assertEquals(SimHash.compute("네"), SimHash.compute(" 네. "));
+        assertEquals(1.0, SimHash.similarity(42L, 42L), 0.0);
+        assertEquals(0.0, SimHash.similarity(0L, -1L), 0.0);
+    }
+}
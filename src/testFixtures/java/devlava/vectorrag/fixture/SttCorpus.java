@@ -0,0 +1,194 @@
+package devlava.vectorrag.fixture;
+
+import devlava.vectorrag.entity.SttData;
+import devlava.vectorrag.util.ConsultationDocuments;
+import org.springframework.ai.document.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 벤치마크/부하 테스트용 STT 상담 코퍼스 - 실제 상담 흐름(인사, 문의, 대기, 안내, 넛지, 고객 반응, 마무리)을 조합
+ * - 고정 시드로 생성하므로 실행마다 같은 입력
+ * - STT 특유의 줄바꿈/연속 공백/제어문자도 일부 포함
+ */
+public final class SttCorpus {
+
+    private static final String[] GREETINGS = {
+            "안녕하세요 고객님 상담사 김민지입니다 무엇을 도와드릴까요",
+            "네 안녕하세요 고객센터입니다 본인 확인 위해 생년월일 말씀 부탁드립니다",
+            "감사합니다 고객님 잠시만 기다려 주시면 확인해 드리겠습니다"
+    };
+
+    private static final String[] INQUIRIES = {
+            "이번 달 요금이 평소보다 너무 많이 나와서요 왜 그런지 궁금해서 전화했어요",
+            "인터넷이 자꾸 끊겨서요 어제 저녁부터 와이파이가 안 잡혀요",
+            "휴대폰 요금제를 좀 바꾸고 싶은데 어떤 게 있는지 알고 싶어요",
+            "해지하려고 하는데 위약금이 얼마나 나오는지 알려주세요",
+            "소액결제 내역이 있는데 제가 한 게 아니라서요 확인 좀 해주세요"
+    };
+
+    private static final String[] HOLDS = {
+            "네 고객님 확인 중이니 잠시만 기다려 주세요",
+            "조회하는 데 시간이 조금 걸리고 있습니다 조금만 기다려 주시겠어요",
+            "네 연결되었습니다 기다려 주셔서 감사합니다"
+    };
+
+    private static final String[] EXPLANATIONS = {
+            "확인해 보니 지난달에 데이터 추가 사용료가 이만 삼천 원 청구되었습니다",
+            "장애 접수 완료되었고 내일 오전 중에 기사님이 방문하실 예정입니다",
+            "현재 약정이 팔 개월 남아 있어서 해지하시면 위약금이 약 십이만 원 발생합니다",
+            "해당 결제는 게임 사이트에서 발생한 건으로 확인되며 차단 설정 도와드리겠습니다"
+    };
+
+    private static final String[] NUDGES = {
+            "데이터 사용량 보니 무제한 요금제가 오히려 월 만 원 정도 저렴하실 것 같은데요",
+            "다른 고객분들도 요즘 가족 결합으로 많이들 바꾸세요 인터넷이랑 같이 하시면 결합할인 받으실 수 있어요",
+            "지금 요금제로는 솔직히 손해보고 계세요 혜택을 놓치고 계신 거예요",
+            "이번 달만 진행하는 프로모션이 있어서 지금 가입하시면 세 달 무료로 이용하실 수 있습니다",
+            "영화 자주 보시면 OTT 포함된 요금제가 고객님께 딱 맞으실 것 같아요",
+            "지금 안 하시면 나중에 후회하실 거예요 무조건 바꾸시는 게 좋습니다"
+    };
+
+    private static final String[] RESPONSES = {
+            "아 그래요 그럼 얼마나 저렴해지는지 자세히 알려주세요",
+            "음 생각해 볼게요 지금은 괜찮아요",
+            "네 그럼 그걸로 바꿔주세요",
+            "아니요 필요 없어요 그냥 요금만 확인하려고 한 거예요"
+    };
+
+    private static final String[] CLOSINGS = {
+            "더 궁금하신 점 있으실까요 감사합니다 좋은 하루 되세요",
+            "네 처리 완료되었습니다 상담사 김민지였습니다 감사합니다"
+    };
+
+    private static final String[] ANALYSIS_RESULTS = {
+            "{\"mainInquiry\":\"요금 과다 청구 문의\",\"hasNudge\":\"Y\",\"nudgeType\":\"개인화추천\","
+                    + "\"nudgeContent\":\"무제한 요금제가 오히려 저렴\",\"customerResponse\":\"Y\","
+                    + "\"inappropriateNudge\":\"N\",\"inappropriateReason\":\"N\"}",
+            "{\"mainInquiry\":\"인터넷 장애 접수\",\"hasNudge\":\"N\",\"nudgeType\":\"N\",\"nudgeContent\":\"N\","
+                    + "\"customerResponse\":\"N\",\"inappropriateNudge\":\"N\",\"inappropriateReason\":\"N\"}",
+            "{\"mainInquiry\":\"해지 위약금 문의\",\"hasNudge\":\"Y\",\"nudgeType\":\"손실회피\","
+                    + "\"nudgeContent\":\"지금 안 하시면 나중에 후회하실 거예요\",\"customerResponse\":\"N\","
+                    + "\"inappropriateNudge\":\"Y\",\"inappropriateReason\":\"강압적 어조\"}"
+    };
+
+    private SttCorpus() {
+    }
+
+    /**
+     * turns 개 발화로 이루어진 상담 count 건
+     */
+    public static List<String> transcripts(int count, int turns, long seed) {
+        Random random = new Random(seed);
+        List<String> transcripts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transcripts.add(transcript(random, turns));
+        }
+        return transcripts;
+    }
+
+    private static String transcript(Random random, int turns) {
+        StringBuilder sb = new StringBuilder(turns * 60);
+        agent(sb, random, pick(random, GREETINGS));
+        customer(sb, random, pick(random, INQUIRIES));
+
+        for (int turn = 2; turn < turns - 1; turn += 2) {
+            int kind = random.nextInt(10);
+            if (kind < 3) {
+                agent(sb, random, pick(random, HOLDS));
+                customer(sb, random, "네");
+            } else if (kind < 7) {
+                agent(sb, random, pick(random, EXPLANATIONS));
+                customer(sb, random, "아 네 알겠습니다");
+            } else {
+                agent(sb, random, pick(random, NUDGES));
+                customer(sb, random, pick(random, RESPONSES));
+            }
+        }
+
+        agent(sb, random, pick(random, CLOSINGS));
+        return sb.toString();
+    }
+
+    private static void agent(StringBuilder sb, Random random, String text) {
+        line(sb, random, "상담사: ", text);
+    }
+
+    private static void customer(StringBuilder sb, Random random, String text) {
+        line(sb, random, "고객: ", text);
+    }
+
+    // STT 출력처럼 가끔 연속 공백, 탭, 제어문자가 섞임
+    private static void line(StringBuilder sb, Random random, String label, String text) {
+        sb.append(label).append(text);
+        int noise = random.nextInt(8);
+        if (noise == 0) {
+            sb.append("  \t ");
+        } else if (noise == 1) {
+            sb.append('\u0007');
+        }
+        sb.append('\n');
+    }
+
+    /**
+     * 검색 결과로 돌아오는 참고 사례 문서 (ConsultationDocuments 와 같은 구조)
+     */
+    public static List<Document> similarDocuments(int count, long seed) {
+        List<Document> documents = new ArrayList<>(count);
+        List<SttData> analyzed = analyzedData(count, 20, seed);
+        for (SttData sttData : analyzed) {
+            documents.add(ConsultationDocuments.fromAnalyzedData(sttData));
+        }
+        return documents;
+    }
+
+    public static List<SttData> analyzedData(int count, int turns, long seed) {
+        Random random = new Random(seed);
+        List<String> contents = transcripts(count, turns, seed);
+        List<SttData> analyzed = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SttData sttData = new SttData();
+            sttData.setConsultationNumber(String.format("C%08d", i));
+            sttData.setConsultant("상담사" + random.nextInt(50));
+            sttData.setConsultationContent(contents.get(i));
+            sttData.setConsultationTime(LocalDateTime.of(2024, 5, 1, 9, 0).plusMinutes(i));
+            sttData.setResponse1("요금 문의");
+            sttData.setResponse2(random.nextBoolean() ? "Y" : "N");
+            sttData.setResponse3("개인화추천");
+            sttData.setResponse4("무제한 요금제가 오히려 저렴하실 것 같은데요");
+            sttData.setResponse5("N");
+            sttData.setResponse6("N");
+            sttData.setResponse7("N");
+            sttData.setAnalysisStatus("COMPLETED");
+            analyzed.add(sttData);
+        }
+        return analyzed;
+    }
+
+    /**
+     * 모델 응답 - JSON 모드 응답과 앞에 설명이 붙은 응답을 섞음
+     */
+    public static List<String> modelResponses(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String json = pick(random, ANALYSIS_RESULTS);
+            responses.add(random.nextInt(4) == 0 ? "다음은 분석 결과입니다.\n" + json + "\n" : json);
+        }
+        return responses;
+    }
+
+    /**
+     * JSON 모드 분석 결과 (i 번째, 순환)
+     */
+    public static String analysisJson(int i) {
+        return ANALYSIS_RESULTS[Math.floorMod(i, ANALYSIS_RESULTS.length)];
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}